@@ -19,6 +19,16 @@ import java.net.*;
 
 class Arc
 {
+    /*
+        CLASS CONSTANTS
+    */
+
+    /* how far the arrow head can reach out of the bounding rectangles of
+       the place and the transition */
+
+    final static int    ARROW_SIZE = 5;
+
+
     /*
         INSTANCE VARIABLES
     */
@@ -36,6 +46,16 @@ class Arc
 
     private int             dstId;
 
+    /* set when the arc was removed. it stays in its owner's list until its
+       image has been erased */
+
+    private boolean         removing;
+
+    /* line the arc is listed along in the grid of the net (see
+       PetriNet.listArc), null if it is not listed */
+
+    private int             listed [];
+
     /*
         coordinates for drawing arc image on the screen
     */
@@ -181,6 +201,17 @@ class Arc
     */
 
     public void paint (Graphics g)
+    {
+        paint (g, true);
+
+    } /* end paint */
+
+
+    /*
+        same as above, without the arrow head if head is false.
+    */
+
+    public void paint (Graphics g, boolean head)
     {
         /* get source bounding rectangle */
 	Rectangle start;
@@ -324,7 +355,10 @@ class Arc
 
         /* now draw the arc */
 
-        draw (g);
+        if (head)
+            draw (g);
+        else
+            g . drawLine (x1, y1, x2, y2);
 
     } /* end paint */
 
@@ -358,6 +392,51 @@ class Arc
 
     } /* draw */
 
+    /*
+        mark the arc as removed, or cancel its removal.
+    */
+
+    public void setRemoving (boolean r)
+    {
+        removing = r;
+
+    } /* end setRemoving */
+
+
+    /*
+        return true if the arc was removed.
+    */
+
+    public boolean removing ()
+    {
+        return removing;
+
+    } /* end removing */
+
+
+    /*
+        remember the line the arc is listed along, or null once it is no
+        longer listed.
+    */
+
+    public void setListed (int line [])
+    {
+        listed = line;
+
+    } /* end setListed */
+
+
+    /*
+        return the line the arc is listed along, null if none.
+    */
+
+    public int [] listed ()
+    {
+        return listed;
+
+    } /* end listed */
+
+
     /*
         return the direction of this arc.
     */
@@ -0,0 +1,149 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/*
+    CombineTask class - fork-join task combining the positive and negative
+    rows of the column an InvariantSolver is eliminating. The pairs are
+    split by halving the longer of the two ranges of rows until few enough
+    are left for one task; the rows each task makes are gathered in range
+    order by collect(), so the result does not depend on the number of
+    threads.
+*/
+
+
+class CombineTask extends RecursiveAction
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* number of pairs combined by one task without splitting further */
+
+    final static int    PAIRS_PER_TASK = 4096;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* solver this task works for */
+
+    private InvariantSolver solver;
+
+    /* column eliminated, positive and negative rows and the ranges of them
+       handled by this task */
+
+    private int         column;
+    private int         pos [];
+    private int         neg [];
+    private int         posFirst, posLast;
+    private int         negFirst, negLast;
+
+    /* sub-tasks, null for a task that did the work itself */
+
+    private CombineTask left;
+    private CombineTask right;
+
+    /* rows made (for a task without sub-tasks) */
+
+    private Vector      made;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - combine rows pos [pf .. pl - 1] with rows
+        neg [nf .. nl - 1].
+    */
+
+    public CombineTask (InvariantSolver s, int c, int p [], int pf, int pl,
+                        int n [], int nf, int nl)
+    {
+        solver   = s;
+        column   = c;
+        pos      = p;
+        neg      = n;
+        posFirst = pf;
+        posLast  = pl;
+        negFirst = nf;
+        negLast  = nl;
+        left     = right = (CombineTask) null;
+        made     = (Vector) null;
+
+    } /* end CombineTask */
+
+
+    /*
+        append the rows made to the specified vector, in range order.
+    */
+
+    public void collect (Vector dst)
+    {
+        if (left != (CombineTask) null)
+        {
+            left . collect (dst);
+            right . collect (dst);
+            return;
+        }
+
+        dst . addAll (made);
+
+    } /* end collect */
+
+
+    /*
+        PROTECTED METHODS
+    */
+
+
+    /*
+        combine our pairs, splitting them if there are too many.
+    */
+
+    protected void compute ()
+    {
+        int np = posLast - posFirst;
+        int nn = negLast - negFirst;
+
+        if ((long) np * nn > PAIRS_PER_TASK && (np > 1 || nn > 1))
+        {
+            if (np >= nn)
+            {
+                int middle = (posFirst + posLast) >>> 1;
+
+                left  = new CombineTask (solver, column, pos, posFirst, middle, neg, negFirst, negLast);
+                right = new CombineTask (solver, column, pos, middle, posLast, neg, negFirst, negLast);
+            }
+            else
+            {
+                int middle = (negFirst + negLast) >>> 1;
+
+                left  = new CombineTask (solver, column, pos, posFirst, posLast, neg, negFirst, middle);
+                right = new CombineTask (solver, column, pos, posFirst, posLast, neg, middle, negLast);
+            }
+
+            invokeAll (left, right);
+
+            return;
+        }
+
+        made = new Vector ();
+
+        solver . combine (column, pos, posFirst, posLast, neg, negFirst, negLast, made);
+
+    } /* end compute */
+
+
+} /* end CombineTask */
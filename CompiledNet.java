@@ -0,0 +1,896 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+
+
+/*
+    CompiledNet class - flat array form of a Petri net used by the simulation.
+    Places and transitions are renumbered densely (compiled indices) and the
+    arcs are stored in compressed sparse row form: the input places of
+    transition t are prePlaces [preStart [t]] .. prePlaces [preStart [t + 1] - 1]
+    and likewise for the output places. The marking is a plain int array, so
+    checking and firing a transition only scans a few array elements.
+
+    The set of enabled transitions is kept up to date while firing: each
+    transition counts its input places that are empty, and a reverse index
+    from each place to the transitions consuming from it lets fire() update
+    only the counters of the transitions next to places that became empty
+    or stopped being empty.
+
+    The snapshot does not follow structural edits of the object model, the
+    owner has to throw it away and compile a new one when places, transitions
+    or arcs change.
+*/
+
+
+class CompiledNet
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of places and transitions in the snapshot */
+
+    private int         numPlaces;
+    private int         numTransitions;
+
+    /* place and transition ids for each compiled index */
+
+    private int         placeIds [];
+    private int         transitionIds [];
+
+    /* compiled index for each place id (-1 if the id is not in use) */
+
+    private int         placeIndex [];
+
+    /* place and transition objects the snapshot was compiled from */
+
+    private Place       placeObjects [];
+    private Transition  transitionObjects [];
+
+    /* current number of tokens in each place */
+
+    private int         marking [];
+
+    /* input places of each transition */
+
+    private int         preStart [];
+    private int         prePlaces [];
+
+    /* output places of each transition */
+
+    private int         postStart [];
+    private int         postPlaces [];
+
+    /* transitions consuming from each place (reverse of the input arcs) */
+
+    private int         consumerStart [];
+    private int         consumers [];
+
+    /* transitions producing into each place (reverse of the output arcs) */
+
+    private int         producerStart [];
+    private int         producers [];
+
+    /* number of empty input places of each transition */
+
+    private int         emptyInputs [];
+
+    /* enabled transitions, and the position of each transition in that
+       array (-1 if it is not enabled) */
+
+    private int         enabled [];
+    private int         enabledPosition [];
+    private int         numEnabled;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - compile the live places, transitions and arcs of
+        the specified id-indexed arrays. null entries are skipped, and so are
+        arcs that lead to removed places or are being removed.
+    */
+
+    public CompiledNet (Place places [], int placeSlots,
+                        Transition transitions [], int transitionSlots)
+    {
+        /* number the places densely */
+
+        numPlaces  = 0;
+        placeIndex = new int [placeSlots];
+
+        for (int i = 0; i < placeSlots; i ++)
+            placeIndex [i] = (places [i] != (Place) null) ? numPlaces ++ : -1;
+
+        placeIds     = new int [numPlaces];
+        placeObjects = new Place [numPlaces];
+        marking      = new int [numPlaces];
+
+        for (int i = 0; i < placeSlots; i ++)
+        {
+            if (places [i] == (Place) null)
+                continue;
+
+            int p = placeIndex [i];
+
+            placeIds [p]     = i;
+            placeObjects [p] = places [i];
+            marking [p]      = places [i] . getTokenNumber ();
+        }
+
+        /* number the transitions densely and count their arcs */
+
+        numTransitions = 0;
+
+        for (int i = 0; i < transitionSlots; i ++)
+            if (transitions [i] != (Transition) null)
+                numTransitions ++;
+
+        transitionIds     = new int [numTransitions];
+        transitionObjects = new Transition [numTransitions];
+        preStart          = new int [numTransitions + 1];
+        postStart         = new int [numTransitions + 1];
+
+        int t = 0;
+
+        for (int i = 0; i < transitionSlots; i ++)
+        {
+            if (transitions [i] == (Transition) null)
+                continue;
+
+            transitionIds [t]     = i;
+            transitionObjects [t] = transitions [i];
+
+            preStart [t + 1]  = preStart [t]  +
+                                countArcs (transitions [i], true, places, placeSlots);
+            postStart [t + 1] = postStart [t] +
+                                countArcs (transitions [i], false, places, placeSlots);
+
+            t ++;
+        }
+
+        /* fill in the adjacency arrays */
+
+        prePlaces  = new int [preStart [numTransitions]];
+        postPlaces = new int [postStart [numTransitions]];
+
+        for (t = 0; t < numTransitions; t ++)
+        {
+            Transition trans = transitionObjects [t];
+            int        k;
+
+            k = preStart [t];
+
+            for (int i = 0; i < trans . arcsInNumber (); i ++)
+                if (live (trans . inputPlace (i), places, placeSlots))
+                    prePlaces [k ++] = placeIndex [trans . inputPlace (i) . placeId ()];
+
+            k = postStart [t];
+
+            for (int i = 0; i < trans . arcsOutNumber (); i ++)
+                if (live (trans . outputPlace (i), places, placeSlots))
+                    postPlaces [k ++] = placeIndex [trans . outputPlace (i) . placeId ()];
+        }
+
+        consumerStart = reverseStart (prePlaces);
+        consumers     = reverse (preStart, prePlaces, consumerStart);
+        producerStart = reverseStart (postPlaces);
+        producers     = reverse (postStart, postPlaces, producerStart);
+
+        computeEnabled ();
+
+    } /* end CompiledNet */
+
+
+    /*
+        constructor method - use the specified arrays, decoded from a file
+        without creating any place, transition or arc object. places and
+        transitions are given in increasing id order, placeIndex maps place
+        ids to compiled indexes (-1 for unused ids) and the arcs are in
+        compressed sparse row form. the net has no objects to copy its
+        marking back to.
+    */
+
+    public CompiledNet (int pIds [], int pIndex [], int tokens [], int tIds [],
+                        int preS [], int preP [], int postS [], int postP [])
+    {
+        numPlaces      = pIds . length;
+        numTransitions = tIds . length;
+        placeIds       = pIds;
+        placeIndex     = pIndex;
+        transitionIds  = tIds;
+        marking        = tokens;
+        preStart       = preS;
+        prePlaces      = preP;
+        postStart      = postS;
+        postPlaces     = postP;
+
+        placeObjects      = (Place []) null;
+        transitionObjects = (Transition []) null;
+
+        consumerStart = reverseStart (prePlaces);
+        consumers     = reverse (preStart, prePlaces, consumerStart);
+        producerStart = reverseStart (postPlaces);
+        producers     = reverse (postStart, postPlaces, producerStart);
+
+        computeEnabled ();
+
+    } /* end CompiledNet */
+
+
+    /*
+        constructor method - copy the specified net. the structure arrays are
+        shared, only the marking and the enabled set are copied, so that the
+        copy can be simulated independently (on another thread too).
+    */
+
+    public CompiledNet (CompiledNet net)
+    {
+        numPlaces         = net . numPlaces;
+        numTransitions    = net . numTransitions;
+        placeIds          = net . placeIds;
+        transitionIds     = net . transitionIds;
+        placeIndex        = net . placeIndex;
+        placeObjects      = net . placeObjects;
+        transitionObjects = net . transitionObjects;
+        preStart          = net . preStart;
+        prePlaces         = net . prePlaces;
+        postStart         = net . postStart;
+        postPlaces        = net . postPlaces;
+        consumerStart     = net . consumerStart;
+        consumers         = net . consumers;
+        producerStart     = net . producerStart;
+        producers         = net . producers;
+
+        marking         = (int []) net . marking . clone ();
+        emptyInputs     = (int []) net . emptyInputs . clone ();
+        enabled         = (int []) net . enabled . clone ();
+        enabledPosition = (int []) net . enabledPosition . clone ();
+        numEnabled      = net . numEnabled;
+
+    } /* end CompiledNet */
+
+
+    /*
+        return the number of places.
+    */
+
+    public int placeNumber ()
+    {
+        return numPlaces;
+
+    } /* end placeNumber */
+
+
+    /*
+        return the number of transitions.
+    */
+
+    public int transitionNumber ()
+    {
+        return numTransitions;
+
+    } /* end transitionNumber */
+
+
+    /*
+        return the place id of the specified compiled place index.
+    */
+
+    public int placeId (int p)
+    {
+        return placeIds [p];
+
+    } /* end placeId */
+
+
+    /*
+        return the compiled index of the specified place id, or -1 if there
+        is no such place.
+    */
+
+    public int placeIndex (int id)
+    {
+        if (id < 0 || id >= placeIndex . length)
+            return -1;
+
+        return placeIndex [id];
+
+    } /* end placeIndex */
+
+
+    /*
+        return the transition id of the specified compiled transition index.
+    */
+
+    public int transitionId (int t)
+    {
+        return transitionIds [t];
+
+    } /* end transitionId */
+
+
+    /*
+        return the adjacency arrays. these are used by the state space
+        analysis, which needs to scan them directly. callers must not
+        modify them.
+    */
+
+    public int [] preStart ()
+    {
+        return preStart;
+
+    } /* end preStart */
+
+    public int [] prePlaces ()
+    {
+        return prePlaces;
+
+    } /* end prePlaces */
+
+    public int [] postStart ()
+    {
+        return postStart;
+
+    } /* end postStart */
+
+    public int [] postPlaces ()
+    {
+        return postPlaces;
+
+    } /* end postPlaces */
+
+    public int [] consumerStart ()
+    {
+        return consumerStart;
+
+    } /* end consumerStart */
+
+    public int [] consumers ()
+    {
+        return consumers;
+
+    } /* end consumers */
+
+    public int [] producerStart ()
+    {
+        return producerStart;
+
+    } /* end producerStart */
+
+    public int [] producers ()
+    {
+        return producers;
+
+    } /* end producers */
+
+
+    /*
+        return the place object of the specified compiled index, null for a
+        net decoded straight from a file.
+    */
+
+    public Place place (int p)
+    {
+        if (placeObjects == (Place []) null)
+            return (Place) null;
+
+        return placeObjects [p];
+
+    } /* end place */
+
+
+    /*
+        return the transition object of the specified compiled index, null
+        for a net decoded straight from a file.
+    */
+
+    public Transition transition (int t)
+    {
+        if (transitionObjects == (Transition []) null)
+            return (Transition) null;
+
+        return transitionObjects [t];
+
+    } /* end transition */
+
+
+    /*
+        return the number of tokens in the specified compiled place.
+    */
+
+    public int tokens (int p)
+    {
+        return marking [p];
+
+    } /* end tokens */
+
+
+    /*
+        return the number of enabled transitions.
+    */
+
+    public int enabledNumber ()
+    {
+        return numEnabled;
+
+    } /* end enabledNumber */
+
+
+    /*
+        return the compiled index of the i-th enabled transition. the order
+        changes as transitions get enabled and disabled.
+    */
+
+    public int enabledTransition (int i)
+    {
+        return enabled [i];
+
+    } /* end enabledTransition */
+
+
+    /*
+        is transition active ? same rule as Transition.isActive - every
+        input place holds a token and there is at least one input place.
+    */
+
+    public boolean isEnabled (int t)
+    {
+        int start = preStart [t];
+        int end   = preStart [t + 1];
+
+        if (start == end)
+            return false;
+
+        for (int i = start; i < end; i ++)
+            if (marking [prePlaces [i]] == 0)
+                return false;
+
+        return true;
+
+    } /* end isEnabled */
+
+
+    /*
+        fire transition
+        requires transition active (not tested here for efficiency)
+    */
+
+    public void fire (int t)
+    {
+        int end;
+
+        /* remove one token from all input places. the transitions consuming
+           from a place that became empty get disabled */
+
+        end = preStart [t + 1];
+
+        for (int i = preStart [t]; i < end; i ++)
+        {
+            int p = prePlaces [i];
+
+            if (-- marking [p] == 0)
+                placeEmptied (p);
+        }
+
+        /* add one token to all output places. the transitions consuming from
+           a place that was empty may get enabled */
+
+        end = postStart [t + 1];
+
+        for (int i = postStart [t]; i < end; i ++)
+        {
+            int p = postPlaces [i];
+
+            if (marking [p] ++ == 0)
+                placeFilled (p);
+        }
+
+    } /* end fire */
+
+
+    /*
+        fire up to maxSteps randomly chosen enabled transitions, stopping
+        early when no transition is enabled. return the number of firings.
+    */
+
+    public long run (long maxSteps, Random random)
+    {
+        long steps = 0;
+
+        while (steps < maxSteps && numEnabled > 0)
+        {
+            fire (enabled [random . nextInt (numEnabled)]);
+            steps ++;
+        }
+
+        return steps;
+
+    } /* end run */
+
+
+    /*
+        same as above with a splittable random number generator, used by
+        simulations running in parallel.
+    */
+
+    public long run (long maxSteps, SplittableRandom random)
+    {
+        long steps = 0;
+
+        while (steps < maxSteps && numEnabled > 0)
+        {
+            fire (enabled [random . nextInt (numEnabled)]);
+            steps ++;
+        }
+
+        return steps;
+
+    } /* end run */
+
+
+    /*
+        same as the first run method, recording every firing into the
+        specified trace.
+    */
+
+    public long run (long maxSteps, Random random, TraceRecorder trace)
+    {
+        int  fired [] = new int [TraceRecorder . BATCH_SIZE];
+        long steps    = 0;
+
+        while (steps < maxSteps && numEnabled > 0)
+        {
+            /* a batch must not go past a keyframe, which is taken from
+               the marking after the batch */
+
+            int n = (int) Math . min (Math . min (fired . length, maxSteps - steps),
+                                      trace . untilKeyframe ());
+            int k = 0;
+
+            while (k < n && numEnabled > 0)
+            {
+                int t = enabled [random . nextInt (numEnabled)];
+
+                fire (t);
+                fired [k ++] = t;
+            }
+
+            trace . record (fired, k);
+            steps += k;
+        }
+
+        return steps;
+
+    } /* end run */
+
+
+    /*
+        copy the token number of the specified place object into the marking,
+        after it was changed through the object model.
+    */
+
+    public void readMarking (Place place)
+    {
+        int id = place . placeId ();
+
+        if (id < placeIndex . length && placeIndex [id] >= 0)
+            setTokens (placeIndex [id], place . getTokenNumber ());
+
+    } /* end readMarking */
+
+
+    /*
+        copy the marking of the input and output places of the specified
+        transition back into the place objects, after the transition fired.
+    */
+
+    public void writeMarking (int t)
+    {
+        if (placeObjects == (Place []) null)
+            return;
+
+        for (int i = preStart [t]; i < preStart [t + 1]; i ++)
+            placeObjects [prePlaces [i]] . setTokenNumber (marking [prePlaces [i]]);
+
+        for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+            placeObjects [postPlaces [i]] . setTokenNumber (marking [postPlaces [i]]);
+
+    } /* end writeMarking */
+
+
+    /*
+        copy the whole marking back into the place objects.
+    */
+
+    public void writeMarking ()
+    {
+        if (placeObjects == (Place []) null)
+            return;
+
+        for (int p = 0; p < numPlaces; p ++)
+            placeObjects [p] . setTokenNumber (marking [p]);
+
+    } /* end writeMarking */
+
+
+    /*
+        return the marking array itself, indexed by compiled place. it must
+        not be modified.
+    */
+
+    public int [] marking ()
+    {
+        return marking;
+
+    } /* end marking */
+
+
+    /*
+        return the marking as an array indexed by place id, with zeroes for
+        unused ids.
+    */
+
+    public int [] markingById ()
+    {
+        int result [] = new int [placeIndex . length];
+
+        for (int p = 0; p < numPlaces; p ++)
+            result [placeIds [p]] = marking [p];
+
+        return result;
+
+    } /* end markingById */
+
+
+    /*
+        set the marking from an array indexed by place id, as returned by
+        markingById, and copy it into the place objects. only the places
+        whose token number changes are touched. if owners is not null, a
+        place keeps its tokens unless it is the place object owners gives
+        for its id; places whose id is past the end of the arrays keep them
+        too. the numbers of tokens must not be negative.
+    */
+
+    public void setMarking (int byId [], Place owners [])
+    {
+        for (int p = 0; p < numPlaces; p ++)
+        {
+            int id = placeIds [p];
+
+            if (id >= byId . length || marking [p] == byId [id])
+                continue;
+
+            if (owners != (Place []) null &&
+                (placeObjects == (Place []) null || owners [id] != placeObjects [p]))
+                continue;
+
+            setTokens (p, byId [id]);
+
+            if (placeObjects != (Place []) null)
+                placeObjects [p] . setTokenNumber (byId [id]);
+        }
+
+    } /* end setMarking */
+
+
+    /*
+        set the number of tokens of the specified compiled place, keeping
+        the enabled set up to date.
+    */
+
+    public void setTokens (int p, int n)
+    {
+        int old = marking [p];
+
+        marking [p] = n;
+
+        if (old == 0 && n != 0)
+            placeFilled (p);
+
+        else if (old != 0 && n == 0)
+            placeEmptied (p);
+
+    } /* end setTokens */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        a place lost its last token - disable the transitions consuming
+        from it.
+    */
+
+    private void placeEmptied (int p)
+    {
+        int end = consumerStart [p + 1];
+
+        for (int i = consumerStart [p]; i < end; i ++)
+        {
+            int u = consumers [i];
+
+            if (emptyInputs [u] ++ == 0)
+                removeEnabled (u);
+        }
+
+    } /* end placeEmptied */
+
+
+    /*
+        an empty place got a token - the transitions consuming from it
+        whose other input places are marked become enabled.
+    */
+
+    private void placeFilled (int p)
+    {
+        int end = consumerStart [p + 1];
+
+        for (int i = consumerStart [p]; i < end; i ++)
+        {
+            int u = consumers [i];
+
+            if (-- emptyInputs [u] == 0)
+                addEnabled (u);
+        }
+
+    } /* end placeFilled */
+
+
+    /*
+        add transition to the enabled set.
+    */
+
+    private void addEnabled (int t)
+    {
+        enabledPosition [t]   = numEnabled;
+        enabled [numEnabled ++] = t;
+
+    } /* end addEnabled */
+
+
+    /*
+        remove transition from the enabled set, moving the last enabled
+        transition into its position.
+    */
+
+    private void removeEnabled (int t)
+    {
+        int pos  = enabledPosition [t];
+        int last = enabled [-- numEnabled];
+
+        enabled [pos]          = last;
+        enabledPosition [last] = pos;
+        enabledPosition [t]    = -1;
+
+    } /* end removeEnabled */
+
+
+    /*
+        build the start offsets of a place -> transitions index from the
+        place column of transition -> places adjacency arrays.
+    */
+
+    private int [] reverseStart (int places [])
+    {
+        int start [] = new int [numPlaces + 1];
+
+        for (int i = 0; i < places . length; i ++)
+            start [places [i] + 1] ++;
+
+        for (int p = 0; p < numPlaces; p ++)
+            start [p + 1] += start [p];
+
+        return start;
+
+    } /* end reverseStart */
+
+
+    /*
+        build a place -> transitions index (for instance the transitions
+        consuming from each place) from transition -> places adjacency
+        arrays and the start offsets computed by reverseStart.
+    */
+
+    private int [] reverse (int start [], int places [], int reverseStart [])
+    {
+        int result [] = new int [places . length];
+        int next []   = new int [numPlaces];
+
+        System . arraycopy (reverseStart, 0, next, 0, numPlaces);
+
+        for (int t = 0; t < numTransitions; t ++)
+            for (int i = start [t]; i < start [t + 1]; i ++)
+                result [next [places [i]] ++] = t;
+
+        return result;
+
+    } /* end reverse */
+
+
+    /*
+        compute the empty input counters and the enabled set from scratch.
+        transitions without input places are never enabled, they get one
+        empty input that no token can fill.
+    */
+
+    private void computeEnabled ()
+    {
+        emptyInputs     = new int [numTransitions];
+        enabled         = new int [numTransitions];
+        enabledPosition = new int [numTransitions];
+        numEnabled      = 0;
+
+        for (int t = 0; t < numTransitions; t ++)
+        {
+            int n = (preStart [t] == preStart [t + 1]) ? 1 : 0;
+
+            for (int i = preStart [t]; i < preStart [t + 1]; i ++)
+                if (marking [prePlaces [i]] == 0)
+                    n ++;
+
+            emptyInputs [t]     = n;
+            enabledPosition [t] = -1;
+
+            if (n == 0)
+                addEnabled (t);
+        }
+
+    } /* end computeEnabled */
+
+
+    /*
+        count the live input (or output) arcs of the specified transition.
+    */
+
+    private static int countArcs (Transition trans, boolean in,
+                                  Place places [], int placeSlots)
+    {
+        int n = 0;
+
+        if (in)
+        {
+            for (int i = 0; i < trans . arcsInNumber (); i ++)
+                if (live (trans . inputPlace (i), places, placeSlots))
+                    n ++;
+        }
+        else
+        {
+            for (int i = 0; i < trans . arcsOutNumber (); i ++)
+                if (live (trans . outputPlace (i), places, placeSlots))
+                    n ++;
+        }
+
+        return n;
+
+    } /* end countArcs */
+
+
+    /*
+        check that the place at the end of an arc is still part of the net.
+    */
+
+    private static boolean live (Place place, Place places [], int placeSlots)
+    {
+        if (place == (Place) null)
+            return false;
+
+        int id = place . placeId ();
+
+        return (id < placeSlots && places [id] == place);
+
+    } /* end live */
+
+
+} /* end CompiledNet */
@@ -0,0 +1,129 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.concurrent.atomic.*;
+
+
+/*
+    ConcurrentMarkingSet class - set of packed markings shared by several
+    threads. The markings are spread over a number of stripes by hash code,
+    each stripe being a MarkingSet with its own lock, so that threads adding
+    markings only contend when they hit the same stripe.
+
+    The stripe is picked from the top bits of the hash code and a stripe
+    finds its markings from the low bits, so the markings of a stripe still
+    spread over its whole table until it has 2 ^ (32 - stripe bits) slots.
+*/
+
+
+class ConcurrentMarkingSet
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* the stripes - a power of two of them */
+
+    private MarkingSet  stripes [];
+
+    /* number of hash code bits picking the stripe */
+
+    private int         stripeBits;
+
+    /* number of longs per marking */
+
+    private int         words;
+
+    /* total number of markings and largest number allowed */
+
+    private AtomicInteger size;
+    private int         limit;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - markings of w longs, at most max markings,
+        spread over at least n stripes.
+    */
+
+    public ConcurrentMarkingSet (int w, int max, int n)
+    {
+        int count = 1;
+
+        stripeBits = 0;
+
+        while (count < n)
+        {
+            count *= 2;
+            stripeBits ++;
+        }
+
+        words   = w;
+        limit   = max;
+        size    = new AtomicInteger (0);
+        stripes = new MarkingSet [count];
+
+        for (int i = 0; i < count; i ++)
+            stripes [i] = new MarkingSet (w, Integer . MAX_VALUE);
+
+    } /* end ConcurrentMarkingSet */
+
+
+    /*
+        return the number of markings in the set.
+    */
+
+    public int size ()
+    {
+        return size . get ();
+
+    } /* end size */
+
+
+    /*
+        add the marking found at offset off of the specified array. return
+        1 if it was added, 0 if it was already there, or -1 if the set is
+        full.
+    */
+
+    public int add (long marking [], int off)
+    {
+        int        h      = MarkingSet . hash (marking, off, words);
+        MarkingSet stripe = stripes [(stripeBits == 0) ? 0 : h >>> (32 - stripeBits)];
+
+        synchronized (stripe)
+        {
+            /* reserve room before adding, so that the limit is exact, and
+               give it back if the marking was already there */
+
+            if (size . incrementAndGet () > limit)
+            {
+                size . decrementAndGet ();
+
+                return stripe . contains (marking, off) ? 0 : -1;
+            }
+
+            int added = stripe . add (marking, off);
+
+            if (added < 0)
+            {
+                size . decrementAndGet ();
+
+                return (added == Integer . MIN_VALUE) ? -1 : 0;
+            }
+        }
+
+        return 1;
+
+    } /* end add */
+
+
+} /* end ConcurrentMarkingSet */
@@ -0,0 +1,483 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    Coverability class - builds a Karp-Miller coverability tree of a compiled
+    net, which is finite even when the net is unbounded: whenever a marking
+    strictly covers one of its ancestors, the firing sequence between them
+    can be repeated forever, and the places that grew are set to OMEGA
+    (any number of tokens).
+
+    Instead of a full tree, only the maximal markings found so far are kept
+    (an antichain). A new marking covered by one of them is not expanded,
+    since whatever it leads to is covered by what the bigger marking leads
+    to, and markings the new one covers are dropped from the antichain and
+    not expanded if they still were to be. At the end the antichain is a
+    coverability set: every reachable marking is covered by one of its
+    markings, and a place is unbounded exactly if one of them has OMEGA
+    tokens in it.
+*/
+
+
+class Coverability
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* any number of tokens */
+
+    final static int    OMEGA = Integer . MAX_VALUE;
+
+    /* initial number of tree nodes */
+
+    final static int    NODES = 256;
+
+    /* weight of an OMEGA in the token sum of a marking - above any finite
+       number of tokens, so a marking can only be covered by one with a
+       bigger or equal sum */
+
+    final static long   OMEGA_WEIGHT = 1L << 32;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net being explored */
+
+    private CompiledNet net;
+    private int         places;
+
+    /* markings of the tree nodes, places numbers each */
+
+    private int         markings [];
+
+    /* parent of each node (-1 for the root), token sum of its marking and
+       whether it was dropped from the antichain */
+
+    private int         parent [];
+    private long        sum [];
+    private boolean     dropped [];
+    private int         numNodes;
+
+    /* nodes whose markings are maximal among the ones found */
+
+    private int         antichain [];
+    private int         numAntichain;
+
+    /* nodes still to expand */
+
+    private int         stack [];
+    private int         numStack;
+
+    /* scratch successor marking */
+
+    private int         next [];
+
+    /* maximum number of nodes and outcome */
+
+    private int         maxNodes;
+    private int         status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - create at most maxNodes tree nodes.
+    */
+
+    public Coverability (CompiledNet n, int max)
+    {
+        net      = n;
+        places   = net . placeNumber ();
+        maxNodes = max;
+
+        int size = Math . min (NODES, Math . max (1, maxNodes));
+
+        markings  = new int [size * places];
+        parent    = new int [size];
+        sum       = new long [size];
+        dropped   = new boolean [size];
+        antichain = new int [size];
+        stack     = new int [size];
+        next      = new int [places];
+
+        numNodes = numAntichain = numStack = 0;
+        status   = 0;
+
+    } /* end Coverability */
+
+
+    /*
+        build the coverability set and return the status (one of the
+        StateSpace.STATUS_ constants).
+    */
+
+    public int explore ()
+    {
+        int preStart []   = net . preStart ();
+        int prePlaces []  = net . prePlaces ();
+        int postStart []  = net . postStart ();
+        int postPlaces [] = net . postPlaces ();
+        int transitions   = net . transitionNumber ();
+
+        for (int p = 0; p < places; p ++)
+            next [p] = net . tokens (p);
+
+        if (maxNodes < 1)
+            return status = StateSpace . STATUS_STATE_LIMIT;
+
+        push (addNode (-1));
+
+        while (numStack > 0)
+        {
+            int n = stack [-- numStack];
+
+            /* covered by a marking found after it was queued */
+
+            if (dropped [n])
+                continue;
+
+            int off = n * places;
+
+            for (int t = 0; t < transitions; t ++)
+            {
+                int start = preStart [t];
+                int end   = preStart [t + 1];
+
+                if (start == end)
+                    continue;
+
+                boolean enabled = true;
+
+                for (int i = start; i < end && enabled; i ++)
+                    enabled = markings [off + prePlaces [i]] > 0;
+
+                if (! enabled)
+                    continue;
+
+                /* fire t, leaving OMEGA places alone */
+
+                System . arraycopy (markings, off, next, 0, places);
+
+                for (int i = start; i < end; i ++)
+                    if (next [prePlaces [i]] != OMEGA)
+                        next [prePlaces [i]] --;
+
+                for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+                    if (next [postPlaces [i]] != OMEGA)
+                        next [postPlaces [i]] ++;
+
+                accelerate (n);
+
+                long s = tokenSum (next, 0);
+
+                if (covered (s))
+                    continue;
+
+                if (numNodes == maxNodes)
+                    return status = StateSpace . STATUS_STATE_LIMIT;
+
+                dropCovered (s);
+                push (addNode (n));
+            }
+        }
+
+        return status = StateSpace . STATUS_COMPLETE;
+
+    } /* end explore */
+
+
+    /*
+        return the outcome of the exploration.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of tree nodes created.
+    */
+
+    public int nodes ()
+    {
+        return numNodes;
+
+    } /* end nodes */
+
+
+    /*
+        return the number of markings in the coverability set.
+    */
+
+    public int maximalMarkings ()
+    {
+        return numAntichain;
+
+    } /* end maximalMarkings */
+
+
+    /*
+        return the number of tokens of place p (compiled index) in maximal
+        marking i, OMEGA if unbounded.
+    */
+
+    public int maximalTokens (int i, int p)
+    {
+        return markings [antichain [i] * places + p];
+
+    } /* end maximalTokens */
+
+
+    /*
+        return the largest number of tokens place p (compiled index) can
+        hold, OMEGA if it is unbounded.
+    */
+
+    public int bound (int p)
+    {
+        int max = 0;
+
+        for (int i = 0; i < numAntichain; i ++)
+            max = Math . max (max, markings [antichain [i] * places + p]);
+
+        return max;
+
+    } /* end bound */
+
+
+    /*
+        return true if no place is unbounded.
+    */
+
+    public boolean bounded ()
+    {
+        for (int p = 0; p < places; p ++)
+            if (bound (p) == OMEGA)
+                return false;
+
+        return true;
+
+    } /* end bounded */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        set to OMEGA the places that grew since an ancestor of the successor
+        marking covered by it. the ancestors are node n and its parents.
+    */
+
+    private void accelerate (int n)
+    {
+        for (int a = n; a >= 0; a = parent [a])
+        {
+            int     off    = a * places;
+            boolean below  = true;
+            boolean strict = false;
+
+            for (int p = 0; p < places && below; p ++)
+            {
+                int m = markings [off + p];
+
+                if (m > next [p])
+                    below = false;
+
+                else if (m < next [p])
+                    strict = true;
+            }
+
+            if (! below || ! strict)
+                continue;
+
+            for (int p = 0; p < places; p ++)
+                if (markings [off + p] < next [p])
+                    next [p] = OMEGA;
+        }
+
+    } /* end accelerate */
+
+
+    /*
+        return true if the successor marking, with token sum s, is covered by
+        a marking of the antichain.
+    */
+
+    private boolean covered (long s)
+    {
+        for (int i = 0; i < numAntichain; i ++)
+        {
+            int a = antichain [i];
+
+            if (sum [a] >= s && covers (a * places, next))
+                return true;
+        }
+
+        return false;
+
+    } /* end covered */
+
+
+    /*
+        drop from the antichain the markings covered by the successor marking,
+        with token sum s.
+    */
+
+    private void dropCovered (long s)
+    {
+        for (int i = 0; i < numAntichain; )
+        {
+            int a = antichain [i];
+
+            if (sum [a] <= s && coveredBy (a * places, next))
+            {
+                dropped [a]  = true;
+                antichain [i] = antichain [-- numAntichain];
+            }
+            else
+                i ++;
+        }
+
+    } /* end dropCovered */
+
+
+    /*
+        return true if the node marking at off covers marking m.
+    */
+
+    private boolean covers (int off, int m [])
+    {
+        for (int p = 0; p < places; p ++)
+            if (markings [off + p] < m [p])
+                return false;
+
+        return true;
+
+    } /* end covers */
+
+
+    /*
+        return true if the node marking at off is covered by marking m.
+    */
+
+    private boolean coveredBy (int off, int m [])
+    {
+        for (int p = 0; p < places; p ++)
+            if (markings [off + p] > m [p])
+                return false;
+
+        return true;
+
+    } /* end coveredBy */
+
+
+    /*
+        create a node with the successor marking, child of node p, and add it
+        to the antichain. return its number.
+    */
+
+    private int addNode (int p)
+    {
+        if (numNodes == parent . length)
+        {
+            int size = (int) Math . min ((long) maxNodes, 2L * parent . length);
+
+            int     m [] = new int [size * places];
+            int     a [] = new int [size];
+            long    s [] = new long [size];
+            boolean d [] = new boolean [size];
+
+            System . arraycopy (markings, 0, m, 0, numNodes * places);
+            System . arraycopy (parent, 0, a, 0, numNodes);
+            System . arraycopy (sum, 0, s, 0, numNodes);
+            System . arraycopy (dropped, 0, d, 0, numNodes);
+
+            markings = m;
+            parent   = a;
+            sum      = s;
+            dropped  = d;
+        }
+
+        int n = numNodes ++;
+
+        System . arraycopy (next, 0, markings, n * places, places);
+
+        parent [n]  = p;
+        sum [n]     = tokenSum (next, 0);
+        dropped [n] = false;
+
+        if (numAntichain == antichain . length)
+            antichain = grow (antichain);
+
+        antichain [numAntichain ++] = n;
+
+        return n;
+
+    } /* end addNode */
+
+
+    /*
+        queue node n for expansion.
+    */
+
+    private void push (int n)
+    {
+        if (numStack == stack . length)
+            stack = grow (stack);
+
+        stack [numStack ++] = n;
+
+    } /* end push */
+
+
+    /*
+        return the token sum of marking m at off, OMEGA places weighing
+        OMEGA_WEIGHT.
+    */
+
+    private long tokenSum (int m [], int off)
+    {
+        long s = 0;
+
+        for (int p = 0; p < places; p ++)
+            s += (m [off + p] == OMEGA) ? OMEGA_WEIGHT : m [off + p];
+
+        return s;
+
+    } /* end tokenSum */
+
+
+    /*
+        return a copy of array a twice as long.
+    */
+
+    private static int [] grow (int a [])
+    {
+        int b [] = new int [Math . max (16, 2 * a . length)];
+
+        System . arraycopy (a, 0, b, 0, a . length);
+
+        return b;
+
+    } /* end grow */
+
+
+} /* end Coverability */
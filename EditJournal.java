@@ -0,0 +1,238 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    EditJournal class - the list of editing operations done on a net, so that
+    they can be undone and redone. Each operation is a record of RECORD_SIZE
+    ints - its kind and up to five numbers, the meaning of which depends on
+    the kind - and the place or transition object it concerns, if any.
+
+        PLACE_ADDED         place id
+        PLACE_REMOVED       place id
+        TRANSITION_ADDED    transition id
+        TRANSITION_REMOVED  transition id
+        ARC_ADDED           place id, transition id, 1 if towards the place
+        ARC_REMOVED         place id, transition id, 1 if towards the place
+        TOKENS              place id, old and new token numbers
+        PLACE_MOVED         place id, old x and y, new x and y
+        TRANSITION_MOVED    transition id, old x and y, new x and y
+
+    Records are kept in one growing int array and the objects in a parallel
+    array, so that a journal of any length costs two allocations per
+    doubling rather than one object per operation. The journal only holds
+    what is needed to go back and forth between the states of the net; it
+    is the net that applies the operations (see PetriNet.undo and redo).
+*/
+
+
+class EditJournal
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* kinds of operations */
+
+    final static int    PLACE_ADDED        = 1;
+    final static int    PLACE_REMOVED      = 2;
+    final static int    TRANSITION_ADDED   = 3;
+    final static int    TRANSITION_REMOVED = 4;
+    final static int    ARC_ADDED          = 5;
+    final static int    ARC_REMOVED        = 6;
+    final static int    TOKENS             = 7;
+    final static int    PLACE_MOVED        = 8;
+    final static int    TRANSITION_MOVED   = 9;
+
+    /* number of ints of a record */
+
+    final static int    RECORD_SIZE = 6;
+
+    /* initial number of records */
+
+    final static int    RECORDS = 64;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* records and the object of each */
+
+    private int         records [];
+    private Object      nodes [];
+
+    /* number of records, and number of them that are done - the ones after
+       it were undone and can be redone */
+
+    private int         count;
+    private int         position;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method.
+    */
+
+    public EditJournal ()
+    {
+        records  = new int [RECORDS * RECORD_SIZE];
+        nodes    = new Object [RECORDS];
+        count    = 0;
+        position = 0;
+
+    } /* end EditJournal */
+
+
+    /*
+        record an operation just done. the operations that were undone can no
+        longer be redone.
+    */
+
+    public void record (int kind, Object node, int a, int b, int c, int d, int e)
+    {
+        /* drop the undone records, so that their objects can be collected */
+
+        for (int i = position; i < count; i ++)
+            nodes [i] = (Object) null;
+
+        count = position;
+
+        if (count == nodes . length)
+        {
+            int    tmp [] = new int [records . length * 2];
+            Object obj [] = new Object [nodes . length * 2];
+
+            System . arraycopy (records, 0, tmp, 0, records . length);
+            System . arraycopy (nodes, 0, obj, 0, nodes . length);
+
+            records = tmp;
+            nodes   = obj;
+        }
+
+        int r = count * RECORD_SIZE;
+
+        records [r]     = kind;
+        records [r + 1] = a;
+        records [r + 2] = b;
+        records [r + 3] = c;
+        records [r + 4] = d;
+        records [r + 5] = e;
+        nodes [count]   = node;
+
+        position = ++ count;
+
+    } /* end record */
+
+
+    /*
+        step back over the last operation done and return its record, or -1
+        if there is none.
+    */
+
+    public int undo ()
+    {
+        if (position == 0)
+            return -1;
+
+        return -- position;
+
+    } /* end undo */
+
+
+    /*
+        step forward over the last operation undone and return its record,
+        or -1 if there is none.
+    */
+
+    public int redo ()
+    {
+        if (position == count)
+            return -1;
+
+        return position ++;
+
+    } /* end redo */
+
+
+    /*
+        return true if there is an operation to undo.
+    */
+
+    public boolean canUndo ()
+    {
+        return position > 0;
+
+    } /* end canUndo */
+
+
+    /*
+        return true if there is an operation to redo.
+    */
+
+    public boolean canRedo ()
+    {
+        return position < count;
+
+    } /* end canRedo */
+
+
+    /*
+        return the kind of the specified record.
+    */
+
+    public int kind (int r)
+    {
+        return records [r * RECORD_SIZE];
+
+    } /* end kind */
+
+
+    /*
+        return the specified number (0 to RECORD_SIZE - 2) of the specified
+        record.
+    */
+
+    public int value (int r, int i)
+    {
+        return records [r * RECORD_SIZE + 1 + i];
+
+    } /* end value */
+
+
+    /*
+        return the object of the specified record.
+    */
+
+    public Object node (int r)
+    {
+        return nodes [r];
+
+    } /* end node */
+
+
+    /*
+        forget all the operations.
+    */
+
+    public void clear ()
+    {
+        for (int i = 0; i < count; i ++)
+            nodes [i] = (Object) null;
+
+        count = position = 0;
+
+    } /* end clear */
+
+
+} /* end EditJournal */
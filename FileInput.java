@@ -21,11 +21,13 @@ class FileInput extends Input
     */
 
 
-    /* specifies which action (load or save) is to be performed when OK button
-       is pressed. */
+    /* specifies which action (load, save, recording a trace or replaying
+       one) is to be performed when OK button is pressed. */
 
-    final static int    LOAD = 1;
-    final static int    SAVE = 2;
+    final static int    LOAD   = 1;
+    final static int    SAVE   = 2;
+    final static int    RECORD = 3;
+    final static int    REPLAY = 4;
 
 
     /*
@@ -33,7 +35,7 @@ class FileInput extends Input
     */
 
 
-    /* current mode (load or save) */
+    /* current mode (see above) */
 
     private int         mode;
 
@@ -59,7 +61,7 @@ class FileInput extends Input
 
 
     /*
-        set dialog to specified mode (load or save)
+        set dialog to specified mode (see above)
     */
 
     public void setMode (int m)
@@ -96,6 +98,44 @@ class FileInput extends Input
                     break;
             }
 
+        else if (mode == RECORD)
+            switch (network . startTrace (i, 0))
+            {
+                case PetriNet . STATUS_FILE_CREATE_ERROR:
+                    help . setHelp (help . FILE_CREATE_ERROR);
+                    break;
+
+                case PetriNet . STATUS_WRITE_ERROR:
+                    help . setHelp (help . TRACE_WRITE_ERROR);
+                    break;
+
+                case PetriNet . STATUS_NORMAL:
+                default:
+                    help . setHelp (help . TRACE_RECORDING);
+                    break;
+            }
+
+        else if (mode == REPLAY)
+            switch (network . openReplay (i))
+            {
+                case PetriNet . STATUS_FILE_NOT_FOUND:
+                    help . setHelp (help . FILE_NOT_FOUND);
+                    break;
+
+                case PetriNet . STATUS_BAD_INPUT_FILE:
+                    help . setHelp (help . FILE_BAD_INPUT);
+                    break;
+
+                case PetriNet . STATUS_READ_ERROR:
+                    help . setHelp (help . FILE_READ_ERROR);
+                    break;
+
+                case PetriNet . STATUS_NORMAL:
+                default:
+                    help . setHelp (help . TRACE_OPENED);
+                    break;
+            }
+
         else
             switch (network . saveFile (i))
             {
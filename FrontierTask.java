@@ -0,0 +1,213 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.concurrent.*;
+
+
+/*
+    FrontierTask class - fork-join task expanding a range of the markings of
+    one level of a ParallelStateSpace exploration. Large ranges are split in
+    two halves run as sub-tasks; small ones are expanded directly and the new
+    markings they find are kept in a buffer of their own. collect() gathers
+    the buffers of the whole task tree into the next level.
+*/
+
+
+class FrontierTask extends RecursiveAction
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* number of markings expanded by one task without splitting further */
+
+    final static int    MARKINGS_PER_TASK = 256;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* exploration this task works for */
+
+    private ParallelStateSpace space;
+
+    /* markings of the level and range of them handled by this task */
+
+    private long        level [];
+    private int         first;
+    private int         last;
+
+    /* sub-tasks, null for a task that did the work itself */
+
+    private FrontierTask left;
+    private FrontierTask right;
+
+    /* new markings found (for a task without sub-tasks) */
+
+    private long        buffer [];
+
+    /* number of new markings, firings and dead markings found */
+
+    private int         found;
+    private long        edges;
+    private long        deadlocks;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - expand markings first .. last - 1 of the level.
+    */
+
+    public FrontierTask (ParallelStateSpace s, long l [], int f, int la)
+    {
+        space = s;
+        level = l;
+        first = f;
+        last  = la;
+        left  = right = (FrontierTask) null;
+
+        found = 0;
+        edges = deadlocks = 0;
+
+    } /* end FrontierTask */
+
+
+    /*
+        return the number of new markings found.
+    */
+
+    public int found ()
+    {
+        return found;
+
+    } /* end found */
+
+
+    /*
+        return the number of firings explored.
+    */
+
+    public long edges ()
+    {
+        return edges;
+
+    } /* end edges */
+
+
+    /*
+        return the number of markings with no enabled transition.
+    */
+
+    public long deadlocks ()
+    {
+        return deadlocks;
+
+    } /* end deadlocks */
+
+
+    /*
+        copy the new markings found into the specified array at offset pos,
+        in range order. return the offset after the last one.
+    */
+
+    public int collect (long dst [], int pos)
+    {
+        if (left != (FrontierTask) null)
+            return right . collect (dst, left . collect (dst, pos));
+
+        int n = found * space . words ();
+
+        System . arraycopy (buffer, 0, dst, pos, n);
+
+        return pos + n;
+
+    } /* end collect */
+
+
+    /*
+        PROTECTED METHODS
+    */
+
+
+    /*
+        expand our range, splitting it if it is too large.
+    */
+
+    protected void compute ()
+    {
+        if (last - first > MARKINGS_PER_TASK)
+        {
+            int middle = (first + last) >>> 1;
+
+            left  = new FrontierTask (space, level, first, middle);
+            right = new FrontierTask (space, level, middle, last);
+
+            invokeAll (left, right);
+
+            found     = left . found     + right . found;
+            edges     = left . edges     + right . edges;
+            deadlocks = left . deadlocks + right . deadlocks;
+
+            return;
+        }
+
+        MarkingExpander expander = space . expander ();
+        int             words    = space . words ();
+
+        buffer = new long [words * 16];
+
+        for (int s = first; s < last && ! space . stopped (); s ++)
+        {
+            int n = expander . expand (level, s * words);
+
+            if (n < 0)
+            {
+                space . stop (StateSpace . STATUS_TOKEN_OVERFLOW);
+                return;
+            }
+
+            if (n == 0)
+                deadlocks ++;
+
+            edges += n;
+
+            long next [] = expander . successors ();
+
+            for (int i = 0; i < n; i ++)
+            {
+                int added = space . add (next, i * words);
+
+                if (added < 0)
+                    return;
+
+                if (added == 0)
+                    continue;
+
+                /* keep the new marking for the next level */
+
+                if ((found + 1) * words > buffer . length)
+                {
+                    long tmp [] = new long [buffer . length * 2];
+                    System . arraycopy (buffer, 0, tmp, 0, found * words);
+                    buffer = tmp;
+                }
+
+                System . arraycopy (next, i * words, buffer, found * words, words);
+                found ++;
+            }
+        }
+
+    } /* end compute */
+
+
+} /* end FrontierTask */
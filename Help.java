@@ -42,6 +42,13 @@ class Help
     final static int    FILE_BAD_INPUT                  = 18;
     final static int    FILE_LOADED_OK                  = 19;
     final static int    FILE_SAVED_OK                   = 20;
+    final static int    TRACE_RECORDING                 = 21;
+    final static int    TRACE_OPENED                    = 22;
+    final static int    REPLAY_INSTRUCTIONS             = 23;
+    final static int    TRACE_END                       = 24;
+    final static int    NOTHING_TO_UNDO                 = 25;
+    final static int    NOTHING_TO_REDO                 = 26;
+    final static int    TRACE_WRITE_ERROR               = 27;
 
 
     /*
@@ -53,6 +60,10 @@ class Help
 
     private String      currHelp;
 
+    /* set when the message changed since it was last painted */
+
+    private boolean     changed;
+
 
     /*
         PUBLIC METHODS
@@ -66,6 +77,7 @@ class Help
     public Help ()
     {
         currHelp = new String ("");
+        changed  = true;
 
     } /* end Help */
 
@@ -76,6 +88,8 @@ class Help
 
     public void setHelp (int num)
     {
+        String old = currHelp;
+
         switch (num)
         {
             case INITIAL:
@@ -127,7 +141,7 @@ class Help
                 break;
 
             case RUN_INSTRUCTIONS:
-                currHelp = new String ("Click to allow one firing");
+                currHelp = new String ("Click to allow one firing, shift-click for a batch of firings");
                 break;
 
             case FILE_NOT_FOUND:
@@ -158,15 +172,70 @@ class Help
                 currHelp = new String ("File saved successfully");
                 break;
 
+            case TRACE_RECORDING:
+                currHelp = new String ("Firings are recorded into the trace until Stop");
+                break;
+
+            case TRACE_OPENED:
+                currHelp = new String ("Trace opened - press Run to move through it");
+                break;
+
+            case REPLAY_INSTRUCTIONS:
+                currHelp = new String ("Click for the next frame of the trace, shift-click for the previous one");
+                break;
+
+            case TRACE_END:
+                currHelp = new String ("End of the trace");
+                break;
+
+            case NOTHING_TO_UNDO:
+                currHelp = new String ("Nothing to undo");
+                break;
+
+            case NOTHING_TO_REDO:
+                currHelp = new String ("Nothing to redo");
+                break;
+
+            case TRACE_WRITE_ERROR:
+                currHelp = new String ("Error writing trace - recording stopped");
+                break;
+
             case EMPTY:
             default:
                 currHelp = new String ("");
                 break;
         }
 
+        if (! currHelp . equals (old))
+            changed = true;
+
     } /* end setHelp */
 
 
+    /*
+        return true if the message changed since it was last painted.
+    */
+
+    public boolean changed ()
+    {
+        return changed;
+
+    } /* end changed */
+
+
+    /*
+        return the rectangle the message is drawn in, for the same arguments
+        as paint.
+    */
+
+    public Rectangle bounds (FontMetrics metrics, int height, int width)
+    {
+        return new Rectangle (0, height - metrics . getHeight () - 1,
+                              width, metrics . getHeight () + 1);
+
+    } /* end bounds */
+
+
     /*
         draw the current message string at the very bottom of the screen.
     */
@@ -182,6 +251,8 @@ class Help
         g . setColor (Color . red);
         g . drawString (currHelp, 0, height - 1);
 
+        changed = false;
+
     } /* end paint */
 
 
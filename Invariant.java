@@ -0,0 +1,119 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    Invariant class - a semi-positive invariant of a net: place ids and
+    weights for a place invariant (the weighted token sum of these places
+    never changes), transition ids and firing counts for a transition
+    invariant (firing them that many times gives back the same marking).
+    Only the nodes with a non zero weight are listed, in increasing id order.
+*/
+
+
+class Invariant
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* node ids and their weights */
+
+    private int         ids [];
+    private long        weights [];
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method.
+    */
+
+    public Invariant (int i [], long w [])
+    {
+        ids     = i;
+        weights = w;
+
+    } /* end Invariant */
+
+
+    /*
+        return the number of nodes in the support of the invariant.
+    */
+
+    public int size ()
+    {
+        return ids . length;
+
+    } /* end size */
+
+
+    /*
+        return the id of node i of the support.
+    */
+
+    public int id (int i)
+    {
+        return ids [i];
+
+    } /* end id */
+
+
+    /*
+        return the weight of node i of the support.
+    */
+
+    public long weight (int i)
+    {
+        return weights [i];
+
+    } /* end weight */
+
+
+    /*
+        return the weight of the node with the specified id, 0 if it is not
+        in the support.
+    */
+
+    public long weightOf (int id)
+    {
+        int i = java . util . Arrays . binarySearch (ids, id);
+
+        return (i < 0) ? 0 : weights [i];
+
+    } /* end weightOf */
+
+
+    /*
+        return the invariant as a weighted sum, e.g. "2*P3 + P5".
+    */
+
+    public String toString (String prefix)
+    {
+        StringBuffer s = new StringBuffer ();
+
+        for (int i = 0; i < ids . length; i ++)
+        {
+            if (i > 0)
+                s . append (" + ");
+
+            if (weights [i] != 1)
+                s . append (weights [i] + "*");
+
+            s . append (prefix + ids [i]);
+        }
+
+        return s . toString ();
+
+    } /* end toString */
+
+
+} /* end Invariant */
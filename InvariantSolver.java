@@ -0,0 +1,909 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/*
+    InvariantSolver class - computes the minimal support semi-positive
+    invariants of a net with the Farkas algorithm. The matrix has one row per
+    node the invariants weigh (places for place invariants) and one column
+    per constraint (transitions); the invariants are the semi-positive
+    weight vectors y with yC = 0.
+
+    Each row is carried with the combination of original rows it stands for.
+    Columns are eliminated one at a time: rows with a zero in the column are
+    kept, and every pair of a positive and a negative row is combined into a
+    row with a zero there. A combination is only kept if no other row has a
+    support within the union of the two supports, which leaves exactly the
+    invariants of minimal support at the end. Rows are sparse, and picking
+    the column with the fewest new rows first keeps their number down.
+
+    The arithmetic is exact: when a value does not fit in a long, the solver
+    stops and reports an overflow instead of returning wrong invariants.
+*/
+
+
+class InvariantSolver
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* all the invariants were found */
+
+    final static int    STATUS_COMPLETE  = 1;
+
+    /* elimination stopped because there were too many rows */
+
+    final static int    STATUS_ROW_LIMIT = 2;
+
+    /* elimination stopped because a value did not fit in a long */
+
+    final static int    STATUS_OVERFLOW  = 3;
+
+    /* initial number of rows */
+
+    final static int    ROWS = 256;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* node id of each row of the initial matrix */
+
+    private int         ids [];
+
+    /* maximum number of rows */
+
+    private int         maxRows;
+
+    /* non zero columns and values of each row, sorted by column */
+
+    private int         rowColumns [][];
+    private long        rowValues [][];
+
+    /* initial rows combined in each row and their weights */
+
+    private int         rowSupport [][];
+    private long        rowWeights [][];
+
+    /* one bit per initial row modulo 64 - a row can only have a support
+       within another one if its bits are within the other's */
+
+    private long        signature [];
+
+    private boolean     alive [];
+    private int         numRows;
+
+    /* rows that ever had each initial row first in their support */
+
+    private int         firstRows [][];
+    private int         firstCount [];
+
+    /* rows currently in the matrix */
+
+    private int         live [];
+    private int         numLive;
+
+    /* rows that ever had a non zero value in each column, and number of
+       live rows with a positive and a negative value there */
+
+    private int         columnRows [][];
+    private int         columnCount [];
+    private int         positive [];
+    private int         negative [];
+    private boolean     eliminated [];
+
+    /* number of new rows the current elimination may make */
+
+    private int         room;
+
+    /* number of threads combining the rows of large eliminations, and
+       their pool while solve runs, null for one thread */
+
+    private int         threads;
+    private ForkJoinPool pool;
+
+    /* result */
+
+    private Vector      invariants;
+    private int         status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - the matrix has columns columns and ids . length
+        rows, row r having values values [start [r] .. start [r + 1] - 1] in
+        columns cols [...] (sorted, no zero values). at most maxRows rows are
+        kept during elimination.
+    */
+
+    public InvariantSolver (int columns, int start [], int cols [], long values [],
+                            int nodeIds [], int max)
+    {
+        ids     = nodeIds;
+        maxRows = max;
+
+        int rows = ids . length;
+        int size = Math . max (ROWS, rows);
+
+        rowColumns = new int [size][];
+        rowValues  = new long [size][];
+        rowSupport = new int [size][];
+        rowWeights = new long [size][];
+        signature  = new long [size];
+        alive      = new boolean [size];
+        live       = new int [size];
+
+        firstRows   = new int [rows][];
+        firstCount  = new int [rows];
+        columnRows  = new int [columns][];
+        columnCount = new int [columns];
+        positive    = new int [columns];
+        negative    = new int [columns];
+        eliminated  = new boolean [columns];
+
+        for (int c = 0; c < columns; c ++)
+            columnRows [c] = new int [4];
+
+        for (int r = 0; r < rows; r ++)
+            firstRows [r] = new int [2];
+
+        numRows = 0;
+
+        for (int r = 0; r < rows; r ++)
+        {
+            int  c [] = new int [start [r + 1] - start [r]];
+            long v [] = new long [c . length];
+
+            System . arraycopy (cols, start [r], c, 0, c . length);
+            System . arraycopy (values, start [r], v, 0, v . length);
+
+            addRow (c, v, new int [] {r}, new long [] {1});
+        }
+
+        numLive = 0;
+
+        for (int r = 0; r < numRows; r ++)
+            live [numLive ++] = r;
+
+        invariants = new Vector ();
+        status     = 0;
+        threads    = 1;
+        pool       = (ForkJoinPool) null;
+
+    } /* end InvariantSolver */
+
+
+    /*
+        return a solver for the place invariants of a net.
+    */
+
+    public static InvariantSolver placeInvariants (CompiledNet net, int maxRows)
+    {
+        int places      = net . placeNumber ();
+        int transitions = net . transitionNumber ();
+        int ids []      = new int [places];
+
+        for (int p = 0; p < places; p ++)
+            ids [p] = net . placeId (p);
+
+        /* row of place p: tokens produced minus consumed by each transition.
+           the reverse indexes list transitions in increasing order.
+           transitions without input places never fire and are left out */
+
+        int  start [] = new int [places + 1];
+        int  cols []  = new int [net . consumers () . length + net . producers () . length];
+        long vals []  = new long [cols . length];
+        int  k        = 0;
+
+        for (int p = 0; p < places; p ++)
+        {
+            start [p] = k;
+
+            k = mergeRow (net . producers (), net . producerStart () [p], net . producerStart () [p + 1],
+                          net . consumers (), net . consumerStart () [p], net . consumerStart () [p + 1],
+                          net . preStart (), cols, vals, k);
+        }
+
+        start [places] = k;
+
+        return new InvariantSolver (transitions, start, cols, vals, ids, maxRows);
+
+    } /* end placeInvariants */
+
+
+    /*
+        return a solver for the transition invariants of a net, working on
+        the transposed matrix. transitions without input places never fire
+        and are left out.
+    */
+
+    public static InvariantSolver transitionInvariants (CompiledNet net, int maxRows)
+    {
+        int places        = net . placeNumber ();
+        int transitions   = net . transitionNumber ();
+        int preStart []   = net . preStart ();
+        int prePlaces []  = net . prePlaces ();
+        int postStart []  = net . postStart ();
+        int postPlaces [] = net . postPlaces ();
+
+        int  rows = 0;
+
+        for (int t = 0; t < transitions; t ++)
+            if (preStart [t] < preStart [t + 1])
+                rows ++;
+
+        int  ids []     = new int [rows];
+        int  start []   = new int [rows + 1];
+        int  cols []    = new int [prePlaces . length + postPlaces . length];
+        long vals []    = new long [cols . length];
+        long change []  = new long [places];
+        int  touched [] = new int [2 * places];
+        int  r          = 0;
+        int  k          = 0;
+
+        /* row of transition t: tokens it adds to each place */
+
+        for (int t = 0; t < transitions; t ++)
+        {
+            if (preStart [t] == preStart [t + 1])
+                continue;
+
+            int n = 0;
+
+            for (int i = preStart [t]; i < preStart [t + 1]; i ++)
+                if (change [prePlaces [i]] -- == 0)
+                    touched [n ++] = prePlaces [i];
+
+            for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+                if (change [postPlaces [i]] ++ == 0)
+                    touched [n ++] = postPlaces [i];
+
+            Arrays . sort (touched, 0, n);
+
+            ids [r]   = net . transitionId (t);
+            start [r] = k;
+
+            for (int i = 0; i < n; i ++)
+            {
+                int p = touched [i];
+
+                /* a place may be touched again after its change went back
+                   to zero, keep it once */
+
+                if (i > 0 && touched [i - 1] == p)
+                    continue;
+
+                if (change [p] != 0)
+                {
+                    cols [k]   = p;
+                    vals [k ++] = change [p];
+                }
+
+                change [p] = 0;
+            }
+
+            r ++;
+        }
+
+        start [rows] = k;
+
+        return new InvariantSolver (places, start, cols, vals, ids, maxRows);
+
+    } /* end transitionInvariants */
+
+
+    /*
+        combine rows on the specified number of threads when an elimination
+        makes many pairs.
+    */
+
+    public void setThreads (int n)
+    {
+        threads = n;
+
+    } /* end setThreads */
+
+
+    /*
+        compute the invariants and return the status. the pool of threads
+        only lives while this runs.
+    */
+
+    public int solve ()
+    {
+        pool = (threads > 1) ? new ForkJoinPool (threads) : (ForkJoinPool) null;
+
+        try
+        {
+            int c;
+
+            while ((c = pickColumn ()) >= 0)
+                if (! eliminate (c))
+                    return status = STATUS_ROW_LIMIT;
+        }
+        catch (ArithmeticException e)
+        {
+            return status = STATUS_OVERFLOW;
+        }
+        finally
+        {
+            if (pool != (ForkJoinPool) null)
+                pool . shutdown ();
+
+            pool = (ForkJoinPool) null;
+        }
+
+        /* every live row is now zero */
+
+        for (int i = 0; i < numLive; i ++)
+        {
+            int  r         = live [i];
+            int  support[] = rowSupport [r];
+            int  nodes []  = new int [support . length];
+
+            for (int j = 0; j < support . length; j ++)
+                nodes [j] = ids [support [j]];
+
+            invariants . addElement (new Invariant (nodes, rowWeights [r]));
+        }
+
+        return status = STATUS_COMPLETE;
+
+    } /* end solve */
+
+
+    /*
+        return the outcome of the computation.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of invariants found.
+    */
+
+    public int invariantNumber ()
+    {
+        return invariants . size ();
+
+    } /* end invariantNumber */
+
+
+    /*
+        return invariant i.
+    */
+
+    public Invariant invariant (int i)
+    {
+        return (Invariant) invariants . elementAt (i);
+
+    } /* end invariant */
+
+
+    /*
+        return true if every node is in the support of some invariant (for
+        place invariants, the net is then conservative and bounded).
+    */
+
+    public boolean covered ()
+    {
+        boolean in [] = new boolean [ids . length];
+
+        for (int i = 0; i < numLive; i ++)
+            for (int j = 0; j < rowSupport [live [i]] . length; j ++)
+                in [rowSupport [live [i]][j]] = true;
+
+        for (int r = 0; r < in . length; r ++)
+            if (! in [r])
+                return false;
+
+        return true;
+
+    } /* end covered */
+
+
+    /*
+        combine the rows pos [pf .. pl - 1] with the rows neg [nf .. nl - 1]
+        for the elimination of column c, adding the rows kept to made. stops
+        once there are too many of them. only reads the matrix, so several
+        threads can run it at once.
+    */
+
+    public void combine (int c, int pos [], int pf, int pl, int neg [], int nf, int nl,
+                         Vector made)
+    {
+        for (int i = pf; i < pl; i ++)
+            for (int j = nf; j < nl; j ++)
+            {
+                int union [] = unionSupport (rowSupport [pos [i]], rowSupport [neg [j]]);
+
+                if (! elementary (union, pos [i], neg [j]))
+                    continue;
+
+                if (made . size () > room)
+                    return;
+
+                made . addElement (combineRows (pos [i], neg [j], c));
+            }
+
+    } /* end combine */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        return the column to eliminate next, the one adding the fewest rows,
+        or -1 if all the columns are zero.
+    */
+
+    private int pickColumn ()
+    {
+        int  best     = -1;
+        long bestCost = Long . MAX_VALUE;
+
+        for (int c = 0; c < positive . length; c ++)
+        {
+            if (eliminated [c] || positive [c] + negative [c] == 0)
+                continue;
+
+            long cost = (long) positive [c] * negative [c] - positive [c] - negative [c];
+
+            if (cost < bestCost)
+            {
+                best     = c;
+                bestCost = cost;
+            }
+        }
+
+        return best;
+
+    } /* end pickColumn */
+
+
+    /*
+        eliminate column c. return false if too many rows would be left.
+    */
+
+    private boolean eliminate (int c)
+    {
+        int  pos []  = new int [positive [c]];
+        int  neg []  = new int [negative [c]];
+        int  np      = 0;
+        int  nn      = 0;
+
+        for (int i = 0; i < columnCount [c]; i ++)
+        {
+            int r = columnRows [c][i];
+
+            if (! alive [r])
+                continue;
+
+            if (value (r, c) > 0)
+                pos [np ++] = r;
+            else
+                neg [nn ++] = r;
+        }
+
+        /* combine the pairs, against the matrix before the elimination */
+
+        Vector made = new Vector ();
+
+        room = maxRows - (numLive - np - nn);
+
+        if (pool != (ForkJoinPool) null && (long) np * nn > CombineTask . PAIRS_PER_TASK)
+        {
+            CombineTask task = new CombineTask (this, c, pos, 0, np, neg, 0, nn);
+
+            pool . invoke (task);
+            task . collect (made);
+        }
+        else
+            combine (c, pos, 0, np, neg, 0, nn, made);
+
+        if (made . size () > room)
+            return false;
+
+        /* replace the rows */
+
+        for (int i = 0; i < np; i ++)
+            killRow (pos [i]);
+
+        for (int j = 0; j < nn; j ++)
+            killRow (neg [j]);
+
+        int n = 0;
+
+        for (int i = 0; i < numLive; i ++)
+            if (alive [live [i]])
+                live [n ++] = live [i];
+
+        numLive = n;
+
+        for (int i = 0; i < made . size (); i ++)
+        {
+            Vector row = (Vector) made . elementAt (i);
+
+            int r = addRow ((int []) row . elementAt (0), (long []) row . elementAt (1),
+                            (int []) row . elementAt (2), (long []) row . elementAt (3));
+
+            live [numLive ++] = r;
+        }
+
+        eliminated [c] = true;
+
+        return true;
+
+    } /* end eliminate */
+
+
+    /*
+        return false if a live row other than rows a and b has its support
+        within the specified union. such a row starts with one of the
+        initial rows of the union, so only those lists are searched.
+    */
+
+    private boolean elementary (int union [], int a, int b)
+    {
+        long sig = signatureOf (union);
+
+        for (int k = 0; k < union . length; k ++)
+        {
+            int u = union [k];
+
+            for (int i = 0; i < firstCount [u]; i ++)
+            {
+                int r = firstRows [u][i];
+
+                if (r == a || r == b || ! alive [r] ||
+                    rowSupport [r] . length > union . length - k ||
+                    (signature [r] & ~ sig) != 0)
+                    continue;
+
+                if (within (rowSupport [r], union))
+                    return false;
+            }
+        }
+
+        return true;
+
+    } /* end elementary */
+
+
+    /*
+        combine positive row a and negative row b into a row with a zero in
+        column c. return its columns, values, support and weights.
+    */
+
+    private Vector combineRows (int a, int b, int c)
+    {
+        long    fa   = - value (b, c);
+        long    fb   = value (a, c);
+        Vector  row  = new Vector ();
+
+        int     ac [] = rowColumns [a], bc [] = rowColumns [b];
+        long    av [] = rowValues [a],  bv [] = rowValues [b];
+        int     cols [] = new int [ac . length + bc . length];
+        long    vals [] = new long [cols . length];
+        int     n       = merge (ac, av, fa, bc, bv, fb, cols, vals);
+
+        int     as [] = rowSupport [a], bs [] = rowSupport [b];
+        long    aw [] = rowWeights [a], bw [] = rowWeights [b];
+        int     supp [] = new int [as . length + bs . length];
+        long    wts []  = new long [supp . length];
+        int     m       = merge (as, aw, fa, bs, bw, fb, supp, wts);
+
+        /* divide by the common factor */
+
+        long g = 0;
+
+        for (int i = 0; i < n && g != 1; i ++)
+            g = gcd (g, Math . abs (vals [i]));
+
+        for (int i = 0; i < m && g != 1; i ++)
+            g = gcd (g, wts [i]);
+
+        for (int i = 0; i < n; i ++)
+            vals [i] /= g;
+
+        for (int i = 0; i < m; i ++)
+            wts [i] /= g;
+
+        row . addElement (Arrays . copyOf (cols, n));
+        row . addElement (Arrays . copyOf (vals, n));
+        row . addElement (Arrays . copyOf (supp, m));
+        row . addElement (Arrays . copyOf (wts, m));
+
+        return row;
+
+    } /* end combineRows */
+
+
+    /*
+        add a row to the matrix and return its number.
+    */
+
+    private int addRow (int cols [], long vals [], int support [], long weights [])
+    {
+        if (numRows == alive . length)
+        {
+            int size = 2 * numRows;
+
+            rowColumns = (int [][]) Arrays . copyOf (rowColumns, size);
+            rowValues  = (long [][]) Arrays . copyOf (rowValues, size);
+            rowSupport = (int [][]) Arrays . copyOf (rowSupport, size);
+            rowWeights = (long [][]) Arrays . copyOf (rowWeights, size);
+            signature  = Arrays . copyOf (signature, size);
+            alive      = Arrays . copyOf (alive, size);
+            live       = Arrays . copyOf (live, size);
+        }
+
+        int r = numRows ++;
+
+        rowColumns [r] = cols;
+        rowValues [r]  = vals;
+        rowSupport [r] = support;
+        rowWeights [r] = weights;
+        signature [r]  = signatureOf (support);
+        alive [r]      = true;
+
+        for (int i = 0; i < cols . length; i ++)
+        {
+            int c = cols [i];
+
+            if (columnCount [c] == columnRows [c] . length)
+                columnRows [c] = Arrays . copyOf (columnRows [c], 2 * columnCount [c]);
+
+            columnRows [c][columnCount [c] ++] = r;
+
+            if (vals [i] > 0)
+                positive [c] ++;
+            else
+                negative [c] ++;
+        }
+
+        int f = support [0];
+
+        if (firstCount [f] == firstRows [f] . length)
+            firstRows [f] = Arrays . copyOf (firstRows [f], 2 * firstCount [f]);
+
+        firstRows [f][firstCount [f] ++] = r;
+
+        return r;
+
+    } /* end addRow */
+
+
+    /*
+        remove a row from the matrix.
+    */
+
+    private void killRow (int r)
+    {
+        alive [r] = false;
+
+        for (int i = 0; i < rowColumns [r] . length; i ++)
+        {
+            if (rowValues [r][i] > 0)
+                positive [rowColumns [r][i]] --;
+            else
+                negative [rowColumns [r][i]] --;
+        }
+
+    } /* end killRow */
+
+
+    /*
+        return the value of row r in column c.
+    */
+
+    private long value (int r, int c)
+    {
+        int i = Arrays . binarySearch (rowColumns [r], c);
+
+        return (i < 0) ? 0 : rowValues [r][i];
+
+    } /* end value */
+
+
+    /*
+        merge fa * (a, av) and fb * (b, bv), sparse vectors sorted by index,
+        into (c, cv), leaving out zeros. return the number of entries.
+    */
+
+    private static int merge (int a [], long av [], long fa, int b [], long bv [], long fb,
+                              int c [], long cv [])
+    {
+        int i = 0, j = 0, n = 0;
+
+        while (i < a . length || j < b . length)
+        {
+            long v;
+            int  k;
+
+            if (j == b . length || (i < a . length && a [i] < b [j]))
+            {
+                k = a [i];
+                v = Math . multiplyExact (fa, av [i ++]);
+            }
+            else if (i == a . length || b [j] < a [i])
+            {
+                k = b [j];
+                v = Math . multiplyExact (fb, bv [j ++]);
+            }
+            else
+            {
+                k = a [i];
+                v = Math . addExact (Math . multiplyExact (fa, av [i ++]),
+                                     Math . multiplyExact (fb, bv [j ++]));
+            }
+
+            if (v != 0)
+            {
+                c [n]  = k;
+                cv [n] = v;
+                n ++;
+            }
+        }
+
+        return n;
+
+    } /* end merge */
+
+
+    /*
+        merge row p of the producers with row p of the consumers of a place
+        into a sparse row (cols, vals) starting at k, and return its end.
+        both lists are sorted and may repeat a transition. transitions with
+        no input places (according to preStart) are skipped.
+    */
+
+    private static int mergeRow (int prod [], int ps, int pe, int cons [], int cs, int ce,
+                                 int preStart [], int cols [], long vals [], int k)
+    {
+        int start = k;
+
+        while (ps < pe || cs < ce)
+        {
+            int  t;
+            long v;
+
+            if (cs == ce || (ps < pe && prod [ps] <= cons [cs]))
+            {
+                t = prod [ps ++];
+                v = 1;
+            }
+            else
+            {
+                t = cons [cs ++];
+                v = -1;
+            }
+
+            if (preStart [t] == preStart [t + 1])
+                continue;
+
+            if (k > start && cols [k - 1] == t)
+            {
+                if ((vals [k - 1] += v) == 0)
+                    k --;
+            }
+            else
+            {
+                cols [k]   = t;
+                vals [k ++] = v;
+            }
+        }
+
+        return k;
+
+    } /* end mergeRow */
+
+
+    /*
+        return the sorted union of two sorted supports.
+    */
+
+    private static int [] unionSupport (int a [], int b [])
+    {
+        int c [] = new int [a . length + b . length];
+        int i = 0, j = 0, n = 0;
+
+        while (i < a . length || j < b . length)
+        {
+            if (j == b . length || (i < a . length && a [i] < b [j]))
+                c [n ++] = a [i ++];
+
+            else if (i == a . length || b [j] < a [i])
+                c [n ++] = b [j ++];
+
+            else
+            {
+                c [n ++] = a [i ++];
+                j ++;
+            }
+        }
+
+        return (n == c . length) ? c : Arrays . copyOf (c, n);
+
+    } /* end unionSupport */
+
+
+    /*
+        return true if sorted set a is within sorted set b.
+    */
+
+    private static boolean within (int a [], int b [])
+    {
+        int j = 0;
+
+        for (int i = 0; i < a . length; i ++)
+        {
+            while (j < b . length && b [j] < a [i])
+                j ++;
+
+            if (j == b . length || b [j] != a [i])
+                return false;
+        }
+
+        return true;
+
+    } /* end within */
+
+
+    /*
+        return the signature of a support.
+    */
+
+    private static long signatureOf (int support [])
+    {
+        long s = 0;
+
+        for (int i = 0; i < support . length; i ++)
+            s |= 1L << (support [i] & 63);
+
+        return s;
+
+    } /* end signatureOf */
+
+
+    /*
+        return the greatest common divisor of two non negative numbers.
+    */
+
+    private static long gcd (long a, long b)
+    {
+        while (b != 0)
+        {
+            long t = a % b;
+
+            a = b;
+            b = t;
+        }
+
+        return a;
+
+    } /* end gcd */
+
+
+} /* end InvariantSolver */
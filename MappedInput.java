@@ -0,0 +1,111 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+
+/*
+    MappedInput class - NetReader over a memory mapped file. The file is
+    mapped one window at a time, so files larger than the address space a
+    single mapping allows can be read, and the bytes come straight from the
+    page cache without being copied into a buffer first.
+*/
+
+
+class MappedInput extends NetReader
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* number of bytes mapped at once */
+
+    final static long   WINDOW_SIZE = 1L << 28;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* file mapped and its size */
+
+    private FileChannel channel;
+    private long        size;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - read the specified file channel.
+    */
+
+    public MappedInput (FileChannel c) throws IOException
+    {
+        super (c, ByteBuffer . allocate (0));
+
+        channel = c;
+        size    = c . size ();
+
+    } /* end MappedInput */
+
+
+    /*
+        go to the specified offset in the file.
+    */
+
+    public void seek (long offset)
+    {
+        buffer = ByteBuffer . allocate (0);
+        base   = offset;
+
+    } /* end seek */
+
+
+    /*
+        return the size of the file.
+    */
+
+    public long size ()
+    {
+        return size;
+
+    } /* end size */
+
+
+    /*
+        PROTECTED METHODS
+    */
+
+
+    /*
+        map the window starting after the bytes consumed. return false at the
+        end of the file.
+    */
+
+    protected boolean fill () throws IOException
+    {
+        long start = base + buffer . position ();
+
+        if (start >= size)
+            return false;
+
+        buffer = channel . map (FileChannel . MapMode . READ_ONLY, start,
+                                Math . min (WINDOW_SIZE, size - start));
+        base   = start;
+
+        return true;
+
+    } /* end fill */
+
+
+} /* end MappedInput */
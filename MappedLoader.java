@@ -0,0 +1,336 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+
+/*
+    MappedLoader class - loads a version 2 net file (see NetFormat) straight
+    into a CompiledNet, through a MappedInput. No place, transition or arc
+    object is created and the coordinates are skipped, so the time until a
+    simulation can start is mostly the time to read the file. The nets
+    loaded this way can be simulated and analysed, not edited.
+
+    A repeated arc is dropped, as when the file is loaded into objects, so
+    both ways give the same net. Counts and place ids are checked against
+    the size of the file before anything is allocated from them.
+*/
+
+
+class MappedLoader
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* largest place id allowed per byte of the file. a place takes at
+       least 4 bytes, so this leaves room for nets where most ids are free
+       while placeIndex stays within 32 times the size of the file */
+
+    final static int    IDS_PER_BYTE = 8;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net loaded, null if none */
+
+    private CompiledNet net;
+
+    /* outcome of the last load (a PetriNet status) */
+
+    private int         status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method.
+    */
+
+    public MappedLoader ()
+    {
+        net    = (CompiledNet) null;
+        status = 0;
+
+    } /* end MappedLoader */
+
+
+    /*
+        load the specified file and return a PetriNet status. files that are
+        not in the version 2 format give STATUS_BAD_INPUT_FILE.
+    */
+
+    public int load (String fileName)
+    {
+        FileChannel channel;
+
+        net = (CompiledNet) null;
+
+        try
+        {
+            channel = FileChannel . open (Paths . get (fileName), StandardOpenOption . READ);
+        }
+        catch (IOException e)
+        {
+            return status = PetriNet . STATUS_FILE_NOT_FOUND;
+        }
+
+        try
+        {
+            net    = decode (new MappedInput (channel));
+            status = PetriNet . STATUS_NORMAL;
+        }
+        catch (StreamCorruptedException e)
+        {
+            status = PetriNet . STATUS_BAD_INPUT_FILE;
+        }
+        catch (IOException e)
+        {
+            status = PetriNet . STATUS_READ_ERROR;
+        }
+        finally
+        {
+            try
+            {
+                channel . close ();
+            }
+            catch (IOException e)
+            {
+            }
+        }
+
+        return status;
+
+    } /* end load */
+
+
+    /*
+        return the outcome of the last load.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the net loaded, null if the load failed.
+    */
+
+    public CompiledNet compiledNet ()
+    {
+        return net;
+
+    } /* end compiledNet */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        decode the sections of the file into the arrays of a compiled net.
+        the places and transitions must come before the arcs.
+    */
+
+    private CompiledNet decode (MappedInput in) throws IOException
+    {
+        int placeIds []      = new int [0];
+        int placeIndex []    = new int [0];
+        int tokens []        = new int [0];
+        int transitionIds [] = new int [0];
+        int preStart []      = (int []) null;
+        int prePlaces []     = new int [0];
+        int postStart []     = (int []) null;
+        int postPlaces []    = new int [0];
+        boolean nodes        = false;
+
+        NetFormat . readHeader (in);
+
+        while (true)
+        {
+            int tag = in . read ();
+
+            if (tag < 0)
+                throw new StreamCorruptedException ("missing end section");
+
+            long length = in . readVarLong ();
+            long end    = in . position () + length;
+
+            if (tag == NetFormat . SECTION_END)
+                break;
+
+            if (tag == NetFormat . SECTION_PLACES)
+            {
+                int count = readCount (in, length);
+
+                placeIds = new int [count];
+                tokens   = new int [count];
+
+                for (int p = 0, id = -1; p < count; p ++)
+                {
+                    id += 1 + in . readVarInt ();
+
+                    if (id < 0 || id >= IDS_PER_BYTE * in . size ())
+                        throw new StreamCorruptedException ("bad place id");
+
+                    in . readZigzag ();
+                    in . readZigzag ();
+
+                    placeIds [p] = id;
+                    tokens [p]   = in . readVarInt ();
+                }
+
+                placeIndex = new int [(count == 0) ? 0 : placeIds [count - 1] + 1];
+
+                java . util . Arrays . fill (placeIndex, -1);
+
+                for (int p = 0; p < count; p ++)
+                    placeIndex [placeIds [p]] = p;
+
+                nodes = true;
+            }
+
+            else if (tag == NetFormat . SECTION_TRANSITIONS)
+            {
+                int count = readCount (in, length);
+
+                transitionIds = new int [count];
+
+                for (int t = 0, id = -1; t < count; t ++)
+                {
+                    id += 1 + in . readVarInt ();
+
+                    if (id < 0)
+                        throw new StreamCorruptedException ("bad transition id");
+
+                    in . readZigzag ();
+                    in . readZigzag ();
+
+                    transitionIds [t] = id;
+                }
+            }
+
+            else if (tag == NetFormat . SECTION_INPUT_ARCS ||
+                     tag == NetFormat . SECTION_OUTPUT_ARCS)
+            {
+                if (! nodes)
+                    throw new StreamCorruptedException ("arcs before places");
+
+                int count    = readCount (in, length);
+                int start [] = new int [transitionIds . length + 1];
+                int arcs []  = new int [count];
+                int last []  = new int [placeIds . length];
+                int n        = 0;
+
+                java . util . Arrays . fill (last, -1);
+
+                /* arcs come by increasing transition id, so the compressed
+                   rows fill in order; start counts them first. last holds
+                   the transition each place was last seen with */
+
+                for (int i = 0, id = 0, t = 0; i < count; i ++)
+                {
+                    id += in . readVarInt ();
+
+                    while (t < transitionIds . length && transitionIds [t] < id)
+                        t ++;
+
+                    int p = in . readVarInt ();
+
+                    if (t == transitionIds . length || transitionIds [t] != id ||
+                        p >= placeIndex . length || placeIndex [p] < 0)
+                        throw new StreamCorruptedException ("bad arc");
+
+                    int q = placeIndex [p];
+
+                    if (last [q] == t)
+                        continue;
+
+                    last [q]    = t;
+                    arcs [n ++] = q;
+                    start [t + 1] ++;
+                }
+
+                if (n < count)
+                    arcs = java . util . Arrays . copyOf (arcs, n);
+
+                for (int t = 0; t < transitionIds . length; t ++)
+                    start [t + 1] += start [t];
+
+                if (tag == NetFormat . SECTION_INPUT_ARCS)
+                {
+                    preStart  = start;
+                    prePlaces = arcs;
+                }
+                else
+                {
+                    postStart  = start;
+                    postPlaces = arcs;
+                }
+            }
+
+            else
+                in . skip (length);
+
+            if (in . position () != end)
+                throw new StreamCorruptedException ("bad section length");
+        }
+
+        /* transitions without arcs of one kind */
+
+        if (preStart == (int []) null || preStart . length != transitionIds . length + 1)
+        {
+            if (prePlaces . length > 0)
+                throw new StreamCorruptedException ("arcs before transitions");
+
+            preStart = new int [transitionIds . length + 1];
+        }
+
+        if (postStart == (int []) null || postStart . length != transitionIds . length + 1)
+        {
+            if (postPlaces . length > 0)
+                throw new StreamCorruptedException ("arcs before transitions");
+
+            postStart = new int [transitionIds . length + 1];
+        }
+
+        return new CompiledNet (placeIds, placeIndex, tokens, transitionIds,
+                                preStart, prePlaces, postStart, postPlaces);
+
+    } /* end decode */
+
+
+    /*
+        read the number of entries of a section of the specified length.
+        each entry takes at least a byte.
+    */
+
+    private static int readCount (NetReader in, long length) throws IOException
+    {
+        int count = in . readVarInt ();
+
+        if (count > length)
+            throw new StreamCorruptedException ("bad count");
+
+        return count;
+
+    } /* end readCount */
+
+
+} /* end MappedLoader */
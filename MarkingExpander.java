@@ -0,0 +1,412 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    MarkingExpander class - computes the successors of packed markings of a
+    compiled net. This is the firing rule shared by the state space
+    explorers: a transition is enabled when all its input places are marked
+    and it has at least one input place, and firing it takes one token from
+    each input place and puts one in each output place.
+
+    expandStubborn() only fires the enabled transitions of a stubborn set,
+    which is enough to find every reachable dead marking while skipping most
+    interleavings of independent transitions.
+
+    An expander keeps scratch arrays between calls, so each thread needs its
+    own.
+*/
+
+
+class MarkingExpander
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* packing of the markings */
+
+    private PackedMarking codec;
+
+    /* adjacency arrays of the net */
+
+    private int         preStart [];
+    private int         prePlaces [];
+    private int         postStart [];
+    private int         postPlaces [];
+    private int         consumerStart [];
+    private int         consumers [];
+    private int         producerStart [];
+    private int         producers [];
+
+    /* stamp of the last call each transition was looked at in, so that a
+       transition consuming from several marked places is checked once.
+       the stamp is shared with the stubborn set membership below */
+
+    private int         seen [];
+    private int         stamp;
+
+    /* transitions of the stubborn set being built, and stamp of the last
+       call each transition was added to the set in */
+
+    private int         stubborn [];
+    private int         member [];
+
+    /* successors found by the last call, one after the other */
+
+    private long        successors [];
+
+    /* transition fired to reach each successor */
+
+    private int         fired [];
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method
+    */
+
+    public MarkingExpander (CompiledNet net, PackedMarking c)
+    {
+        codec         = c;
+        preStart      = net . preStart ();
+        prePlaces     = net . prePlaces ();
+        postStart     = net . postStart ();
+        postPlaces    = net . postPlaces ();
+        consumerStart = net . consumerStart ();
+        consumers     = net . consumers ();
+        producerStart = net . producerStart ();
+        producers     = net . producers ();
+
+        seen       = new int [net . transitionNumber ()];
+        member     = new int [net . transitionNumber ()];
+        stubborn   = new int [net . transitionNumber ()];
+        stamp      = 0;
+        successors = new long [16 * codec . words ()];
+        fired      = new int [16];
+
+    } /* end MarkingExpander */
+
+
+    /*
+        compute the successors of the marking at offset off of the specified
+        array. return their number, or -1 if a place would get more tokens
+        than fit in its bits. the successors are then found in successors ().
+    */
+
+    public int expand (long marking [], int off)
+    {
+        int words = codec . words ();
+        int count = 0;
+
+        nextStamp ();
+
+        /* only transitions consuming from a marked place can be enabled */
+
+        for (int w = 0; w < words; w ++)
+        {
+            long bits = marking [off + w];
+
+            while (bits != 0)
+            {
+                int bit = Long . numberOfTrailingZeros (bits);
+                int p   = codec . placeAt (w, bit);
+
+                bits &= ~ codec . fieldMask (bit);
+
+                for (int i = consumerStart [p]; i < consumerStart [p + 1]; i ++)
+                {
+                    int t = consumers [i];
+
+                    if (seen [t] == stamp)
+                        continue;
+
+                    seen [t] = stamp;
+
+                    if (! enabled (marking, off, t))
+                        continue;
+
+                    if ((count = fire (marking, off, t, count)) < 0)
+                        return -1;
+                }
+            }
+        }
+
+        return count;
+
+    } /* end expand */
+
+
+    /*
+        same as expand, but only fire the enabled transitions of a stubborn
+        set. the set is built from one enabled transition by closing it under
+        two rules: with an enabled transition come all the transitions
+        sharing one of its input places (they could disable it), with a
+        disabled one come all the producers of one of its empty input places
+        (only they can enable it). this preserves all reachable dead markings.
+
+        if target is a place index, a marking where that place is empty also
+        gets all the producers of the target in its set, so that markings
+        marking the target stay reachable too. searches for such markings
+        must fully expand a marking whenever a reduced successor was already
+        seen, or they could ignore the target forever.
+    */
+
+    public int expandStubborn (long marking [], int off, int target)
+    {
+        int key = firstEnabled (marking, off);
+
+        if (key < 0)
+            return 0;
+
+        /* build the stubborn set */
+
+        nextStamp ();
+
+        int size = 0;
+
+        member [key]     = stamp;
+        stubborn [size ++] = key;
+
+        if (target >= 0 && codec . get (marking, off, target) == 0)
+            size = addAll (producerStart, producers, target, size);
+
+        for (int i = 0; i < size; i ++)
+        {
+            int t = stubborn [i];
+
+            if (enabled (marking, off, t))
+            {
+                for (int k = preStart [t]; k < preStart [t + 1]; k ++)
+                    size = addAll (consumerStart, consumers, prePlaces [k], size);
+            }
+            else
+            {
+                int p = scapegoat (marking, off, t);
+
+                if (p >= 0)
+                    size = addAll (producerStart, producers, p, size);
+            }
+        }
+
+        /* fire its enabled transitions */
+
+        int count = 0;
+
+        for (int i = 0; i < size; i ++)
+        {
+            int t = stubborn [i];
+
+            if (preStart [t] == preStart [t + 1] || ! enabled (marking, off, t))
+                continue;
+
+            if ((count = fire (marking, off, t, count)) < 0)
+                return -1;
+        }
+
+        return count;
+
+    } /* end expandStubborn */
+
+
+    /*
+        return the successors found by the last call to expand, successor i
+        at offset i * words.
+    */
+
+    public long [] successors ()
+    {
+        return successors;
+
+    } /* end successors */
+
+
+    /*
+        return the transitions fired to reach the successors found by the
+        last call to expand.
+    */
+
+    public int [] fired ()
+    {
+        return fired;
+
+    } /* end fired */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        move on to a new stamp, restarting the stamps when they wrap around.
+    */
+
+    private void nextStamp ()
+    {
+        if (++ stamp == 0)
+        {
+            java . util . Arrays . fill (seen, 0);
+            java . util . Arrays . fill (member, 0);
+            stamp = 1;
+        }
+
+    } /* end nextStamp */
+
+
+    /*
+        fire transition t from the marking into successor slot count.
+        return the new number of successors, or -1 if a place overflows.
+    */
+
+    private int fire (long marking [], int off, int t, int count)
+    {
+        int words = codec . words ();
+
+        if ((count + 1) * words > successors . length)
+            grow ();
+
+        int next = count * words;
+
+        System . arraycopy (marking, off, successors, next, words);
+
+        for (int k = preStart [t]; k < preStart [t + 1]; k ++)
+            codec . set (successors, next, prePlaces [k],
+                         codec . get (successors, next, prePlaces [k]) - 1);
+
+        for (int k = postStart [t]; k < postStart [t + 1]; k ++)
+        {
+            int tokens = codec . get (successors, next, postPlaces [k]) + 1;
+
+            if (tokens > codec . maxTokens ())
+                return -1;
+
+            codec . set (successors, next, postPlaces [k], tokens);
+        }
+
+        fired [count] = t;
+
+        return count + 1;
+
+    } /* end fire */
+
+
+    /*
+        return the first enabled transition found in the marking, or -1.
+    */
+
+    private int firstEnabled (long marking [], int off)
+    {
+        for (int w = 0; w < codec . words (); w ++)
+        {
+            long bits = marking [off + w];
+
+            while (bits != 0)
+            {
+                int bit = Long . numberOfTrailingZeros (bits);
+                int p   = codec . placeAt (w, bit);
+
+                bits &= ~ codec . fieldMask (bit);
+
+                for (int i = consumerStart [p]; i < consumerStart [p + 1]; i ++)
+                    if (enabled (marking, off, consumers [i]))
+                        return consumers [i];
+            }
+        }
+
+        return -1;
+
+    } /* end firstEnabled */
+
+
+    /*
+        add the transitions listed for place p in the specified index to the
+        stubborn set. return the new size of the set.
+    */
+
+    private int addAll (int start [], int transitions [], int p, int size)
+    {
+        for (int i = start [p]; i < start [p + 1]; i ++)
+        {
+            int u = transitions [i];
+
+            if (member [u] != stamp)
+            {
+                member [u]         = stamp;
+                stubborn [size ++] = u;
+            }
+        }
+
+        return size;
+
+    } /* end addAll */
+
+
+    /*
+        return the empty input place of disabled transition t with the fewest
+        producers, or -1 if t has no input place (it can never fire).
+    */
+
+    private int scapegoat (long marking [], int off, int t)
+    {
+        int best = -1;
+
+        for (int k = preStart [t]; k < preStart [t + 1]; k ++)
+        {
+            int p = prePlaces [k];
+
+            if (codec . get (marking, off, p) != 0)
+                continue;
+
+            if (best < 0 || producerStart [p + 1] - producerStart [p] <
+                            producerStart [best + 1] - producerStart [best])
+                best = p;
+        }
+
+        return best;
+
+    } /* end scapegoat */
+
+
+    /*
+        check if transition t is enabled in the packed marking.
+    */
+
+    private boolean enabled (long marking [], int off, int t)
+    {
+        for (int k = preStart [t]; k < preStart [t + 1]; k ++)
+            if (codec . get (marking, off, prePlaces [k]) == 0)
+                return false;
+
+        return true;
+
+    } /* end enabled */
+
+
+    /*
+        double the successor buffers.
+    */
+
+    private void grow ()
+    {
+        long tmp [] = new long [successors . length * 2];
+        System . arraycopy (successors, 0, tmp, 0, successors . length);
+        successors = tmp;
+
+        int f [] = new int [fired . length * 2];
+        System . arraycopy (fired, 0, f, 0, fired . length);
+        fired = f;
+
+    } /* end grow */
+
+
+} /* end MarkingExpander */
@@ -0,0 +1,293 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    MarkingSet class - set of packed markings. The markings are stored one
+    after the other in a single long array, in the order they were added,
+    and an open-addressing hash table of int indices into that array finds
+    them. No object is allocated per marking.
+*/
+
+
+class MarkingSet
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* initial number of markings the set has room for */
+
+    final static int    INITIAL_CAPACITY = 1024;
+
+    /* the table is grown when it gets more than 3/4 full */
+
+    final static int    LOAD_NUMERATOR   = 3;
+    final static int    LOAD_DENOMINATOR = 4;
+
+    /* largest table size, the largest power of two an array can have */
+
+    final static int    MAX_TABLE_SIZE   = 1 << 30;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of longs per marking */
+
+    private int         words;
+
+    /* the markings, marking i is at words i * words .. (i + 1) * words - 1 */
+
+    private long        store [];
+
+    /* number of markings in the set */
+
+    private int         size;
+
+    /* largest number of markings the set may hold */
+
+    private int         limit;
+
+    /* hash table - marking index + 1 in each slot, 0 for empty slots */
+
+    private int         table [];
+    private int         mask;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - markings of w longs, at most max markings. the
+        set also stops short of what the store and the largest table can
+        hold.
+    */
+
+    public MarkingSet (int w, int max)
+    {
+        words = w;
+        limit = Math . min (max, (Integer . MAX_VALUE - 8) / w);
+        limit = Math . min (limit, MAX_TABLE_SIZE / LOAD_DENOMINATOR * LOAD_NUMERATOR);
+        size  = 0;
+
+        int capacity = Math . min (INITIAL_CAPACITY, Math . max (1, limit));
+
+        store = new long [capacity * words];
+        table = new int [tableSize (capacity)];
+        mask  = table . length - 1;
+
+    } /* end MarkingSet */
+
+
+    /*
+        return the number of markings in the set.
+    */
+
+    public int size ()
+    {
+        return size;
+
+    } /* end size */
+
+
+    /*
+        return the array holding the markings. marking i starts at offset
+        i * words (). the array changes when the set grows.
+    */
+
+    public long [] store ()
+    {
+        return store;
+
+    } /* end store */
+
+
+    /*
+        return the number of longs per marking.
+    */
+
+    public int words ()
+    {
+        return words;
+
+    } /* end words */
+
+
+    /*
+        check if the marking found at offset off of the specified array is
+        in the set.
+    */
+
+    public boolean contains (long marking [], int off)
+    {
+        int slot = hash (marking, off, words) & mask;
+
+        for (int i = table [slot]; i != 0; i = table [slot])
+        {
+            if (equal (marking, off, (i - 1) * words))
+                return true;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return false;
+
+    } /* end contains */
+
+
+    /*
+        add the marking found at offset off of the specified array. return
+        its index if it was added, -1 - index if it was already there, or
+        Integer.MIN_VALUE if the set is full.
+    */
+
+    public int add (long marking [], int off)
+    {
+        int h    = hash (marking, off, words);
+        int slot = h & mask;
+
+        /* look for the marking, stopping at the first empty slot */
+
+        for (int i = table [slot]; i != 0; i = table [slot])
+        {
+            if (equal (marking, off, (i - 1) * words))
+                return - i;
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == limit)
+            return Integer . MIN_VALUE;
+
+        /* add it at the end of the store */
+
+        if ((long) (size + 1) * words > store . length)
+            growStore ();
+
+        System . arraycopy (marking, off, store, size * words, words);
+
+        table [slot] = ++ size;
+
+        if ((long) size * LOAD_DENOMINATOR > (long) table . length * LOAD_NUMERATOR)
+            growTable ();
+
+        return size - 1;
+
+    } /* end add */
+
+
+    /*
+        return the hash code of a packed marking.
+    */
+
+    public static int hash (long marking [], int off, int words)
+    {
+        long h = 0x9E3779B97F4A7C15L;
+
+        for (int i = 0; i < words; i ++)
+        {
+            h ^= marking [off + i];
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+        }
+
+        h *= 0x94D049BB133111EBL;
+
+        return (int) (h ^ (h >>> 32));
+
+    } /* end hash */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        compare a marking with the one stored at offset pos of the store.
+    */
+
+    private boolean equal (long marking [], int off, int pos)
+    {
+        for (int i = 0; i < words; i ++)
+            if (marking [off + i] != store [pos + i])
+                return false;
+
+        return true;
+
+    } /* end equal */
+
+
+    /*
+        double the store, without going past the limit.
+    */
+
+    private void growStore ()
+    {
+        long capacity = Math . min ((long) limit, (long) store . length / words * 2);
+
+        if (capacity * words > Integer . MAX_VALUE - 8)
+            capacity = (Integer . MAX_VALUE - 8) / words;
+
+        long tmp []   = new long [(int) capacity * words];
+
+        System . arraycopy (store, 0, tmp, 0, size * words);
+        store = tmp;
+
+    } /* end growStore */
+
+
+    /*
+        double the hash table, up to MAX_TABLE_SIZE, and re-insert all
+        markings.
+    */
+
+    private void growTable ()
+    {
+        if (table . length >= MAX_TABLE_SIZE)
+            return;
+
+        table = new int [table . length * 2];
+        mask  = table . length - 1;
+
+        for (int i = 0; i < size; i ++)
+        {
+            int slot = hash (store, i * words, words) & mask;
+
+            while (table [slot] != 0)
+                slot = (slot + 1) & mask;
+
+            table [slot] = i + 1;
+        }
+
+    } /* end growTable */
+
+
+    /*
+        return the power of two table size for the specified number of
+        markings.
+    */
+
+    private static int tableSize (int capacity)
+    {
+        int n = 16;
+
+        while ((long) n * LOAD_NUMERATOR < (long) capacity * LOAD_DENOMINATOR)
+            n *= 2;
+
+        return n;
+
+    } /* end tableSize */
+
+
+} /* end MarkingSet */
@@ -0,0 +1,116 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    MarkingSnapshot class - copy of the marking of a net, taken by
+    PetriNet.snapshotMarking and put back by PetriNet.restoreMarking. Place
+    ids are reused once freed, so the snapshot also records the place
+    object that had each id, and only these places get their tokens back.
+    For a net without place objects (loaded by MappedLoader) it records
+    the compiled net instead, and only fits that one.
+*/
+
+
+class MarkingSnapshot
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of tokens of each place id, 0 for unused ids */
+
+    private int         tokens [];
+
+    /* place object of each id when the snapshot was taken, null if the net
+       had none */
+
+    private Place       places [];
+
+    /* compiled net of a net without place objects, null otherwise */
+
+    private CompiledNet net;
+
+    /* false if a number of tokens is negative */
+
+    private boolean     valid;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method. the arrays belong to the snapshot from now on
+        and must not be modified.
+    */
+
+    public MarkingSnapshot (int t [], Place p [], CompiledNet n)
+    {
+        tokens = t;
+        places = p;
+        net    = n;
+        valid  = true;
+
+        for (int i = 0; i < tokens . length; i ++)
+            if (tokens [i] < 0)
+                valid = false;
+
+    } /* end MarkingSnapshot */
+
+
+    /*
+        return false if the snapshot has a negative number of tokens, in
+        which case it cannot be restored.
+    */
+
+    public boolean valid ()
+    {
+        return valid;
+
+    } /* end valid */
+
+
+    /*
+        return the number of tokens of each place id. the array must not be
+        modified.
+    */
+
+    public int [] tokens ()
+    {
+        return tokens;
+
+    } /* end tokens */
+
+
+    /*
+        return the place object of each id when the snapshot was taken, or
+        null if the net had none.
+    */
+
+    public Place [] places ()
+    {
+        return places;
+
+    } /* end places */
+
+
+    /*
+        return the compiled net the snapshot was taken from, for a net
+        without place objects, null otherwise.
+    */
+
+    public CompiledNet net ()
+    {
+        return net;
+
+    } /* end net */
+
+
+} /* end MarkingSnapshot */
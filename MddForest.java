@@ -0,0 +1,433 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.math.*;
+
+
+/*
+    MddForest class - multi-valued decision diagrams representing sets of
+    markings. Level k of a diagram decides the token number of place k, from
+    0 to a fixed bound, and every path from a root to terminal 1 is a marking
+    of the set. Diagrams are quasi-reduced: no level is skipped, and equal
+    nodes are shared through a unique table, so two sets are equal exactly
+    when their roots are.
+
+    Nodes live in flat int arrays (level of each node, and the children of
+    node n at n * domain () .. n * domain () + bound), the unique table is an
+    open-addressing array of node numbers and the union operation goes
+    through a lossy direct-mapped cache. Node 0 is the empty set, node 1 the
+    set holding the empty marking (terminal level).
+*/
+
+
+class MddForest
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* terminal nodes */
+
+    final static int    EMPTY = 0;
+    final static int    FULL  = 1;
+
+    /* initial number of nodes the arrays have room for */
+
+    final static int    INITIAL_NODES = 1 << 12;
+
+    /* number of entries of the operation caches */
+
+    final static int    CACHE_SIZE = 1 << 20;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of levels (places) and of values per level (bound + 1) */
+
+    private int         levels;
+    private int         domain;
+
+    /* level of each node, terminals are at level "levels" */
+
+    private int         level [];
+
+    /* children of each node */
+
+    private int         children [];
+
+    /* number of nodes and largest number allowed */
+
+    private int         nodes;
+    private int         maxNodes;
+
+    /* set when an operation could not create a node */
+
+    private boolean     full;
+
+    /* unique table - node number in each slot, 0 for empty slots */
+
+    private int         unique [];
+
+    /* union cache - operands and result of each entry */
+
+    private int         unionA [];
+    private int         unionB [];
+    private int         unionR [];
+
+    /* scratch children for the nodes being built, one row per level */
+
+    private int         scratch [];
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - l levels of token numbers 0 .. bound, at most
+        max nodes.
+    */
+
+    public MddForest (int l, int bound, int max)
+    {
+        levels   = l;
+        domain   = bound + 1;
+        maxNodes = max;
+        full     = false;
+
+        level    = new int [INITIAL_NODES];
+        children = new int [INITIAL_NODES * domain];
+        unique   = new int [INITIAL_NODES * 2];
+
+        /* terminal nodes */
+
+        level [EMPTY] = level [FULL] = levels;
+        nodes = 2;
+
+        unionA = new int [CACHE_SIZE];
+        unionB = new int [CACHE_SIZE];
+        unionR = new int [CACHE_SIZE];
+
+        java . util . Arrays . fill (unionA, -1);
+
+        scratch = new int [(levels + 1) * domain];
+
+    } /* end MddForest */
+
+
+    /*
+        return the number of values per level.
+    */
+
+    public int domain ()
+    {
+        return domain;
+
+    } /* end domain */
+
+
+    /*
+        return the number of levels.
+    */
+
+    public int levels ()
+    {
+        return levels;
+
+    } /* end levels */
+
+
+    /*
+        return the number of nodes created.
+    */
+
+    public int nodes ()
+    {
+        return nodes;
+
+    } /* end nodes */
+
+
+    /*
+        return true if the node limit was hit. results computed since are
+        not to be trusted.
+    */
+
+    public boolean full ()
+    {
+        return full;
+
+    } /* end full */
+
+
+    /*
+        return the level of node n.
+    */
+
+    public int level (int n)
+    {
+        return level [n];
+
+    } /* end level */
+
+
+    /*
+        return the child of node n for value v.
+    */
+
+    public int child (int n, int v)
+    {
+        return children [n * domain + v];
+
+    } /* end child */
+
+
+    /*
+        return the node at level l with the children found at offset off of
+        the specified array, creating it if needed. a node with no child
+        other than EMPTY is EMPTY itself.
+    */
+
+    public int node (int l, int ch [], int off)
+    {
+        boolean empty = true;
+
+        for (int v = 0; v < domain; v ++)
+            if (ch [off + v] != EMPTY)
+                empty = false;
+
+        if (empty)
+            return EMPTY;
+
+        int mask = unique . length - 1;
+        int slot = hash (l, ch, off) & mask;
+
+        for (int n = unique [slot]; n != 0; n = unique [slot])
+        {
+            if (level [n] == l && same (n, ch, off))
+                return n;
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (nodes == maxNodes)
+        {
+            full = true;
+            return EMPTY;
+        }
+
+        if (nodes == level . length)
+            grow ();
+
+        int n = nodes ++;
+
+        level [n] = l;
+        System . arraycopy (ch, off, children, n * domain, domain);
+
+        if (nodes * 2 > unique . length)
+            rehash ();
+        else
+            unique [slot] = n;
+
+        return n;
+
+    } /* end node */
+
+
+    /*
+        return the diagram of the set holding the single specified marking.
+    */
+
+    public int marking (int tokens [])
+    {
+        int n = FULL;
+
+        for (int l = levels - 1; l >= 0; l --)
+        {
+            int off = l * domain;
+
+            java . util . Arrays . fill (scratch, off, off + domain, EMPTY);
+            scratch [off + tokens [l]] = n;
+
+            n = node (l, scratch, off);
+        }
+
+        return n;
+
+    } /* end marking */
+
+
+    /*
+        return the union of two sets.
+    */
+
+    public int union (int a, int b)
+    {
+        if (a == EMPTY || a == b)
+            return b;
+
+        if (b == EMPTY)
+            return a;
+
+        /* the operation is symmetric, cache it one way only */
+
+        if (a > b)
+        {
+            int tmp = a;
+            a = b;
+            b = tmp;
+        }
+
+        int entry = (int) ((a * 0x9E3779B1L + b * 0x85EBCA77L) >>> 12) & (CACHE_SIZE - 1);
+
+        if (unionA [entry] == a && unionB [entry] == b)
+            return unionR [entry];
+
+        int l   = level [a];
+        int off = l * domain;
+
+        /* the recursive calls only use the scratch rows of deeper levels */
+
+        for (int v = 0; v < domain; v ++)
+            scratch [off + v] = union (children [a * domain + v], children [b * domain + v]);
+
+        int r = node (l, scratch, off);
+
+        unionA [entry] = a;
+        unionB [entry] = b;
+        unionR [entry] = r;
+
+        return r;
+
+    } /* end union */
+
+
+    /*
+        return the number of markings in a set.
+    */
+
+    public BigInteger count (int n)
+    {
+        return count (n, new BigInteger [nodes]);
+
+    } /* end count */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        count with a memo of the counts already known.
+    */
+
+    private BigInteger count (int n, BigInteger memo [])
+    {
+        if (n == EMPTY)
+            return BigInteger . ZERO;
+
+        if (n == FULL)
+            return BigInteger . ONE;
+
+        if (memo [n] != (BigInteger) null)
+            return memo [n];
+
+        BigInteger sum = BigInteger . ZERO;
+
+        for (int v = 0; v < domain; v ++)
+            sum = sum . add (count (children [n * domain + v], memo));
+
+        return memo [n] = sum;
+
+    } /* end count */
+
+
+    /*
+        hash code of a node.
+    */
+
+    private int hash (int l, int ch [], int off)
+    {
+        long h = l * 0x9E3779B97F4A7C15L;
+
+        for (int v = 0; v < domain; v ++)
+        {
+            h ^= ch [off + v];
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 29;
+        }
+
+        return (int) (h ^ (h >>> 32));
+
+    } /* end hash */
+
+
+    /*
+        compare the children of node n with the specified ones.
+    */
+
+    private boolean same (int n, int ch [], int off)
+    {
+        int base = n * domain;
+
+        for (int v = 0; v < domain; v ++)
+            if (children [base + v] != ch [off + v])
+                return false;
+
+        return true;
+
+    } /* end same */
+
+
+    /*
+        double the node arrays.
+    */
+
+    private void grow ()
+    {
+        int size = (int) Math . min ((long) level . length * 2, (long) maxNodes);
+
+        int l [] = new int [size];
+        System . arraycopy (level, 0, l, 0, nodes);
+        level = l;
+
+        int c [] = new int [size * domain];
+        System . arraycopy (children, 0, c, 0, nodes * domain);
+        children = c;
+
+    } /* end grow */
+
+
+    /*
+        double the unique table and re-insert all nodes.
+    */
+
+    private void rehash ()
+    {
+        unique = new int [unique . length * 2];
+
+        int mask = unique . length - 1;
+
+        for (int n = 2; n < nodes; n ++)
+        {
+            int slot = hash (level [n], children, n * domain) & mask;
+
+            while (unique [slot] != 0)
+                slot = (slot + 1) & mask;
+
+            unique [slot] = n;
+        }
+
+    } /* end rehash */
+
+
+} /* end MddForest */
@@ -0,0 +1,397 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+
+/*
+    NetFormat class - version 2 of the net file format. The original format
+    stores ids in single bytes and coordinates and token numbers in 16 bits;
+    this one has no such limits and is read and written in large blocks.
+
+    A file starts with the signature "TPN2" and the format version, then
+    holds sections, each a tag byte, the length of its data and the data.
+    Numbers are variable length (see NetReader), coordinates zigzag encoded;
+    ids are written as the difference with the previous one where they
+    come in increasing order.
+
+        places       count, then for each: id gap, x, y, tokens
+        transitions  count, then for each: id gap, x, y
+        input arcs   count, then for each: transition id gap, place id
+        output arcs  count, then for each: transition id gap, place id
+        end          no data
+
+    The id gap of the first node is its id, of the next ones the id minus
+    the previous id minus one; the arcs of a transition have a gap of 0
+    after the first. Sections with unknown tags are skipped.
+*/
+
+
+class NetFormat
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* file signature */
+
+    final static int    CODE1 = (int) 'T';
+    final static int    CODE2 = (int) 'P';
+    final static int    CODE3 = (int) 'N';
+    final static int    CODE4 = (int) '2';
+
+    /* format version written */
+
+    final static int    VERSION = 2;
+
+    /* section tags */
+
+    final static int    SECTION_END         = 0;
+    final static int    SECTION_PLACES      = 1;
+    final static int    SECTION_TRANSITIONS = 2;
+    final static int    SECTION_INPUT_ARCS  = 3;
+    final static int    SECTION_OUTPUT_ARCS = 4;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        return true if the four bytes are the signature of this format.
+    */
+
+    public static boolean signature (int b1, int b2, int b3, int b4)
+    {
+        return b1 == CODE1 && b2 == CODE2 && b3 == CODE3 && b4 == CODE4;
+
+    } /* end signature */
+
+
+    /*
+        load the net in the specified file into net, which should be empty.
+        return a PetriNet status.
+    */
+
+    public static int load (PetriNet net, String fileName)
+    {
+        FileChannel channel;
+
+        try
+        {
+            channel = FileChannel . open (Paths . get (fileName), StandardOpenOption . READ);
+        }
+        catch (IOException e)
+        {
+            return PetriNet . STATUS_FILE_NOT_FOUND;
+        }
+
+        try
+        {
+            return load (net, new NetReader (channel));
+        }
+        catch (StreamCorruptedException e)
+        {
+            return PetriNet . STATUS_BAD_INPUT_FILE;
+        }
+        catch (IOException e)
+        {
+            return PetriNet . STATUS_READ_ERROR;
+        }
+        finally
+        {
+            try
+            {
+                channel . close ();
+            }
+            catch (IOException e)
+            {
+            }
+        }
+
+    } /* end load */
+
+
+    /*
+        save net into the specified file. return a PetriNet status.
+    */
+
+    public static int save (PetriNet net, String fileName)
+    {
+        FileChannel channel;
+
+        try
+        {
+            channel = FileChannel . open (Paths . get (fileName), StandardOpenOption . WRITE,
+                                          StandardOpenOption . CREATE,
+                                          StandardOpenOption . TRUNCATE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            return PetriNet . STATUS_FILE_CREATE_ERROR;
+        }
+
+        try
+        {
+            save (net, new NetWriter (channel));
+            channel . close ();
+        }
+        catch (IOException e)
+        {
+            try
+            {
+                channel . close ();
+            }
+            catch (IOException e2)
+            {
+            }
+
+            return PetriNet . STATUS_WRITE_ERROR;
+        }
+
+        return PetriNet . STATUS_NORMAL;
+
+    } /* end save */
+
+
+    /*
+        read the signature and version, and return the version.
+    */
+
+    public static int readHeader (NetReader in) throws IOException
+    {
+        if (! signature (in . read (), in . read (), in . read (), in . read ()))
+            throw new StreamCorruptedException ("not a version 2 net file");
+
+        int version = in . readVarInt ();
+
+        if (version > VERSION)
+            throw new StreamCorruptedException ("unsupported version " + version);
+
+        return version;
+
+    } /* end readHeader */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        read the net from in.
+    */
+
+    private static int load (PetriNet net, NetReader in) throws IOException
+    {
+        readHeader (in);
+
+        while (true)
+        {
+            int tag = in . read ();
+
+            if (tag < 0)
+                throw new StreamCorruptedException ("missing end section");
+
+            long length = in . readVarLong ();
+            long end    = in . position () + length;
+
+            if (tag == SECTION_END)
+                break;
+
+            if (tag == SECTION_PLACES)
+            {
+                int count = in . readVarInt ();
+
+                for (int i = 0, id = -1; i < count; i ++)
+                {
+                    id += 1 + in . readVarInt ();
+
+                    int x = in . readZigzag ();
+                    int y = in . readZigzag ();
+
+                    if (! net . putPlace (id, x, y, in . readVarInt ()))
+                        throw new StreamCorruptedException ("bad place id");
+                }
+            }
+
+            else if (tag == SECTION_TRANSITIONS)
+            {
+                int count = in . readVarInt ();
+
+                for (int i = 0, id = -1; i < count; i ++)
+                {
+                    id += 1 + in . readVarInt ();
+
+                    int x = in . readZigzag ();
+
+                    if (! net . putTransition (id, x, in . readZigzag ()))
+                        throw new StreamCorruptedException ("bad transition id");
+                }
+            }
+
+            else if (tag == SECTION_INPUT_ARCS || tag == SECTION_OUTPUT_ARCS)
+            {
+                int count = in . readVarInt ();
+
+                for (int i = 0, t = 0; i < count; i ++)
+                {
+                    t += in . readVarInt ();
+
+                    int p = in . readVarInt ();
+
+                    boolean ok = (tag == SECTION_INPUT_ARCS) ? net . addInputArc (p, t) :
+                                                               net . addOutputArc (t, p);
+                    if (! ok)
+                        throw new StreamCorruptedException ("bad arc");
+                }
+            }
+
+            else
+                in . skip (length);
+
+            if (in . position () != end)
+                throw new StreamCorruptedException ("bad section length");
+        }
+
+        return PetriNet . STATUS_NORMAL;
+
+    } /* end load */
+
+
+    /*
+        write the net to out.
+    */
+
+    private static void save (PetriNet net, NetWriter out) throws IOException
+    {
+        int placeSlots      = net . placeSlots ();
+        int transitionSlots = net . transitionSlots ();
+
+        out . write (CODE1);
+        out . write (CODE2);
+        out . write (CODE3);
+        out . write (CODE4);
+        out . writeVarLong (VERSION);
+
+        /* places */
+
+        out . beginSection (SECTION_PLACES);
+        out . writeVarLong (net . placeNumber ());
+
+        for (int i = 0, last = -1; i < placeSlots; i ++)
+        {
+            Place place = net . resolvePlaceId (i);
+
+            if (place == (Place) null)
+                continue;
+
+            out . writeVarLong (i - last - 1);
+            out . writeZigzag (place . originX ());
+            out . writeZigzag (place . originY ());
+            out . writeVarLong (place . getTokenNumber ());
+
+            last = i;
+        }
+
+        out . endSection ();
+
+        /* transitions */
+
+        out . beginSection (SECTION_TRANSITIONS);
+        out . writeVarLong (net . transitionNumber ());
+
+        for (int i = 0, last = -1; i < transitionSlots; i ++)
+        {
+            Transition trans = net . resolveTransitionId (i);
+
+            if (trans == (Transition) null)
+                continue;
+
+            out . writeVarLong (i - last - 1);
+            out . writeZigzag (trans . originX ());
+            out . writeZigzag (trans . originY ());
+
+            last = i;
+        }
+
+        out . endSection ();
+
+        /* arcs, skipping the ones being removed */
+
+        for (int s = 0; s < 2; s ++)
+        {
+            boolean input = (s == 0);
+            int     count = 0;
+
+            for (int i = 0; i < transitionSlots; i ++)
+            {
+                Transition trans = net . resolveTransitionId (i);
+
+                if (trans != (Transition) null)
+                    count += liveArcs (trans, input);
+            }
+
+            out . beginSection (input ? SECTION_INPUT_ARCS : SECTION_OUTPUT_ARCS);
+            out . writeVarLong (count);
+
+            for (int i = 0, last = 0; i < transitionSlots; i ++)
+            {
+                Transition trans = net . resolveTransitionId (i);
+
+                if (trans == (Transition) null)
+                    continue;
+
+                int n = input ? trans . arcsInNumber () : trans . arcsOutNumber ();
+
+                for (int j = 0; j < n; j ++)
+                {
+                    Place place = input ? trans . inputPlace (j) : trans . outputPlace (j);
+
+                    if (place == (Place) null)
+                        continue;
+
+                    out . writeVarLong (i - last);
+                    out . writeVarLong (place . placeId ());
+
+                    last = i;
+                }
+            }
+
+            out . endSection ();
+        }
+
+        out . write (SECTION_END);
+        out . writeVarLong (0);
+        out . flush ();
+
+    } /* end save */
+
+
+    /*
+        return the number of input or output arcs of a transition that are
+        not being removed.
+    */
+
+    private static int liveArcs (Transition trans, boolean input)
+    {
+        int n     = input ? trans . arcsInNumber () : trans . arcsOutNumber ();
+        int count = 0;
+
+        for (int j = 0; j < n; j ++)
+            if ((input ? trans . inputPlace (j) : trans . outputPlace (j)) != (Place) null)
+                count ++;
+
+        return count;
+
+    } /* end liveArcs */
+
+
+} /* end NetFormat */
@@ -0,0 +1,234 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+
+/*
+    NetReader class - buffered byte input over a file channel, with the
+    variable length integers of the version 2 net files (see NetFormat):
+    unsigned numbers are written 7 bits at a time, low bits first, the top
+    bit of each byte telling whether more follow; signed numbers are zigzag
+    encoded first so that small negative numbers stay short.
+
+    Truncated or malformed input throws StreamCorruptedException.
+*/
+
+
+class NetReader
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* size of the read buffer */
+
+    final static int    BUFFER_SIZE = 1 << 16;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* channel read from, null if all the data is already in the buffer */
+
+    private FileChannel channel;
+
+    /* bytes read and not consumed yet */
+
+    protected ByteBuffer buffer;
+
+    /* number of bytes consumed before the start of the buffer */
+
+    protected long      base;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - read from the specified channel.
+    */
+
+    public NetReader (FileChannel c)
+    {
+        channel = c;
+        buffer  = ByteBuffer . allocate (BUFFER_SIZE);
+        base    = 0;
+
+        buffer . limit (0);
+
+    } /* end NetReader */
+
+
+    /*
+        return the next byte, or -1 at the end of the file.
+    */
+
+    public int read () throws IOException
+    {
+        if (! buffer . hasRemaining () && ! fill ())
+            return -1;
+
+        return buffer . get () & 0xff;
+
+    } /* end read */
+
+
+    /*
+        return the next byte without consuming it, or -1 at the end of the
+        file.
+    */
+
+    public int peek () throws IOException
+    {
+        if (! buffer . hasRemaining () && ! fill ())
+            return -1;
+
+        return buffer . get (buffer . position ()) & 0xff;
+
+    } /* end peek */
+
+
+    /*
+        return the next unsigned variable length number.
+    */
+
+    public long readVarLong () throws IOException
+    {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            if (! buffer . hasRemaining () && ! fill ())
+                throw new StreamCorruptedException ("truncated number");
+
+            int b = buffer . get ();
+
+            value |= (long) (b & 0x7f) << shift;
+
+            if (b >= 0)
+                return value;
+        }
+
+        throw new StreamCorruptedException ("number too long");
+
+    } /* end readVarLong */
+
+
+    /*
+        return the next unsigned variable length number, which must fit in a
+        non negative int.
+    */
+
+    public int readVarInt () throws IOException
+    {
+        long value = readVarLong ();
+
+        if (value < 0 || value > Integer . MAX_VALUE)
+            throw new StreamCorruptedException ("number out of range");
+
+        return (int) value;
+
+    } /* end readVarInt */
+
+
+    /*
+        return the next signed (zigzag encoded) variable length int.
+    */
+
+    public int readZigzag () throws IOException
+    {
+        long value = readVarLong ();
+
+        if (value < 0 || value > 0xffffffffL)
+            throw new StreamCorruptedException ("number out of range");
+
+        return (int) (value >>> 1) ^ - (int) (value & 1);
+
+    } /* end readZigzag */
+
+
+    /*
+        skip n bytes.
+    */
+
+    public void skip (long n) throws IOException
+    {
+        while (n > 0)
+        {
+            if (! buffer . hasRemaining () && ! fill ())
+                throw new StreamCorruptedException ("truncated section");
+
+            int k = (int) Math . min (n, buffer . remaining ());
+
+            buffer . position (buffer . position () + k);
+            n -= k;
+        }
+
+    } /* end skip */
+
+
+    /*
+        return the number of bytes consumed so far.
+    */
+
+    public long position ()
+    {
+        return base + buffer . position ();
+
+    } /* end position */
+
+
+    /*
+        PROTECTED METHODS
+    */
+
+
+    /*
+        constructor method - start with the specified buffer, for readers
+        bringing in the bytes their own way.
+    */
+
+    protected NetReader (FileChannel c, ByteBuffer b)
+    {
+        channel = c;
+        buffer  = b;
+        base    = 0;
+
+    } /* end NetReader */
+
+
+    /*
+        replace the consumed buffer with the next bytes of the file. return
+        false at the end of the file.
+    */
+
+    protected boolean fill () throws IOException
+    {
+        base += buffer . position ();
+
+        buffer . clear ();
+
+        int n = 0;
+
+        while (n == 0)
+            n = channel . read (buffer);
+
+        buffer . flip ();
+
+        return n > 0;
+
+    } /* end fill */
+
+
+} /* end NetReader */
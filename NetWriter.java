@@ -0,0 +1,199 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+
+/*
+    NetWriter class - buffered byte output over a file channel, writing the
+    variable length integers read back by NetReader. A section is collected
+    in memory between beginSection() and endSection(), then written after
+    its tag and length so that readers can skip the sections they do not
+    know.
+*/
+
+
+class NetWriter
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* size of the write buffer */
+
+    final static int    BUFFER_SIZE = 1 << 16;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* channel written to */
+
+    private FileChannel channel;
+
+    /* bytes not written to the channel yet */
+
+    private ByteBuffer  buffer;
+
+    /* current section data, null outside of a section */
+
+    private byte        section [];
+    private int         sectionLength;
+    private int         sectionTag;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - write to the specified channel.
+    */
+
+    public NetWriter (FileChannel c)
+    {
+        channel = c;
+        buffer  = ByteBuffer . allocate (BUFFER_SIZE);
+        section = (byte []) null;
+
+    } /* end NetWriter */
+
+
+    /*
+        write one byte.
+    */
+
+    public void write (int b) throws IOException
+    {
+        if (section != (byte []) null)
+        {
+            if (sectionLength == section . length)
+            {
+                byte tmp [] = new byte [section . length * 2];
+                System . arraycopy (section, 0, tmp, 0, sectionLength);
+                section = tmp;
+            }
+
+            section [sectionLength ++] = (byte) b;
+            return;
+        }
+
+        if (! buffer . hasRemaining ())
+            drain ();
+
+        buffer . put ((byte) b);
+
+    } /* end write */
+
+
+    /*
+        write an unsigned variable length number.
+    */
+
+    public void writeVarLong (long value) throws IOException
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            write ((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        write ((int) value);
+
+    } /* end writeVarLong */
+
+
+    /*
+        write a signed int, zigzag encoded.
+    */
+
+    public void writeZigzag (int value) throws IOException
+    {
+        writeVarLong (((value << 1) ^ (value >> 31)) & 0xffffffffL);
+
+    } /* end writeZigzag */
+
+
+    /*
+        start collecting a section with the specified tag.
+    */
+
+    public void beginSection (int tag)
+    {
+        section       = new byte [BUFFER_SIZE];
+        sectionLength = 0;
+        sectionTag    = tag;
+
+    } /* end beginSection */
+
+
+    /*
+        write the collected section after its tag and length.
+    */
+
+    public void endSection () throws IOException
+    {
+        byte data [] = section;
+        int  length  = sectionLength;
+
+        section = (byte []) null;
+
+        write (sectionTag);
+        writeVarLong (length);
+
+        for (int i = 0; i < length; )
+        {
+            if (! buffer . hasRemaining ())
+                drain ();
+
+            int n = Math . min (length - i, buffer . remaining ());
+
+            buffer . put (data, i, n);
+            i += n;
+        }
+
+    } /* end endSection */
+
+
+    /*
+        write out all the buffered bytes.
+    */
+
+    public void flush () throws IOException
+    {
+        drain ();
+
+    } /* end flush */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        write the buffer to the channel and empty it.
+    */
+
+    private void drain () throws IOException
+    {
+        buffer . flip ();
+
+        while (buffer . hasRemaining ())
+            channel . write (buffer);
+
+        buffer . clear ();
+
+    } /* end drain */
+
+
+} /* end NetWriter */
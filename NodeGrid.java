@@ -0,0 +1,410 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    NodeGrid class - uniform grid over the screen that finds the places and
+    transitions lying at a point or in a part of the screen without looking
+    at all of them. The screen is cut into square cells of CELL_SIZE pixels
+    and every node is listed in each of the cells its bounding rectangle
+    touches, or a line goes through (see PetriNet.listArc). A node listed
+    several times in a cell is there as many times. Nodes are numbered as
+    in the PNML import: 2 * id for place id and 2 * id + 1 for transition
+    id.
+
+    Only the cells holding nodes exist. Each is an int array whose first
+    element is the number of nodes listed after it, kept in an open
+    addressing hash table of the cell coordinates packed into a long, as in
+    MarkingSet, so that finding the nodes at a point costs the same whatever
+    the size of the net and allocates nothing.
+*/
+
+
+class NodeGrid
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* a cell is 2 ^ CELL_SHIFT pixels on each side - a little more than a
+       place, so that a node is listed in at most four cells */
+
+    final static int    CELL_SHIFT = 6;
+    final static int    CELL_SIZE  = 1 << CELL_SHIFT;
+
+    /* initial number of nodes a cell has room for */
+
+    final static int    CELL_NODES = 4;
+
+    /* initial number of slots of the hash table, a power of two */
+
+    final static int    SLOTS = 64;
+
+    /* the table is grown when it gets more than 3/4 full */
+
+    final static int    LOAD_NUMERATOR   = 3;
+    final static int    LOAD_DENOMINATOR = 4;
+
+    /* odd factor spreading the cell coordinates over the hash bits */
+
+    final static long   KEY_FACTOR = 0x9e3779b97f4a7c15L;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* hash table - the key of each slot and its cell, null for empty
+       slots */
+
+    private long        keys [];
+    private int         cells [][];
+    private int         mask;
+
+    /* number of cells */
+
+    private int         count;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method.
+    */
+
+    public NodeGrid ()
+    {
+        keys  = new long [SLOTS];
+        cells = new int [SLOTS][];
+        mask  = SLOTS - 1;
+        count = 0;
+
+    } /* end NodeGrid */
+
+
+    /*
+        list the specified node in the cells touched by the rectangle at x, y
+        of the specified width and height, edges included.
+    */
+
+    public void add (int node, int x, int y, int width, int height)
+    {
+        for (int cx = x >> CELL_SHIFT; cx <= (x + width) >> CELL_SHIFT; cx ++)
+            for (int cy = y >> CELL_SHIFT; cy <= (y + height) >> CELL_SHIFT; cy ++)
+                addToCell (cx, cy, node);
+
+    } /* end add */
+
+
+    /*
+        remove the specified node from the cells touched by the specified
+        rectangle, which must be the one it was added with.
+    */
+
+    public void remove (int node, int x, int y, int width, int height)
+    {
+        for (int cx = x >> CELL_SHIFT; cx <= (x + width) >> CELL_SHIFT; cx ++)
+            for (int cy = y >> CELL_SHIFT; cy <= (y + height) >> CELL_SHIFT; cy ++)
+                removeFromCell (cx, cy, node);
+
+    } /* end remove */
+
+
+    /*
+        list the specified node in the cells that come within the specified
+        margin of the line from x1, y1 to x2, y2 - and in a few more, the
+        cells are only worked out column by column.
+    */
+
+    public void addLine (int node, int x1, int y1, int x2, int y2, int margin)
+    {
+        line (node, x1, y1, x2, y2, margin, true);
+
+    } /* end addLine */
+
+
+    /*
+        remove the specified node from the cells along the specified line,
+        which must be the one it was added with.
+    */
+
+    public void removeLine (int node, int x1, int y1, int x2, int y2, int margin)
+    {
+        line (node, x1, y1, x2, y2, margin, false);
+
+    } /* end removeLine */
+
+
+    /*
+        return the nodes listed in the cell containing the specified point -
+        their number first, then the nodes - or null if there are none. the
+        array belongs to the grid and must not be changed.
+    */
+
+    public int [] nodesAt (int x, int y)
+    {
+        return cells [find (key (x >> CELL_SHIFT, y >> CELL_SHIFT))];
+
+    } /* end nodesAt */
+
+
+    /*
+        return the nodes listed in the cells touched by the specified
+        rectangle - their number first, then the nodes. a node listed in
+        several of these cells is returned as many times.
+    */
+
+    public int [] nodesIn (int x, int y, int width, int height)
+    {
+        int nodes [] = new int [CELL_NODES + 1];
+
+        for (int cx = x >> CELL_SHIFT; cx <= (x + width) >> CELL_SHIFT; cx ++)
+            for (int cy = y >> CELL_SHIFT; cy <= (y + height) >> CELL_SHIFT; cy ++)
+            {
+                int cell [] = cells [find (key (cx, cy))];
+
+                if (cell == (int []) null)
+                    continue;
+
+                if (nodes [0] + cell [0] >= nodes . length)
+                {
+                    int tmp [] = new int [Math . max (nodes . length * 2, nodes [0] + cell [0] + 1)];
+                    System . arraycopy (nodes, 0, tmp, 0, nodes [0] + 1);
+                    nodes = tmp;
+                }
+
+                System . arraycopy (cell, 1, nodes, nodes [0] + 1, cell [0]);
+                nodes [0] += cell [0];
+            }
+
+        return nodes;
+
+    } /* end nodesIn */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        list the specified node in, or remove it from, the cells along the
+        specified line. each column of cells the line goes through, margin
+        included, gets the cells between the lowest and highest points of
+        the line over the column widened by the margin.
+    */
+
+    private void line (int node, int x1, int y1, int x2, int y2, int margin, boolean add)
+    {
+        if (x2 < x1)
+        {
+            int tmp;
+
+            tmp = x1; x1 = x2; x2 = tmp;
+            tmp = y1; y1 = y2; y2 = tmp;
+        }
+
+        for (int cx = (x1 - margin) >> CELL_SHIFT; cx <= (x2 + margin) >> CELL_SHIFT; cx ++)
+        {
+            /* part of the line over the column */
+
+            int left  = Math . max (x1, (cx << CELL_SHIFT) - margin);
+            int right = Math . min (x2, (cx << CELL_SHIFT) + CELL_SIZE - 1 + margin);
+            int top, bottom;
+
+            if (x1 == x2)
+            {
+                top    = y1;
+                bottom = y2;
+            }
+            else
+            {
+                top    = y1 + (int) ((long) (y2 - y1) * (left - x1) / (x2 - x1));
+                bottom = y1 + (int) ((long) (y2 - y1) * (right - x1) / (x2 - x1));
+            }
+
+            if (bottom < top)
+            {
+                int tmp = top;
+
+                top    = bottom;
+                bottom = tmp;
+            }
+
+            for (int cy = (top - margin) >> CELL_SHIFT; cy <= (bottom + margin) >> CELL_SHIFT; cy ++)
+                if (add)
+                    addToCell (cx, cy, node);
+                else
+                    removeFromCell (cx, cy, node);
+        }
+
+    } /* end line */
+
+
+    /*
+        list the specified node in the specified cell.
+    */
+
+    private void addToCell (int cx, int cy, int node)
+    {
+        long key  = key (cx, cy);
+        int  slot = find (key);
+        int  cell [] = cells [slot];
+
+        if (cell == (int []) null)
+        {
+            cell = new int [CELL_NODES + 1];
+
+            keys [slot]  = key;
+            cells [slot] = cell;
+
+            if ((long) ++ count * LOAD_DENOMINATOR > (long) cells . length * LOAD_NUMERATOR)
+                growTable ();
+        }
+        else if (cell [0] + 1 == cell . length)
+        {
+            int tmp [] = new int [cell . length * 2];
+            System . arraycopy (cell, 0, tmp, 0, cell . length);
+            cell = tmp;
+            cells [slot] = cell;
+        }
+
+        cell [++ cell [0]] = node;
+
+    } /* end addToCell */
+
+
+    /*
+        remove the specified node once from the specified cell.
+    */
+
+    private void removeFromCell (int cx, int cy, int node)
+    {
+        int slot = find (key (cx, cy));
+        int cell [] = cells [slot];
+
+        if (cell == (int []) null)
+            return;
+
+        /* the order of the nodes does not matter - the last one takes the
+           place of the one removed */
+
+        for (int i = 1; i <= cell [0]; i ++)
+            if (cell [i] == node)
+            {
+                cell [i] = cell [cell [0] --];
+                break;
+            }
+
+        if (cell [0] == 0)
+            removeSlot (slot);
+
+    } /* end removeFromCell */
+
+
+    /*
+        return the slot of the cell with the specified key, or the empty slot
+        where it would go.
+    */
+
+    private int find (long key)
+    {
+        int slot = hash (key) & mask;
+
+        while (cells [slot] != (int []) null && keys [slot] != key)
+            slot = (slot + 1) & mask;
+
+        return slot;
+
+    } /* end find */
+
+
+    /*
+        empty the specified slot. the cells further along the same run of
+        slots are moved back when their search would go through it.
+    */
+
+    private void removeSlot (int slot)
+    {
+        cells [slot] = (int []) null;
+        count --;
+
+        for (int next = (slot + 1) & mask; cells [next] != (int []) null; next = (next + 1) & mask)
+        {
+            int home = hash (keys [next]) & mask;
+
+            /* leave the cell where it is if its home slot lies after the
+               emptied slot, up to it */
+
+            if (slot <= next ? (slot < home && home <= next) : (slot < home || home <= next))
+                continue;
+
+            keys [slot]  = keys [next];
+            cells [slot] = cells [next];
+            cells [next] = (int []) null;
+            slot = next;
+        }
+
+    } /* end removeSlot */
+
+
+    /*
+        double the hash table and re-insert all cells.
+    */
+
+    private void growTable ()
+    {
+        long oldKeys []    = keys;
+        int  oldCells [][] = cells;
+
+        keys  = new long [oldKeys . length * 2];
+        cells = new int [oldCells . length * 2][];
+        mask  = cells . length - 1;
+
+        for (int i = 0; i < oldCells . length; i ++)
+            if (oldCells [i] != (int []) null)
+            {
+                int slot = find (oldKeys [i]);
+
+                keys [slot]  = oldKeys [i];
+                cells [slot] = oldCells [i];
+            }
+
+    } /* end growTable */
+
+
+    /*
+        return the hash code of the specified key. the key is multiplied by
+        an odd number, so that neighbouring cells spread over the table.
+    */
+
+    private static int hash (long key)
+    {
+        long h = key * KEY_FACTOR;
+
+        return (int) (h ^ (h >>> 32));
+
+    } /* end hash */
+
+
+    /*
+        return the hash table key of the specified cell.
+    */
+
+    private static long key (int cx, int cy)
+    {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+
+    } /* end key */
+
+
+} /* end NodeGrid */
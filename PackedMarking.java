@@ -0,0 +1,203 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    PackedMarking class - packs the marking of a compiled net into a few
+    longs, with a fixed number of bits per place. Used by the state space
+    analysis to store millions of markings compactly.
+*/
+
+
+class PackedMarking
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of bits used for each place */
+
+    private int         bits;
+
+    /* largest token number that fits in a place */
+
+    private int         maxTokens;
+
+    /* number of places per long */
+
+    private int         perWord;
+
+    /* number of longs per packed marking */
+
+    private int         words;
+
+    /* word index and bit position of each place */
+
+    private int         wordOf [];
+    private int         shiftOf [];
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - places are given b bits each (1 to 31).
+    */
+
+    public PackedMarking (int places, int b)
+    {
+        bits      = b;
+        maxTokens = (1 << b) - 1;
+
+        perWord = 64 / b;
+
+        words   = Math . max (1, (places + perWord - 1) / perWord);
+        wordOf  = new int [places];
+        shiftOf = new int [places];
+
+        for (int p = 0; p < places; p ++)
+        {
+            wordOf [p]  = p / perWord;
+            shiftOf [p] = (p % perWord) * b;
+        }
+
+    } /* end PackedMarking */
+
+
+    /*
+        return the number of bits needed to store the specified token number.
+    */
+
+    public static int bitsFor (int tokens)
+    {
+        return Math . max (1, 32 - Integer . numberOfLeadingZeros (tokens));
+
+    } /* end bitsFor */
+
+
+    /*
+        return the number of bits per place.
+    */
+
+    public int bits ()
+    {
+        return bits;
+
+    } /* end bits */
+
+
+    /*
+        return the largest token number that can be stored.
+    */
+
+    public int maxTokens ()
+    {
+        return maxTokens;
+
+    } /* end maxTokens */
+
+
+    /*
+        return the number of longs per packed marking.
+    */
+
+    public int words ()
+    {
+        return words;
+
+    } /* end words */
+
+
+    /*
+        return the place stored at the specified bit of the specified word of
+        a packed marking.
+    */
+
+    public int placeAt (int word, int bit)
+    {
+        return word * perWord + bit / bits;
+
+    } /* end placeAt */
+
+
+    /*
+        return the mask of all the bits of the place stored at the specified
+        bit of a word.
+    */
+
+    public long fieldMask (int bit)
+    {
+        return (long) maxTokens << (bit / bits * bits);
+
+    } /* end fieldMask */
+
+
+    /*
+        return the token number of place p in the marking at offset off.
+    */
+
+    public int get (long marking [], int off, int p)
+    {
+        return (int) (marking [off + wordOf [p]] >>> shiftOf [p]) & maxTokens;
+
+    } /* end get */
+
+
+    /*
+        set the token number of place p in the marking at offset off.
+        the token number must be between 0 and maxTokens ().
+    */
+
+    public void set (long marking [], int off, int p, int tokens)
+    {
+        int w = off + wordOf [p];
+
+        marking [w] = (marking [w] & ~((long) maxTokens << shiftOf [p])) |
+                      ((long) tokens << shiftOf [p]);
+
+    } /* end set */
+
+
+    /*
+        pack the current marking of the specified net at offset off.
+        return false if a place holds more tokens than fit.
+    */
+
+    public boolean pack (CompiledNet net, long marking [], int off)
+    {
+        for (int i = 0; i < words; i ++)
+            marking [off + i] = 0;
+
+        for (int p = 0; p < net . placeNumber (); p ++)
+        {
+            if (net . tokens (p) > maxTokens)
+                return false;
+
+            set (marking, off, p, net . tokens (p));
+        }
+
+        return true;
+
+    } /* end pack */
+
+
+    /*
+        unpack the marking at offset off into an array of token numbers.
+    */
+
+    public void unpack (long marking [], int off, int tokens [])
+    {
+        for (int p = 0; p < tokens . length; p ++)
+            tokens [p] = get (marking, off, p);
+
+    } /* end unpack */
+
+
+} /* end PackedMarking */
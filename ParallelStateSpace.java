@@ -0,0 +1,255 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.concurrent.*;
+
+
+/*
+    ParallelStateSpace class - enumerates the reachable markings of a compiled
+    net on several threads. The exploration goes level by level: the markings
+    of the current level are split into ranges by FrontierTask and expanded on
+    a work-stealing fork-join pool, the new markings found by each range make
+    up the next level. Markings are shared through a ConcurrentMarkingSet.
+
+    Successors come from MarkingExpander, as in StateSpace, so a complete
+    exploration finds the same state, edge and deadlock counts whatever the
+    number of threads.
+*/
+
+
+class ParallelStateSpace
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net being explored */
+
+    private CompiledNet net;
+
+    /* packing of the markings */
+
+    private PackedMarking codec;
+
+    /* reachable markings found so far */
+
+    private ConcurrentMarkingSet markings;
+
+    /* number of worker threads */
+
+    private int         threads;
+
+    /* expander of each worker thread */
+
+    private ThreadLocal expanders;
+
+    /* number of firings explored and of markings with no enabled transition */
+
+    private long        edges;
+    private long        deadlocks;
+
+    /* outcome of the exploration, 0 while running. set by the workers when
+       they hit the state limit or a token overflow */
+
+    private volatile int status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - explore at most maxStates markings on the
+        specified number of threads, with enough bits per place for the
+        initial marking and at least StateSpace.DEFAULT_BITS.
+    */
+
+    public ParallelStateSpace (CompiledNet n, int maxStates, int t)
+    {
+        int max = 0;
+
+        for (int p = 0; p < n . placeNumber (); p ++)
+            max = Math . max (max, n . tokens (p));
+
+        net       = n;
+        threads   = Math . max (1, t);
+        codec     = new PackedMarking (net . placeNumber (),
+                        Math . max (StateSpace . DEFAULT_BITS, PackedMarking . bitsFor (max)));
+        markings  = new ConcurrentMarkingSet (codec . words (), maxStates, threads * 64);
+        expanders = new ThreadLocal ();
+        edges     = deadlocks = 0;
+        status    = 0;
+
+    } /* end ParallelStateSpace */
+
+
+    /*
+        explore the reachable markings and return the status (one of the
+        StateSpace.STATUS_ constants).
+    */
+
+    public int explore ()
+    {
+        int  words  = codec . words ();
+        long level [] = new long [words];
+        int  count  = 1;
+
+        if (! codec . pack (net, level, 0))
+            return status = StateSpace . STATUS_TOKEN_OVERFLOW;
+
+        markings . add (level, 0);
+
+        ForkJoinPool pool = new ForkJoinPool (threads);
+
+        try
+        {
+            while (count > 0 && status == 0)
+            {
+                FrontierTask task = new FrontierTask (this, level, 0, count);
+
+                pool . invoke (task);
+
+                edges     += task . edges ();
+                deadlocks += task . deadlocks ();
+
+                /* the markings found make up the next level */
+
+                count = task . found ();
+                level = new long [count * words];
+
+                task . collect (level, 0);
+            }
+        }
+        finally
+        {
+            pool . shutdown ();
+        }
+
+        if (status == 0)
+            status = StateSpace . STATUS_COMPLETE;
+
+        return status;
+
+    } /* end explore */
+
+
+    /*
+        return the outcome of the exploration.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of reachable markings found.
+    */
+
+    public int states ()
+    {
+        return markings . size ();
+
+    } /* end states */
+
+
+    /*
+        return the number of firings explored.
+    */
+
+    public long edges ()
+    {
+        return edges;
+
+    } /* end edges */
+
+
+    /*
+        return the number of reachable markings with no enabled transition.
+    */
+
+    public long deadlocks ()
+    {
+        return deadlocks;
+
+    } /* end deadlocks */
+
+
+    /*
+        return the number of longs per packed marking.
+    */
+
+    public int words ()
+    {
+        return codec . words ();
+
+    } /* end words */
+
+
+    /*
+        return the expander of the calling thread.
+    */
+
+    public MarkingExpander expander ()
+    {
+        MarkingExpander expander = (MarkingExpander) expanders . get ();
+
+        if (expander == (MarkingExpander) null)
+        {
+            expander = new MarkingExpander (net, codec);
+            expanders . set (expander);
+        }
+
+        return expander;
+
+    } /* end expander */
+
+
+    /*
+        add a marking to the shared set. return 1 if it is new, 0 if it was
+        already there, -1 if the exploration has to stop.
+    */
+
+    public int add (long marking [], int off)
+    {
+        int result = markings . add (marking, off);
+
+        if (result < 0)
+            stop (StateSpace . STATUS_STATE_LIMIT);
+
+        return result;
+
+    } /* end add */
+
+
+    /*
+        stop the exploration with the specified status.
+    */
+
+    public void stop (int s)
+    {
+        if (status == 0)
+            status = s;
+
+    } /* end stop */
+
+
+    /*
+        return true once the exploration has to stop.
+    */
+
+    public boolean stopped ()
+    {
+        return status != 0;
+
+    } /* end stopped */
+
+
+} /* end ParallelStateSpace */
@@ -131,13 +131,41 @@ public class Petri extends Panel
 
     final static int    CLICK_REMOVE_TOKEN            = 13;
 
+    /* moving through a trace */
+
+    final static int    CLICK_REPLAY                  = 14;
+
     /* applet's dimensions */
 
     final static int    DIMENSION   = 500;
 
     /* height of the button control area */
 
-    final static int    CONTROL_HEIGHT = 75;
+    final static int    CONTROL_HEIGHT = 100;
+
+    /* zoom factor of the Zoom In and Zoom Out buttons, and the zooms
+       allowed */
+
+    final static double ZOOM_STEP = 2.0;
+    final static double MIN_SCALE = 1.0 / 32;
+    final static double MAX_SCALE = 4.0;
+
+    /* below that zoom the labels, the numbers of tokens and the arrow heads
+       are not drawn */
+
+    final static double DETAIL_SCALE = 0.5;
+
+    /* number of pixels an arrow key moves the view by */
+
+    final static int    PAN_STEP = 50;
+
+    /* number of firings done by a shift-click while running simulation */
+
+    final static long   BATCH_STEPS = 1000;
+
+    /* number of frames shown when moving through a trace */
+
+    final static long   REPLAY_FRAMES = 100;
 
 
     /*
@@ -161,6 +189,20 @@ public class Petri extends Panel
 
     private boolean     clearAll;
 
+    /* image of the structure of the net - what only changes with editing -
+       and image the tokens and highlights are composed on before being
+       shown, null until the panel can create images */
+
+    private Image       structure;
+    private Image       buffer;
+
+    /* view of the net: number of pixels per net unit, and net coordinates
+       shown at the top left corner of the panel */
+
+    private double      scale;
+    private int         viewX;
+    private int         viewY;
+
 
     /* if set - draggin of a place/trans is in progress */
 
@@ -192,6 +234,9 @@ public class Petri extends Panel
         clickState = 0;
         clearAll   = true;
         dragging   = false;
+        scale      = 1.0;
+        viewX      = 0;
+        viewY      = 0;
 
         /* create help and network class instances */
 
@@ -206,15 +251,16 @@ public class Petri extends Panel
 
         buttons = new Panel ();
 
-        /* set layout within the panel to 5 elements per row */
+        /* set layout within the panel to 6 elements per row */
 
-        buttons . setLayout (new GridLayout (0, 5));
+        buttons . setLayout (new GridLayout (0, 6));
 
         /* add all buttons */
 
         buttons . add (new Button ("New"));
         buttons . add (new Button ("Load"));
         buttons . add (new Button ("Save"));
+        buttons . add (new Button ("Replay"));
         buttons . add (new Button ("About"));
         buttons . add (new Button ("Quit"));
 
@@ -223,12 +269,19 @@ public class Petri extends Panel
         buttons . add (new Button ("Add Transition"));
         buttons . add (new Button ("Add Arc"));
         buttons . add (new Button ("Run"));
+        buttons . add (new Button ("Record"));
 
         buttons . add (new Button ("Del Place"));
         buttons . add (new Button ("Del Token"));
         buttons . add (new Button ("Del Transition"));
         buttons . add (new Button ("Del Arc"));
         buttons . add (new Button ("Stop"));
+        buttons . add (new Label (""));
+
+        buttons . add (new Button ("Undo"));
+        buttons . add (new Button ("Redo"));
+        buttons . add (new Button ("Zoom In"));
+        buttons . add (new Button ("Zoom Out"));
 
         /* add button panel to applet panel */
 
@@ -302,6 +355,18 @@ public class Petri extends Panel
     } /* end layout */
 
 
+    /*
+        the whole area repainted is drawn by paint from the buffer, so it
+        does not have to be cleared first.
+    */
+
+    public void update (Graphics g)
+    {
+        paint (g);
+
+    } /* end update */
+
+
     /*
         this method is called when repaint of the panle is requested
     */
@@ -310,21 +375,97 @@ public class Petri extends Panel
     {
         Rectangle size = bounds ();
 
-        /* if cleanup was requested - clear the entire panel */
+        /* the images have the size of the panel */
 
-        if (clearAll)
+        if (structure == (Image) null ||
+            structure . getWidth (this) != size . width ||
+            structure . getHeight (this) != size . height)
         {
-            clearAll = false;
+            structure = buffer = (Image) null;
+
+            if (size . width > 0 && size . height > 0)
+            {
+                structure = createImage (size . width, size . height);
+                buffer    = createImage (size . width, size . height);
+            }
 
+            clearAll = true;
+        }
+
+        /* no images yet - paint directly */
+
+        if (structure == (Image) null || buffer == (Image) null)
+        {
             g . setColor (Color . lightGray);
             g . fillRect (0, 0, size . width, size . height);
+
+            Graphics n = toNet (g);
+
+            buttons . paint (g);
+            network . paintStructure (n, scale >= DETAIL_SCALE);
+            network . paintMarks (n, scale >= DETAIL_SCALE);
+            help    . paint (g, size . width, size . height);
+
+            n . dispose ();
+
+            return;
+        }
+
+        /* redraw the part of the structure that changed - all of it if
+           cleanup was requested */
+
+        Rectangle region;
+
+        if (clearAll || network . allStale ())
+            region = new Rectangle (0, 0, size . width, size . height);
+        else
+            region = toScreen (network . staleRegion ());
+
+        clearAll = false;
+
+        if (region != (Rectangle) null)
+        {
+            Graphics s = structure . getGraphics ();
+
+            s . setFont (g . getFont ());
+            s . clipRect (region . x, region . y, region . width, region . height);
+            s . setColor (Color . lightGray);
+            s . fillRect (region . x, region . y, region . width, region . height);
+
+            Graphics n = toNet (s);
+
+            network . paintStructure (n, scale >= DETAIL_SCALE);
+
+            n . dispose ();
+            s . dispose ();
         }
 
-        /* repaint the components */
+        network . clearStale ();
+
+        /* put the tokens, the highlights and the hint line over the
+           structure, then show the result */
+
+        Rectangle clip = g . getClipBounds ();
+
+        if (clip == (Rectangle) null)
+            clip = new Rectangle (0, 0, size . width, size . height);
+
+        Graphics b = buffer . getGraphics ();
+
+        b . setFont (g . getFont ());
+        b . clipRect (clip . x, clip . y, clip . width, clip . height);
+        b . drawImage (structure, 0, 0, this);
+
+        Graphics n = toNet (b);
+
+        network . paintMarks (n, scale >= DETAIL_SCALE);
+        help    . paint (b, size . width, size . height);
+
+        n . dispose ();
+        b . dispose ();
 
         buttons . paint (g);
-        network . paint (g, CONTROL_HEIGHT + 5);
-        help    . paint (g, size . width, size . height);
+        g . drawImage (buffer, 0, 0, this);
 
     } /* end paint */
 
@@ -335,11 +476,20 @@ public class Petri extends Panel
 
     public boolean handleEvent (Event evt)
     {
+        /* position of the mouse in net coordinates */
+
+        int x = netX (evt . x);
+        int y = netY (evt . y);
+
         switch (evt . id)
         {
 
             case Event . MOUSE_DOWN:
 
+                /* take the focus so that the arrow keys move the view */
+
+                requestFocus ();
+
                 switch (clickState)
                 {
                     case CLICK_PLACE_ADD:
@@ -347,7 +497,7 @@ public class Petri extends Panel
                         /* tell network to create a new place at the location
                            of the mouse click */
 
-                        if (! network . addPlace (evt . x, evt . y))
+                        if (! network . addPlace (x, y))
                             help . setHelp (help . MAX_PLACES);
                         else
                             help . setHelp (help . EMPTY);
@@ -359,7 +509,7 @@ public class Petri extends Panel
                         /* tell network to remove a place at the location
                            of the mouse click */
 
-                        if (! network . removePlace (evt . x, evt . y))
+                        if (! network . removePlace (x, y))
                             help . setHelp (help . NO_PLACE);
 
                         break;
@@ -369,7 +519,7 @@ public class Petri extends Panel
                         /* tell network to create a new place at the location
                            of the mouse click */
 
-                        if (! network . addTransition (evt . x, evt . y))
+                        if (! network . addTransition (x, y))
                             help . setHelp (help . MAX_TRANSITIONS);
                         else
                             help . setHelp (help . EMPTY);
@@ -381,7 +531,7 @@ public class Petri extends Panel
                         /* tell network to remove a place at the location
                            of the mouse click */
 
-                        if (! network . removeTransition (evt . x, evt . y))
+                        if (! network . removeTransition (x, y))
                             help . setHelp (help . NO_TRANSITION);
 
                         break;
@@ -392,14 +542,14 @@ public class Petri extends Panel
                            of the mouse click as place for the upcoming
                            arc */
 
-                        if ( network . selectNewArcPlace (evt . x, evt . y)) {
+                        if ( network . selectNewArcPlace (x, y)) {
 			    help . setHelp (help . SELECT_TRANSITION);
 			    
 			    clickState = CLICK_TRANS_END_NEW_ARC;
 			}
 			else
                         {
-			    if ( network . selectNewArcTransition (evt . x, evt . y)) {
+			    if ( network . selectNewArcTransition (x, y)) {
 				help . setHelp (help . SELECT_PLACE);
 				
 				clickState = CLICK_PLACE_END_NEW_ARC;
@@ -410,7 +560,7 @@ public class Petri extends Panel
 			    }
                         }
 
-                        repaint ();
+                        repaintChanged ();
 
                         return true;
 
@@ -420,7 +570,7 @@ public class Petri extends Panel
                            of the mouse click as end for the upcoming
                            arc */
 
-                        if (! network . selectNewArcTransition (evt . x, evt . y))
+                        if (! network . selectNewArcTransition (x, y))
                         {
                             help . setHelp (help . NO_TRANSITION);
                             break;
@@ -440,7 +590,7 @@ public class Petri extends Panel
                            of the mouse click as end for the upcoming
                            arc */
 
-                        if (! network . selectNewArcPlace (evt . x, evt . y))
+                        if (! network . selectNewArcPlace (x, y))
                         {
                             help . setHelp (help . NO_PLACE);
                             break;
@@ -460,14 +610,14 @@ public class Petri extends Panel
                            of the mouse click as place for the upcoming
                            arc */
 
-                        if ( network . selectNewArcPlace (evt . x, evt . y)) {
+                        if ( network . selectNewArcPlace (x, y)) {
 			    help . setHelp (help . SELECT_TRANSITION);
 			    
 			    clickState = CLICK_TRANS_END_REMOVE_ARC;
 			}
 			else
                         {
-			    if ( network . selectNewArcTransition (evt . x, evt . y)) {
+			    if ( network . selectNewArcTransition (x, y)) {
 				help . setHelp (help . SELECT_PLACE);
 				
 				clickState = CLICK_PLACE_END_REMOVE_ARC;
@@ -478,7 +628,7 @@ public class Petri extends Panel
 			    }
                         }
 
-                        repaint ();
+                        repaintChanged ();
 
                         return true;
 
@@ -488,7 +638,7 @@ public class Petri extends Panel
                            of the mouse click as end for the upcoming
                            arc */
 
-                        if (! network . selectNewArcTransition (evt . x, evt . y))
+                        if (! network . selectNewArcTransition (x, y))
                         {
                             help . setHelp (help . NO_TRANSITION);
                             break;
@@ -508,7 +658,7 @@ public class Petri extends Panel
                            of the mouse click as end for the upcoming
                            arc */
 
-                        if (! network . selectNewArcPlace (evt . x, evt . y))
+                        if (! network . selectNewArcPlace (x, y))
                         {
                             help . setHelp (help . NO_PLACE);
                             break;
@@ -525,9 +675,19 @@ public class Petri extends Panel
                     case CLICK_RUN_SIMULATION:
 
                         /* invoke runSimulation method on network until it returns
-                           false */
+                           false. shift-click fires a whole batch of transitions
+                           and only shows the marking reached at the end */
 
-                        switch (network . runSimulation ())
+                        int status;
+
+                        if (evt . shiftDown ())
+                            status = network . run (BATCH_STEPS) . deadlock () ?
+                                     PetriNet . STATUS_NO_ACTIVABLE_TRANSITION :
+                                     PetriNet . STATUS_NORMAL;
+                        else
+                            status = network . runSimulation ();
+
+                        switch (status)
                         {
                             case PetriNet.STATUS_NO_ACTIVABLE_TRANSITION:
                                 help . setHelp (help . NO_ACTIVABLE_TRANSITION);
@@ -535,18 +695,47 @@ public class Petri extends Panel
 
                             case PetriNet.STATUS_NORMAL:
                             default:
-                                repaint ();
+                                repaintChanged ();
                                 return true;
                         }
 
                         break;
 
+                    case CLICK_REPLAY:
+
+                        /* show the next frame of the trace, or the previous
+                           one on shift-click. the steps in between are
+                           replayed without being shown */
+
+                        TraceReplayer replayer = network . replayer ();
+
+                        if (replayer == (TraceReplayer) null)
+                            break;
+
+                        long frame = Math . max (1, replayer . steps () / REPLAY_FRAMES);
+                        long step  = replayer . position () + (evt . shiftDown () ? - frame : frame);
+
+                        if (network . replayTo (step) != PetriNet . STATUS_NORMAL)
+                        {
+                            help . setHelp (help . FILE_READ_ERROR);
+                            break;
+                        }
+
+                        if (replayer . position () == replayer . steps ())
+                            help . setHelp (help . TRACE_END);
+                        else
+                            help . setHelp (help . REPLAY_INSTRUCTIONS);
+
+                        repaintChanged ();
+
+                        return true;
+
                     case CLICK_ADD_TOKEN:
 
                         /* tell network to add a token to the place at the location
                            of the mouse click */
 
-                        if (! network . addTokenToPlaceAt (evt . x, evt . y))
+                        if (! network . addTokenToPlaceAt (x, y))
                         {
                             help . setHelp (help . NO_PLACE);
                             break;
@@ -561,7 +750,7 @@ public class Petri extends Panel
                         /* tell network to remove a token from the place at the location
                            of the mouse click */
 
-                        if (! network . removeTokenFromPlaceAt (evt . x, evt . y))
+                        if (! network . removeTokenFromPlaceAt (x, y))
                         {
                             help . setHelp (help . NO_PLACE_OR_NO_TOKEN);
                             break;
@@ -576,7 +765,7 @@ public class Petri extends Panel
 
                         /* see if there is a state to drag */
 
-                        dragging = network . selectDrag (evt . x, evt . y);
+                        dragging = network . selectDrag (x, y);
 
                         break;
                 }
@@ -591,7 +780,7 @@ public class Petri extends Panel
 
                 if (dragging)
                 {
-                    network . deselectDrag (evt . x, evt . y);
+                    network . deselectDrag (x, y);
                     dragging = false;
                 }
 
@@ -602,7 +791,35 @@ public class Petri extends Panel
                 /* if we are dragging something - keep dragging */
 
                 if (dragging)
-                    network . drag (evt . x, evt . y);
+                    network . drag (x, y);
+
+                break;
+
+            /* arrow keys move the view */
+
+            case Event . KEY_ACTION:
+
+                switch (evt . key)
+                {
+                    case Event . LEFT:
+                        pan (- PAN_STEP, 0);
+                        break;
+
+                    case Event . RIGHT:
+                        pan (PAN_STEP, 0);
+                        break;
+
+                    case Event . UP:
+                        pan (0, - PAN_STEP);
+                        break;
+
+                    case Event . DOWN:
+                        pan (0, PAN_STEP);
+                        break;
+
+                    default:
+                        return super . handleEvent (evt);
+                }
 
                 break;
 
@@ -640,6 +857,9 @@ public class Petri extends Panel
                     {
                         clearAll = true;
 
+                        network . stopTrace ();
+                        network . closeReplay ();
+
                         /* create new network instance - the old one will get
                            garbage collected */
 
@@ -657,6 +877,9 @@ public class Petri extends Panel
 
                         clearAll = true;
 
+                        network . stopTrace ();
+                        network . closeReplay ();
+
                         /* create new network instance - the old one will get
                            garbage collected */
 
@@ -680,6 +903,29 @@ public class Petri extends Panel
                         fileInput . setMode (FileInput . SAVE);
                         fileInput . show();
                     }
+                    else if (label . equals ("Replay"))
+                    {
+                        /* tell file dialog to open a trace and pop it up */
+
+                        fileInput . setMode (FileInput . REPLAY);
+                        fileInput . show();
+                    }
+                    else if (label . equals ("Record"))
+                    {
+                        /* tell file dialog to start recording a trace and
+                           pop it up */
+
+                        fileInput . setMode (FileInput . RECORD);
+                        fileInput . show();
+                    }
+                    else if (label . equals ("Run") && network . replayer () != (TraceReplayer) null)
+                    {
+                        /* a trace is open - move through it instead of
+                           simulating */
+
+                        help . setHelp (help . REPLAY_INSTRUCTIONS);
+                        clickState = CLICK_REPLAY;
+                    }
                     else if (label . equals ("Run"))
                     {
                         /* tell network to start simulation */
@@ -698,12 +944,46 @@ public class Petri extends Panel
                     }
                     else if (label . equals ("Stop"))
                     {
-                        /* tell network to stop simulation */
+                        /* tell network to stop simulation, recording and
+                           replaying */
 
                         network . stopSimulation ();
-                        help . setHelp (help . EMPTY);
+
+                        /* the trace is written in the background, a write
+                           error only shows when it is finished */
+
+                        if (network . stopTrace () == PetriNet . STATUS_WRITE_ERROR)
+                            help . setHelp (help . TRACE_WRITE_ERROR);
+                        else
+                            help . setHelp (help . EMPTY);
+
+                        network . closeReplay ();
                         clickState = CLICK_NORMAL;
                     }
+                    else if (label . equals ("Undo"))
+                    {
+                        /* take back the last edit */
+
+                        if (network . undo ())
+                            help . setHelp (help . EMPTY);
+                        else
+                            help . setHelp (help . NOTHING_TO_UNDO);
+                    }
+                    else if (label . equals ("Redo"))
+                    {
+                        if (network . redo ())
+                            help . setHelp (help . EMPTY);
+                        else
+                            help . setHelp (help . NOTHING_TO_REDO);
+                    }
+                    else if (label . equals ("Zoom In"))
+                    {
+                        zoom (ZOOM_STEP);
+                    }
+                    else if (label . equals ("Zoom Out"))
+                    {
+                        zoom (1 / ZOOM_STEP);
+                    }
 
                     /* for the following buttons just set the appropriate
                        click state and hint line text. all the work will be
@@ -761,9 +1041,9 @@ public class Petri extends Panel
                 return super . handleEvent (evt);
         }
 
-        /* force applet repaint as something could have changed */
+        /* repaint what the event changed */
 
-        repaint ();
+        repaintChanged ();
 
         /* return true - means we have handled the event and there is no
            no need to pass it along to other components */
@@ -773,6 +1053,147 @@ public class Petri extends Panel
     } /* end handleEvent */
 
 
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        request the repaint of the parts of the panel that changed: the
+        region of the net that changed and the hint line.
+    */
+
+    private void repaintChanged ()
+    {
+        Rectangle size = bounds ();
+        Font      font = getFont ();
+
+        if (clearAll || network . allDirty () || font == (Font) null)
+            repaint ();
+
+        else
+        {
+            Rectangle region = toScreen (network . dirtyRegion ());
+
+            if (help . changed ())
+            {
+                Rectangle line = help . bounds (getFontMetrics (font), size . width, size . height);
+
+                if (region == (Rectangle) null)
+                    region = line;
+                else
+                    region . add (line);
+            }
+
+            if (region != (Rectangle) null)
+                repaint (region . x, region . y, region . width, region . height);
+        }
+
+        network . clearDirty ();
+
+    } /* end repaintChanged */
+
+
+    /*
+        zoom the view by the specified factor, keeping the middle of the net
+        area where it is.
+    */
+
+    private void zoom (double factor)
+    {
+        Rectangle size = bounds ();
+
+        int x = size . width / 2;
+        int y = (size . height + CONTROL_HEIGHT) / 2;
+
+        int centerX = netX (x);
+        int centerY = netY (y);
+
+        scale = Math . min (MAX_SCALE, Math . max (MIN_SCALE, scale * factor));
+        viewX = centerX - (int) Math . floor (x / scale);
+        viewY = centerY - (int) Math . floor (y / scale);
+
+        clearAll = true;
+
+    } /* end zoom */
+
+
+    /*
+        move the view by the specified number of pixels.
+    */
+
+    private void pan (int dx, int dy)
+    {
+        viewX += (int) Math . round (dx / scale);
+        viewY += (int) Math . round (dy / scale);
+
+        clearAll = true;
+
+    } /* end pan */
+
+
+    /*
+        convert a panel x coordinate into a net one.
+    */
+
+    private int netX (int x)
+    {
+        return viewX + (int) Math . floor (x / scale);
+
+    } /* end netX */
+
+
+    /*
+        convert a panel y coordinate into a net one.
+    */
+
+    private int netY (int y)
+    {
+        return viewY + (int) Math . floor (y / scale);
+
+    } /* end netY */
+
+
+    /*
+        return the part of the panel showing the specified part of the net,
+        rounded outwards, or null if it is null.
+    */
+
+    private Rectangle toScreen (Rectangle r)
+    {
+        if (r == (Rectangle) null)
+            return r;
+
+        if (scale == 1.0)
+            return new Rectangle (r . x - viewX, r . y - viewY, r . width, r . height);
+
+        int x = (int) Math . floor ((r . x - viewX) * scale);
+        int y = (int) Math . floor ((r . y - viewY) * scale);
+
+        return new Rectangle (x - 1, y - 1,
+                              (int) Math . ceil (r . width * scale) + 3,
+                              (int) Math . ceil (r . height * scale) + 3);
+
+    } /* end toScreen */
+
+
+    /*
+        return a copy of the specified graphics context drawing in net
+        coordinates.
+    */
+
+    private Graphics toNet (Graphics g)
+    {
+        Graphics2D n = (Graphics2D) g . create ();
+
+        n . scale (scale, scale);
+        n . translate (- viewX, - viewY);
+
+        return n;
+
+    } /* end toNet */
+
+
     public static void main(String [] args) {
         Frame frame = new Frame();
 
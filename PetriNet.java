@@ -56,14 +56,24 @@ class PetriNet implements PlaceTransitionIdResolver
 
     final static int    STATUS_NO_ACTIVABLE_TRANSITION	 = 7;
 
+    /* simulation stopped after the requested number of steps */
 
-    /* maximum number of places */
+    final static int    STATUS_STEP_LIMIT        = 8;
 
-    final static int    PLACES = 10;
 
-    /* maximum number of transitions */
+    /* initial number of place slots. the places array grows by doubling
+       when it runs out of slots, so there is no limit on the net size */
 
-    final static int    TRANSITIONS = 10;
+    final static int    PLACES = 16;
+
+    /* initial number of transition slots */
+
+    final static int    TRANSITIONS = 16;
+
+    /* how far an arc can be drawn from the line between the centers of its
+       place and its transition: half a place diagonal and an arrow head */
+
+    final static int    ARC_MARGIN = Place . SIZE;
 
     /*
         code characters used to mark the file as created by this program
@@ -96,7 +106,7 @@ class PetriNet implements PlaceTransitionIdResolver
     */
 
 
-    /* array of place objects */
+    /* array of place objects indexed by place id */
 
     private Place       places [];
 
@@ -104,7 +114,16 @@ class PetriNet implements PlaceTransitionIdResolver
 
     private int         numPlaces;
 
-    /* array of transition objects */
+    /* number of place ids handed out so far (highest place id + 1) */
+
+    private int         placeSlots;
+
+    /* stack of place ids freed by removePlace, reused by addPlace */
+
+    private int         freePlaces [];
+    private int         numFreePlaces;
+
+    /* array of transition objects indexed by transition id */
 
     private Transition	transitions [];
 
@@ -112,6 +131,15 @@ class PetriNet implements PlaceTransitionIdResolver
 
     private int         numTransitions;
 
+    /* number of transition ids handed out so far (highest id + 1) */
+
+    private int         transitionSlots;
+
+    /* stack of transition ids freed by removeTransition */
+
+    private int         freeTransitions [];
+    private int         numFreeTransitions;
+
 
     /* place we are currently removing */
 
@@ -142,9 +170,53 @@ class PetriNet implements PlaceTransitionIdResolver
 
     private Transition  dragTransition;
 
-    /* Vector of activable transitions */
-    
-    private Vector	activableTransitions;
+    /* origin of the place or transition being dragged when the drag
+       started */
+
+    private int         dragFromX;
+    private int         dragFromY;
+
+    /* editing operations that can be undone */
+
+    private EditJournal journal;
+
+    /* region of the screen changed since the last clearDirty, null if none,
+       and whether the whole net changed */
+
+    private Rectangle   dirty;
+    private boolean     dirtyAll;
+
+    /* part of that region where the structure of the net - places,
+       transitions and arcs as opposed to tokens and highlights - changed
+       since the last clearStale, null if none, and whether all of it did */
+
+    private Rectangle   stale;
+    private boolean     staleAll;
+
+    /* places and transitions by location, to find the one clicked on, and
+       by the lines of the arcs they draw, to find the ones to paint. the
+       arcs are only listed once all of them are resolved after loading */
+
+    private NodeGrid    grid;
+    private NodeGrid    arcGrid;
+    private boolean     arcsListed;
+
+    /* transition shown as fired by the last step, null if none */
+
+    private Transition  fired;
+
+    /* compiled form of the net used by the simulation, null when the
+       structure changed since it was built */
+
+    private CompiledNet compiled;
+
+    /* trace the firings are recorded into, null if none */
+
+    private TraceRecorder trace;
+
+    /* trace being replayed, null if none */
+
+    private TraceReplayer replay;
 
     /* Random number generator used to randomly select a transition */
     
@@ -165,20 +237,29 @@ class PetriNet implements PlaceTransitionIdResolver
         /* initialize instance variables */
 
         removingPlace = newArcPlace = dragPlace = (Place) null;
-        numPlaces = 0;
+        numPlaces = placeSlots = numFreePlaces = 0;
 
-        places = new Place [PLACES];
-        for (int i = 0; i < PLACES; i ++)
-            places [i] = (Place) null;
+        places     = new Place [PLACES];
+        freePlaces = new int [PLACES];
 
         removingTransition = newArcTransition = dragTransition = (Transition) null;
-        numTransitions = 0;
-
-        transitions = new Transition [TRANSITIONS];
-        for (int i = 0; i < TRANSITIONS; i ++)
-            transitions [i] = (Transition) null;
-
-	activableTransitions = new Vector(TRANSITIONS);
+        numTransitions = transitionSlots = numFreeTransitions = 0;
+
+        transitions     = new Transition [TRANSITIONS];
+        freeTransitions = new int [TRANSITIONS];
+
+	compiled = (CompiledNet) null;
+	trace = (TraceRecorder) null;
+	replay = (TraceReplayer) null;
+	journal = new EditJournal ();
+	grid = new NodeGrid ();
+	arcGrid = new NodeGrid ();
+	arcsListed = true;
+	dirty = (Rectangle) null;
+	dirtyAll = true;
+	stale = (Rectangle) null;
+	staleAll = true;
+	fired = (Transition) null;
 	wheelOfFortune = new Random();
 
 	newArcToPlace = false;
@@ -193,7 +274,7 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public Place resolvePlaceId (int id)
     {
-        if (id < 0 || id >= PLACES)
+        if (id < 0 || id >= placeSlots)
             return (Place) null;
 
         return places [id];
@@ -202,7 +283,7 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public Transition resolveTransitionId (int id)
     {
-        if (id < 0 || id >= TRANSITIONS)
+        if (id < 0 || id >= transitionSlots)
             return (Transition) null;
 
         return transitions [id];
@@ -210,11 +291,83 @@ class PetriNet implements PlaceTransitionIdResolver
     } /* end resolveTransitionId */
 
     /*
-        display state machine on the specified graphics context.
+        return the number of place and transition ids in use or freed - all
+        the ids are below these.
+    */
+
+    public int placeSlots ()
+    {
+        return placeSlots;
+
+    } /* end placeSlots */
+
+    public int transitionSlots ()
+    {
+        return transitionSlots;
+
+    } /* end transitionSlots */
+
+
+    /*
+        return the number of places currently present.
+    */
+
+    public int placeNumber ()
+    {
+        return numPlaces;
+
+    } /* end placeNumber */
+
+
+    /*
+        return the number of transitions currently present.
+    */
+
+    public int transitionNumber ()
+    {
+        return numTransitions;
+
+    } /* end transitionNumber */
+
+
+    /*
+        seed the random number generator used to select transitions, to
+        make a simulation repeatable.
+    */
+
+    public void setSeed (long seed)
+    {
+        wheelOfFortune . setSeed (seed);
+
+    } /* end setSeed */
+
+
+    /*
+        display state machine on the specified graphics context, whose clip
+        area must have been cleared. only the places and transitions that
+        reach into it are painted.
     */
 
     public synchronized void paint (Graphics g, int offset)
     {
+        paintStructure (g, true);
+        paintMarks (g, true);
+
+    } /* end paint */
+
+
+    /*
+        draw the structure of the net - places, transitions and arcs in their
+        normal state, without the tokens - on the specified graphics context,
+        whose clip area must have been cleared. only the places and
+        transitions that reach into it are painted. without detail, the
+        labels and arrow heads are left out.
+    */
+
+    public synchronized void paintStructure (Graphics g, boolean detail)
+    {
+        int nodes [] = visibleNodes (g . getClipBounds ());
+
         /* if a place was marked for removal - call its remove method to delete
            its image */
 
@@ -233,25 +386,112 @@ class PetriNet implements PlaceTransitionIdResolver
             removingTransition = (Transition) null;
         }
 
-        /* paint all existing places on the screen. notice that we traverse
-           the array in the reverse order, so that if places overlap on the
+        /* paint the places on the screen. notice that we traverse them in
+           the reverse order of their ids, so that if places overlap on the
            screen, the ones with the lowest ids will end up on top and will
            correspond to the ones that get selected when user clicks on them */
 
-        for (int i = PLACES - 1; i >= 0; i --)
-            if (places [i] != (Place) null)
-                places [i] . paint (g);
+        for (int i = nodes [0]; i > 0; i --)
+            if ((nodes [i] & 1) == 0 && places [nodes [i] >> 1] != (Place) null)
+                places [nodes [i] >> 1] . paintShape (g, detail);
 
-        /* paint all existing transitions on the screen. notice that we traverse
-           the array in the reverse order, so that if transitions overlap on the
-           screen, the ones with the lowest ids will end up on top and will
-           correspond to the ones that get selected when user clicks on them */
+        /* same for the transitions */
 
-        for (int i = TRANSITIONS - 1; i >= 0; i --)
-            if (transitions [i] != (Transition) null)
-                transitions [i] . paint (g);
+        for (int i = nodes [0]; i > 0; i --)
+            if ((nodes [i] & 1) != 0 && transitions [nodes [i] >> 1] != (Transition) null)
+                transitions [nodes [i] >> 1] . paintShape (g, detail);
 
-    } /* end paint */
+    } /* end paintStructure */
+
+
+    /*
+        draw the tokens and the highlighted, selected or fired places and
+        transitions over the structure drawn by paintStructure.
+    */
+
+    public synchronized void paintMarks (Graphics g, boolean detail)
+    {
+        int nodes [] = visibleNodes (g . getClipBounds ());
+
+        for (int i = nodes [0]; i > 0; i --)
+            if ((nodes [i] & 1) == 0 && places [nodes [i] >> 1] != (Place) null)
+                places [nodes [i] >> 1] . paintMarks (g, detail);
+
+        for (int i = nodes [0]; i > 0; i --)
+            if ((nodes [i] & 1) != 0 && transitions [nodes [i] >> 1] != (Transition) null)
+                transitions [nodes [i] >> 1] . paintMarks (g, detail);
+
+    } /* end paintMarks */
+
+
+    /*
+        return true if the whole net has to be repainted.
+    */
+
+    public boolean allDirty ()
+    {
+        return dirtyAll;
+
+    } /* end allDirty */
+
+
+    /*
+        return the region of the screen that changed since the last call to
+        clearDirty, or null if nothing did.
+    */
+
+    public Rectangle dirtyRegion ()
+    {
+        return dirty;
+
+    } /* end dirtyRegion */
+
+
+    /*
+        forget the changed region, once its repaint has been requested.
+    */
+
+    public void clearDirty ()
+    {
+        dirty    = (Rectangle) null;
+        dirtyAll = false;
+
+    } /* end clearDirty */
+
+
+    /*
+        return true if the structure of the whole net has to be redrawn.
+    */
+
+    public boolean allStale ()
+    {
+        return staleAll;
+
+    } /* end allStale */
+
+
+    /*
+        return the region of the screen where the structure of the net
+        changed since the last call to clearStale, or null if it did not.
+    */
+
+    public Rectangle staleRegion ()
+    {
+        return stale;
+
+    } /* end staleRegion */
+
+
+    /*
+        forget the region where the structure changed, once it is redrawn.
+    */
+
+    public void clearStale ()
+    {
+        stale    = (Rectangle) null;
+        staleAll = false;
+
+    } /* end clearStale */
 
 
     /*
@@ -260,28 +500,34 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public boolean addPlace (int x, int y)
     {
-        /* if maximum number of places already exists - exit */
+        int i = createPlace (x, y);
 
-        if (numPlaces == PLACES)
-            return false;
+        journal . record (EditJournal . PLACE_ADDED, places [i], i, 0, 0, 0, 0);
 
-        numPlaces ++;
+        return true;
 
-        int i;
+    } /* end addPlace */
 
-        /* look for the first empty slot in the places array */
 
-        for (i = 0; i < PLACES; i ++)
-            if (places [i] == (Place) null)
-                break;
+    /*
+        add a new place at specified coordinates and return its id.
+    */
+
+    public int createPlace (int x, int y)
+    {
+        /* reuse the most recently freed id, or take a brand new one */
+
+        int i = (numFreePlaces > 0) ? freePlaces [-- numFreePlaces] : placeSlots;
 
         /* create new place */
 
-        places [i] = new Place (i, x, y);
+        setPlace (i, new Place (i, x, y));
 
-        return true;
+        compiled = (CompiledNet) null;
 
-    } /* end addPlace */
+        return i;
+
+    } /* end createPlace */
 
     /*
         add a new place at specified coordinates.
@@ -289,28 +535,146 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public boolean addTransition (int x, int y)
     {
-        /* if maximum number of transitions already exists - exit */
+        int i = createTransition (x, y);
 
-        if (numTransitions == TRANSITIONS)
-            return false;
+        journal . record (EditJournal . TRANSITION_ADDED, transitions [i], i, 0, 0, 0, 0);
 
-        numTransitions ++;
+        return true;
 
-        int i;
+    } /* end addTransition */
 
-        /* look for the first empty slot in the transitions array */
 
-        for (i = 0; i < TRANSITIONS; i ++)
-            if (transitions [i] == (Transition) null)
-                break;
+    /*
+        add a new transition at specified coordinates and return its id.
+    */
+
+    public int createTransition (int x, int y)
+    {
+        /* reuse the most recently freed id, or take a brand new one */
+
+        int i = (numFreeTransitions > 0) ?
+                freeTransitions [-- numFreeTransitions] : transitionSlots;
 
         /* create new transition */
 
-        transitions [i] = new Transition (i, x, y);
+        setTransition (i, new Transition (i, x, y));
+
+        compiled = (CompiledNet) null;
+
+        return i;
+
+    } /* end createTransition */
+
+    /*
+        create a place with the specified id, which must be free, at the
+        specified coordinates and with the specified number of tokens (used
+        by the file loaders).
+    */
+
+    public boolean putPlace (int id, int x, int y, int tokens)
+    {
+        if (id < 0 || resolvePlaceId (id) != (Place) null)
+            return false;
+
+        Place place = new Place (id, x, y);
+
+        place . setTokenNumber (tokens);
+
+        /* ids skipped become free, a free id gets used */
+
+        if (id < placeSlots)
+            numFreePlaces = unfree (freePlaces, numFreePlaces, id);
+
+        for (int i = id - 1; i >= placeSlots; i --)
+        {
+            if (numFreePlaces == freePlaces . length)
+                freePlaces = grow (freePlaces);
+
+            freePlaces [numFreePlaces ++] = i;
+        }
+
+        setPlace (id, place);
+
+        compiled = (CompiledNet) null;
 
         return true;
 
-    } /* end addTransition */
+    } /* end putPlace */
+
+
+    /*
+        create a transition with the specified id, which must be free, at the
+        specified coordinates (used by the file loaders).
+    */
+
+    public boolean putTransition (int id, int x, int y)
+    {
+        if (id < 0 || resolveTransitionId (id) != (Transition) null)
+            return false;
+
+        if (id < transitionSlots)
+            numFreeTransitions = unfree (freeTransitions, numFreeTransitions, id);
+
+        for (int i = id - 1; i >= transitionSlots; i --)
+        {
+            if (numFreeTransitions == freeTransitions . length)
+                freeTransitions = grow (freeTransitions);
+
+            freeTransitions [numFreeTransitions ++] = i;
+        }
+
+        setTransition (id, new Transition (id, x, y));
+
+        compiled = (CompiledNet) null;
+
+        return true;
+
+    } /* end putTransition */
+
+
+    /*
+        add an arc from place placeId to transition transitionId. return
+        false if one of them does not exist.
+    */
+
+    public boolean addInputArc (int placeId, int transitionId)
+    {
+        Place      place = resolvePlaceId (placeId);
+        Transition trans = resolveTransitionId (transitionId);
+
+        if (place == (Place) null || trans == (Transition) null)
+            return false;
+
+        place . addArc (trans);
+        compiled = (CompiledNet) null;
+        arcsListed = false;
+
+        return true;
+
+    } /* end addInputArc */
+
+
+    /*
+        add an arc from transition transitionId to place placeId. return
+        false if one of them does not exist.
+    */
+
+    public boolean addOutputArc (int transitionId, int placeId)
+    {
+        Place      place = resolvePlaceId (placeId);
+        Transition trans = resolveTransitionId (transitionId);
+
+        if (place == (Place) null || trans == (Transition) null)
+            return false;
+
+        trans . addArcOut (place);
+        compiled = (CompiledNet) null;
+        arcsListed = false;
+
+        return true;
+
+    } /* end addOutputArc */
+
 
     /*
         remove place at specified coordinates. if more than one place exist
@@ -324,35 +688,17 @@ class PetriNet implements PlaceTransitionIdResolver
         if (numPlaces == 0)
             return false;
 
-        numPlaces --;
-
-        int i;
-
         /* find the first place that acknowledges that the point lays inside
            of its space */
 
-        for (i = 0; i < PLACES; i ++)
-            if (places [i] != (Place) null && places [i] . inside (x, y))
-                break;
+        Place place = locatePlace (x, y);
 
-        if (i == PLACES)
+        if (place == (Place) null)
             return false;
 
-        /* we cannot completely get rid of it yet, as we will have to remove
-           the places drawings. this will be done at the next call to paint,
-           so just set the removingPlace to places object. */
-
-        removingPlace = places [i];
-
-        /* Invalidate the place. invalidation is needed to remove the arcs
-           whose destination this place is. place knows only of arcs
-           starting with it, but it cannot invalidate the ones ending at it.
-           arcs will check if their traget state is valid during update
-           calls and invalidate themselves if necessary. */
-
-        removingPlace . makeInvalid ();
+        hidePlace (place);
 
-        places [i] = (Place) null;
+        journal . record (EditJournal . PLACE_REMOVED, place, place . placeId (), 0, 0, 0, 0);
 
         return true;
 
@@ -371,35 +717,18 @@ class PetriNet implements PlaceTransitionIdResolver
         if (numTransitions == 0)
             return false;
 
-        numTransitions --;
-
-        int i;
-
         /* find the first transition that acknowledges that the point lays inside
            of its space */
 
-        for (i = 0; i < TRANSITIONS; i ++)
-            if (transitions [i] != (Transition) null && transitions [i] . inside (x, y))
-                break;
+        Transition transition = locateTransition (x, y);
 
-        if (i == TRANSITIONS)
+        if (transition == (Transition) null)
             return false;
 
-        /* we cannot completely get rid of it yet, as we will have to remove
-           the transitions drawings. this will be done at the next call to paint,
-           so just set the removingTransition to transitions object. */
-
-        removingTransition = transitions [i];
+        hideTransition (transition);
 
-        /* Invalidate the transition. invalidation is needed to remove the arcs
-           whose destination this transition is. transition knows only of arcs
-           starting with it, but it cannot invalidate the ones ending at it.
-           arcs will check if their traget state is valid during update
-           calls and invalidate themselves if necessary. */
-
-        removingTransition . makeInvalid ();
-
-        transitions [i] = (Transition) null;
+        journal . record (EditJournal . TRANSITION_REMOVED, transition,
+                          transition . transitionId (), 0, 0, 0, 0);
 
         return true;
 
@@ -412,21 +741,21 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public boolean addTokenToPlaceAt (int x, int y)
     {
-        int i;
-
         /* find the first place that acknowledges that the point lays inside
            of its space */
 
-        for (i = 0; i < PLACES; i ++)
-            if (places [i] != (Place) null && places [i] . inside (x, y))
-                break;
+        Place place = locatePlace (x, y);
 
-        if (i == PLACES)
+        if (place == (Place) null)
             return false;
 
         /* add a token to the found place */
 
-        places [i] . addToken();
+        int n = place . getTokenNumber ();
+
+        setTokens (place, n + 1);
+
+        journal . record (EditJournal . TOKENS, place, place . placeId (), n, n + 1, 0, 0);
 
         return true;
 
@@ -439,21 +768,26 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public boolean removeTokenFromPlaceAt (int x, int y)
     {
-        int i;
-
         /* find the first place that acknowledges that the point lays inside
            of its space */
 
-        for (i = 0; i < PLACES; i ++)
-            if (places [i] != (Place) null && places [i] . inside (x, y))
-                break;
+        Place place = locatePlace (x, y);
 
-        if (i == PLACES)
+        if (place == (Place) null)
             return false;
 
         /* remove a token from the found place returns false if no token in that place*/
 
-        return places [i] . removeToken();
+        int n = place . getTokenNumber ();
+
+        if (n == 0)
+            return false;
+
+        setTokens (place, n - 1);
+
+        journal . record (EditJournal . TOKENS, place, place . placeId (), n, n - 1, 0, 0);
+
+        return true;
 
     } /* end removeTokenFromPlaceAt */
 
@@ -472,6 +806,7 @@ class PetriNet implements PlaceTransitionIdResolver
         /* highlight the place and update the hint line */
 
         newArcPlace . highlightOn ();
+        markDirty (newArcPlace . area ());
 	
 	if (! newArcDirectionSet) {
 	    newArcToPlace = false;
@@ -498,6 +833,7 @@ class PetriNet implements PlaceTransitionIdResolver
         /* highlight the Transition and update the hint line */
 
         newArcTransition . highlightOn ();
+        markDirty (newArcTransition . area ());
 
 	if (! newArcDirectionSet) {
 	    newArcToPlace = true;
@@ -517,9 +853,10 @@ class PetriNet implements PlaceTransitionIdResolver
     {
 	if (newArcPlace != (Place) null && newArcTransition != (Transition) null)
 	{
-	    if (newArcToPlace)
-			newArcTransition . addArcOut (newArcPlace);
-	    else	newArcPlace . addArc (newArcTransition);
+	    if (setArc (newArcPlace, newArcTransition, newArcToPlace, true))
+		journal . record (EditJournal . ARC_ADDED, (Object) null,
+				  newArcPlace . placeId (), newArcTransition . transitionId (),
+				  newArcToPlace ? 1 : 0, 0, 0);
 	    newArcPlace = (Place) null;
 	    newArcTransition = (Transition) null;
 	}
@@ -535,9 +872,10 @@ class PetriNet implements PlaceTransitionIdResolver
     {
 	if (newArcPlace != (Place) null && newArcTransition != (Transition) null)
 	{
-	    if (newArcToPlace)
-			newArcTransition . removeArcOut (newArcPlace);
-	    else	newArcPlace . removeArc (newArcTransition);
+	    if (setArc (newArcPlace, newArcTransition, newArcToPlace, false))
+		journal . record (EditJournal . ARC_REMOVED, (Object) null,
+				  newArcPlace . placeId (), newArcTransition . transitionId (),
+				  newArcToPlace ? 1 : 0, 0, 0);
 	    newArcPlace = (Place) null;
 	    newArcTransition = (Transition) null;
 	}
@@ -561,11 +899,17 @@ class PetriNet implements PlaceTransitionIdResolver
 	    }
 	    else {
 		dragTransition . dragStart (x, y);
+		markDirty (dragTransition . extent ());
+		dragFromX = dragTransition . originX ();
+		dragFromY = dragTransition . originY ();
 		return true;
 	    }
 	}
 	else {
 	    dragPlace . dragStart (x, y);
+	    markDirty (dragPlace . extent ());
+	    dragFromX = dragPlace . originX ();
+	    dragFromY = dragPlace . originY ();
 	    return true;
 	}
     } /* end selectDrag */
@@ -577,11 +921,29 @@ class PetriNet implements PlaceTransitionIdResolver
     public void deselectDrag (int x, int y)
     {
         if (dragPlace != (Place) null)
+	{
+	    startMove (dragPlace);
 	    dragPlace . dragStop (x, y);
+	    endMove (dragPlace);
+
+	    /* a click without moving is not worth undoing */
+	    if (dragPlace . originX () != dragFromX || dragPlace . originY () != dragFromY)
+		journal . record (EditJournal . PLACE_MOVED, dragPlace, dragPlace . placeId (),
+				  dragFromX, dragFromY, dragPlace . originX (), dragPlace . originY ());
+	}
 	else if (dragTransition != (Transition) null)
+	{
+	    startMove (dragTransition);
 	    dragTransition . dragStop (x, y);
+	    endMove (dragTransition);
 
-	dragPlace = (Place) null;
+	    if (dragTransition . originX () != dragFromX || dragTransition . originY () != dragFromY)
+		journal . record (EditJournal . TRANSITION_MOVED, dragTransition,
+				  dragTransition . transitionId (), dragFromX, dragFromY,
+				  dragTransition . originX (), dragTransition . originY ());
+	}
+
+	dragPlace = (Place) null;
 	dragTransition = (Transition) null;
     } /* end deselectDrag */
 
@@ -593,12 +955,80 @@ class PetriNet implements PlaceTransitionIdResolver
     public void drag (int x, int y)
     {
         if (dragPlace != (Place) null)
+	{
+	    startMove (dragPlace);
 	    dragPlace . drag (x, y);
+	    endMove (dragPlace);
+	}
 	else if (dragTransition != (Transition) null)
+	{
+	    startMove (dragTransition);
 	    dragTransition . drag (x, y);
+	    endMove (dragTransition);
+	}
     } /* end dragState */
 
 
+    /*
+        undo the last editing operation done with the methods above. return
+        false if there is none.
+    */
+
+    public boolean undo ()
+    {
+        int r = journal . undo ();
+
+        if (r < 0)
+            return false;
+
+        apply (r, true);
+
+        return true;
+
+    } /* end undo */
+
+
+    /*
+        redo the last editing operation undone. return false if there is
+        none.
+    */
+
+    public boolean redo ()
+    {
+        int r = journal . redo ();
+
+        if (r < 0)
+            return false;
+
+        apply (r, false);
+
+        return true;
+
+    } /* end redo */
+
+
+    /*
+        return true if there is an editing operation to undo.
+    */
+
+    public boolean canUndo ()
+    {
+        return journal . canUndo ();
+
+    } /* end canUndo */
+
+
+    /*
+        return true if there is an editing operation to redo.
+    */
+
+    public boolean canRedo ()
+    {
+        return journal . canRedo ();
+
+    } /* end canRedo */
+
+
     /*
         make sure simulation can be started (necessary conditions exist), stop
         the previous one if necessary.
@@ -621,6 +1051,12 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public void stopSimulation ()
     {
+        /* the last transition fired goes back to normal */
+
+        if (fired != (Transition) null)
+            markDirty (fired . extent ());
+
+        fired = (Transition) null;
 
     } /* end stopSimulation */
 
@@ -632,33 +1068,284 @@ class PetriNet implements PlaceTransitionIdResolver
 
     public int runSimulation ()
     {
-	/* first, empty the set of activable transitions */
-
-	activableTransitions.setSize(0);
+	/* (re)build the compiled net if the structure changed */
 
-	/* compute the set of activable transition */
+	CompiledNet net = compiledNet ();
 
-	for (int i = 0; i < TRANSITIONS && i < numTransitions; i ++) {
-	    if (transitions [i] == (Transition) null)
-		continue;
-	    if (transitions [i] . isActive())
-		activableTransitions.addElement((Object) (transitions[i]));
-	}
+	/* the compiled net keeps the set of activable transitions up to date
+	   after every firing, so there is nothing to compute here */
 
-	if ( activableTransitions.size() == 0 )
+	if ( net.enabledNumber() == 0 )
 	    return STATUS_NO_ACTIVABLE_TRANSITION;
 	/* choose a random transition */
-	int transitionNumber = (int) (wheelOfFortune.nextFloat() * activableTransitions.size());
-
-	/* fire the transition */
-	Transition toFire = (Transition) activableTransitions.elementAt(transitionNumber);
-	toFire . fire();
+	int transitionNumber = (int) (wheelOfFortune.nextFloat() * net.enabledNumber());
+
+	/* fire the transition and copy the new token numbers back into the
+	   places it touched, so that the editor shows them */
+	int toFire = net.enabledTransition(transitionNumber);
+	net . fire(toFire);
+	net . writeMarking(toFire);
+	if (trace != (TraceRecorder) null)
+	    trace . record(toFire);
+
+	/* only the transition fired, its places and the transition fired
+	   before, which goes back to normal, have to be repainted */
+	if (fired != (Transition) null && ! dirtyAll)
+	    markDirty (fired . extent ());
+	fired = net . transition(toFire);
+	if (fired != (Transition) null)
+	{
+	    fired . markFired();
+	    if (! dirtyAll)
+		markDirty (fired . extent ());
+	}
 	
         return STATUS_NORMAL;
 
     } /* end runSimulation */
 
 
+    /*
+        run up to maxSteps rounds of simulation in one go, without showing
+        the intermediate markings.
+    */
+
+    public SimulationResult run (long maxSteps)
+    {
+        return run (maxSteps, 0, (SimulationObserver) null);
+
+    } /* end run */
+
+
+    /*
+        run up to maxSteps rounds of simulation in one go. if an observer is
+        given, the places get the current marking and the observer is called
+        every sampleInterval steps (or only at the end if sampleInterval is
+        0). the places always get the final marking.
+    */
+
+    public SimulationResult run (long maxSteps, long sampleInterval,
+                                 SimulationObserver observer)
+    {
+        CompiledNet net   = compiledNet ();
+        long        steps = 0;
+        long        start = System . nanoTime ();
+
+        if (observer == (SimulationObserver) null || sampleInterval <= 0)
+            sampleInterval = maxSteps;
+
+        while (steps < maxSteps)
+        {
+            long chunk = Math . min (sampleInterval, maxSteps - steps);
+            long done  = (trace != (TraceRecorder) null) ?
+                             net . run (chunk, wheelOfFortune, trace) :
+                             net . run (chunk, wheelOfFortune);
+
+            steps += done;
+
+            if (observer != (SimulationObserver) null)
+            {
+                net . writeMarking ();
+                observer . simulationSample (this, steps);
+            }
+
+            /* stop if the net got stuck before the end of the chunk */
+
+            if (done < chunk)
+                break;
+        }
+
+        long elapsed = System . nanoTime () - start;
+
+        net . writeMarking ();
+
+        dirtyAll = true;
+
+        return new SimulationResult (steps,
+            net . enabledNumber () == 0 ? STATUS_NO_ACTIVABLE_TRANSITION : STATUS_STEP_LIMIT,
+            elapsed, net . markingById ());
+
+    } /* end run */
+
+
+    /*
+        run the specified number of independent random simulations of up to
+        maxSteps rounds each, all starting from the current marking, on all
+        available processors. return per-place statistics of the final
+        markings. the places of the net are left untouched.
+    */
+
+    public ReplicationStats replicate (int replications, long maxSteps, long seed)
+    {
+        return Replications . run (compiledNet (), replications, maxSteps, seed);
+
+    } /* end replicate */
+
+
+    /*
+        enumerate the markings reachable from the current marking, up to
+        maxStates of them. the returned explorer holds the state and edge
+        counts and the outcome of the exploration.
+    */
+
+    public StateSpace exploreStateSpace (int maxStates)
+    {
+        StateSpace space = new StateSpace (compiledNet (), maxStates);
+
+        space . explore ();
+
+        return space;
+
+    } /* end exploreStateSpace */
+
+
+    /*
+        look for the reachable dead markings, exploring only stubborn sets of
+        transitions. the returned explorer has the exact number of dead
+        markings, and far fewer states than a full exploration.
+    */
+
+    public StateSpace searchDeadlocks (int maxStates)
+    {
+        StateSpace space = new StateSpace (compiledNet (), maxStates);
+
+        space . setReduction (true);
+        space . explore ();
+
+        return space;
+
+    } /* end searchDeadlocks */
+
+
+    /*
+        check whether a marking where the specified place holds a token is
+        reachable, exploring only stubborn sets of transitions. the status of
+        the returned explorer is StateSpace.STATUS_TARGET_REACHED if so, and
+        StateSpace.STATUS_COMPLETE if not. return null if there is no place
+        with the specified id.
+    */
+
+    public StateSpace searchMarkedPlace (int placeId, int maxStates)
+    {
+        CompiledNet net   = compiledNet ();
+        int         place = net . placeIndex (placeId);
+
+        if (place < 0)
+            return (StateSpace) null;
+
+        StateSpace space = new StateSpace (net, maxStates);
+
+        space . setReduction (true);
+        space . setTarget (place);
+        space . explore ();
+
+        return space;
+
+    } /* end searchMarkedPlace */
+
+
+    /*
+        compute the set of markings reachable from the current marking as a
+        decision diagram, with token numbers up to bound and at most maxNodes
+        diagram nodes. the returned explorer holds the number of markings.
+    */
+
+    public SymbolicStateSpace exploreSymbolic (int bound, int maxNodes)
+    {
+        SymbolicStateSpace space = new SymbolicStateSpace (compiledNet (), bound, maxNodes);
+
+        space . explore ();
+
+        return space;
+
+    } /* end exploreSymbolic */
+
+
+    /*
+        build a coverability set of the net from the current marking, with at
+        most maxNodes tree nodes. unlike the other explorations it always
+        ends, unbounded places being reported with Coverability.OMEGA tokens.
+    */
+
+    public Coverability coverability (int maxNodes)
+    {
+        Coverability cover = new Coverability (compiledNet (), maxNodes);
+
+        cover . explore ();
+
+        return cover;
+
+    } /* end coverability */
+
+
+    /*
+        compute the minimal support place invariants of the net, keeping at
+        most maxRows rows during the elimination. the returned solver holds
+        the status and the invariants, as place ids and weights.
+    */
+
+    public InvariantSolver placeInvariants (int maxRows)
+    {
+        InvariantSolver solver = InvariantSolver . placeInvariants (compiledNet (), maxRows);
+
+        solver . solve ();
+
+        return solver;
+
+    } /* end placeInvariants */
+
+
+    /*
+        compute the minimal support transition invariants of the net - firing
+        counts that bring the net back to the same marking - keeping at most
+        maxRows rows during the elimination, on the specified number of
+        threads. the invariants hold transition ids and firing counts.
+    */
+
+    public InvariantSolver transitionInvariants (int maxRows, int threads)
+    {
+        InvariantSolver solver = InvariantSolver . transitionInvariants (compiledNet (), maxRows);
+
+        solver . setThreads (threads);
+        solver . solve ();
+
+        return solver;
+
+    } /* end transitionInvariants */
+
+
+    /*
+        enumerate up to maxSiphons minimal siphons of the net and the traps
+        within them. the returned analysis tells which siphons may become
+        empty, and whether the net is structurally deadlock free.
+    */
+
+    public SiphonAnalysis siphons (int maxSiphons)
+    {
+        SiphonAnalysis analysis = new SiphonAnalysis (compiledNet (), maxSiphons);
+
+        analysis . analyse ();
+
+        return analysis;
+
+    } /* end siphons */
+
+
+    /*
+        same as exploreStateSpace above, on the specified number of threads.
+    */
+
+    public ParallelStateSpace exploreStateSpace (int maxStates, int threads)
+    {
+        ParallelStateSpace space = new ParallelStateSpace (compiledNet (), maxStates, threads);
+
+        space . explore ();
+
+        return space;
+
+    } /* end exploreStateSpace */
+
+
     /*
         load new state machine from the specified file.
     */
@@ -678,18 +1365,32 @@ class PetriNet implements PlaceTransitionIdResolver
             return STATUS_FILE_NOT_FOUND;
         }
 
+        /* the whole net will have to be redrawn */
+
+        dirtyAll = staleAll = true;
+
         /* read from the file catching the I/O error exception */
 
         try
         {
-            /* make sure the file was created by this program */
+            /* make sure the file was created by this program. files in the
+               version 2 format are read by NetFormat */
+
+            int b1 = file . read ();
+            int b2 = file . read ();
+            int b3 = file . read ();
+            int b4 = file . read ();
 
-            if (file . read () != CODE1 || file . read () != CODE2 ||
-                file . read () != CODE3 || file . read () != CODE4)
+            if (NetFormat . signature (b1, b2, b3, b4))
             {
-                return STATUS_BAD_INPUT_FILE;
+                file . close ();
+
+                return NetFormat . load (this, fileName);
             }
 
+            if (b1 != CODE1 || b2 != CODE2 || b3 != CODE3 || b4 != CODE4)
+                return STATUS_BAD_INPUT_FILE;
+
             int val = 0;
 
             /* while delimiter is not End Of Network - keep reading */
@@ -708,14 +1409,14 @@ class PetriNet implements PlaceTransitionIdResolver
 
                     val = file . read ();
 
-                    if (val < 0 || val >= PLACES)
+                    if (val < 0)
                         return STATUS_BAD_INPUT_FILE;
 
                     /* create new state with this id. call the constructor
                        that will initialize the state with the information
                        from the file. */
 
-                    places [val] = new Place (val, file);
+                    setPlace (val, new Place (val, file));
                 }
 
                 /* if the delimiter marks Beginning Of Input string */
@@ -726,14 +1427,14 @@ class PetriNet implements PlaceTransitionIdResolver
 
                     val = file . read ();
 
-                    if (val < 0 || val >= TRANSITIONS)
+                    if (val < 0)
                         return STATUS_BAD_INPUT_FILE;
 
                     /* create new state with this id. call the constructor
                        that will initialize the state with the information
                        from the file. */
 
-                    transitions [val] = new Transition (val, file);
+                    setTransition (val, new Transition (val, file));
                 }
 
                 /* any delimiter other than EON means garbage */
@@ -747,29 +1448,20 @@ class PetriNet implements PlaceTransitionIdResolver
                file before the corresponding states. this step will resovle
               that. */
 
-            numPlaces       = 0;
-
-            for (int i = 0; i < PLACES; i ++)
-            {
+            for (int i = 0; i < placeSlots; i ++)
                 if (places [i] != (Place) null)
-                {
-                    numPlaces ++;
-
                     places [i] . resolveId ((PlaceTransitionIdResolver) this);
-                }
-            }
 
-            numTransitions       = 0;
-
-            for (int i = 0; i < TRANSITIONS; i ++)
-            {
+            for (int i = 0; i < transitionSlots; i ++)
                 if (transitions [i] != (Transition) null)
-                {
-                    numTransitions ++;
-
                     transitions [i] . resolveId ((PlaceTransitionIdResolver) this);
-                }
-            }
+
+            /* ids that were not present in the file become free ids */
+
+            rebuildFreeIds ();
+
+            compiled = (CompiledNet) null;
+            arcsListed = false;
 
         }
         catch (IOException e)
@@ -782,13 +1474,32 @@ class PetriNet implements PlaceTransitionIdResolver
 
 
     /*
-        save current state machine data into specified file.
+        save current state machine data into specified file, in the version
+        2 format (see NetFormat).
     */
 
     public int saveFile (String fileName)
+    {
+        return NetFormat . save (this, fileName);
+
+    } /* end saveFile */
+
+
+    /*
+        save current state machine data into specified file, in the original
+        format that older versions of the program can read.
+    */
+
+    public int saveLegacyFile (String fileName)
     {
         FileOutputStream file;
 
+        /* ids are written as single bytes in this format - refuse to write
+           a net that does not fit rather than silently truncating it */
+
+        if (placeSlots > 0x100 || transitionSlots > 0x100)
+            return STATUS_WRITE_ERROR;
+
         /* open the output file catching the I/O error exception. */
 
         try
@@ -813,7 +1524,7 @@ class PetriNet implements PlaceTransitionIdResolver
 
             /* write out place information */
 
-            for (int i = 0; i < PLACES; i ++)
+            for (int i = 0; i < placeSlots; i ++)
             {
                 if (places [i] == (Place) null)
                     continue;
@@ -832,7 +1543,7 @@ class PetriNet implements PlaceTransitionIdResolver
 
             /* write out transition information */
 
-            for (int i = 0; i < TRANSITIONS; i ++)
+            for (int i = 0; i < transitionSlots; i ++)
             {
                 if (transitions [i] == (Transition) null)
                     continue;
@@ -860,45 +1571,1010 @@ class PetriNet implements PlaceTransitionIdResolver
 
         return STATUS_NORMAL;
 
-    } /* end saveFile */
+    } /* end saveLegacyFile */
 
 
     /*
-        PRIVATE METHODS
+        import the first net of the specified PNML file.
+    */
+
+    public int importPnml (String fileName)
+    {
+        return Pnml . load (this, fileName);
+
+    } /* end importPnml */
+
+
+    /*
+        export the net into the specified PNML file.
     */
 
+    public int exportPnml (String fileName)
+    {
+        return Pnml . save (this, fileName);
+
+    } /* end exportPnml */
+
 
     /*
-        return place object at the specified location. if more that one place
-        are located in the same space, return the one with the lowest id.
+        return a copy of the current marking, to be given back to
+        restoreMarking.
     */
 
-    private Place locatePlace (int x, int y)
+    public MarkingSnapshot snapshotMarking ()
     {
-        for (int i = 0; i < PLACES; i ++)
-            if (places [i] != (Place) null && places [i] . inside (x, y))
+        /* a net loaded straight into a compiled net has no place objects */
 
-                return places [i];
+        if (compiled != (CompiledNet) null && compiled . placeNumber () > 0 &&
+            compiled . place (0) == (Place) null)
+            return new MarkingSnapshot (compiled . markingById (), (Place []) null, compiled);
 
-        return (Place) null;
+        int marking [] = new int [placeSlots];
+
+        if (compiled != (CompiledNet) null)
+        {
+            int byId [] = compiled . markingById ();
+
+            System . arraycopy (byId, 0, marking, 0, Math . min (byId . length, placeSlots));
+        }
+
+        else
+            for (int i = 0; i < placeSlots; i ++)
+                if (places [i] != (Place) null)
+                    marking [i] = places [i] . getTokenNumber ();
+
+        return new MarkingSnapshot (marking, Arrays . copyOf (places, placeSlots),
+                                    (CompiledNet) null);
+
+    } /* end snapshotMarking */
 
-    } /* end locatePlace */
 
     /*
-        return transition object at the specified location. if more that one trans
-        are located in the same space, return the one with the lowest id.
+        put back a marking taken by snapshotMarking, into the places and the
+        compiled net, without rebuilding anything. only the places that
+        existed when the snapshot was taken get their tokens back: places
+        added since keep theirs, even when they reuse the id of a removed
+        place. return false, changing nothing, if the snapshot has a negative
+        number of tokens or was taken on a net without place objects other
+        than this one.
     */
 
-    private Transition locateTransition (int x, int y)
+    public boolean restoreMarking (MarkingSnapshot snapshot)
     {
-        for (int i = 0; i < TRANSITIONS; i ++)
-            if (transitions [i] != (Transition) null && transitions [i] . inside (x, y))
+        int   marking [] = snapshot . tokens ();
+        Place owners []  = snapshot . places ();
+
+        if (! snapshot . valid ())
+            return false;
+
+        if (owners == (Place []) null && (compiled == (CompiledNet) null ||
+                                          compiled != snapshot . net ()))
+            return false;
 
-                return transitions [i];
+        /* the compiled net knows the marking of all the places and only
+           updates those that changed */
 
-        return (Transition) null;
+        if (compiled != (CompiledNet) null)
+            compiled . setMarking (marking, owners);
 
-    } /* end locateTransition */
+        else
+        {
+            int n = Math . min (marking . length, placeSlots);
+
+            for (int i = 0; i < n; i ++)
+                if (places [i] != (Place) null && places [i] == owners [i])
+                    places [i] . setTokenNumber (marking [i]);
+        }
+
+        dirtyAll = true;
+
+        if (trace != (TraceRecorder) null)
+            trace . keyframe ();
+
+        return true;
+
+    } /* end restoreMarking */
+
+
+    /*
+        start recording the transitions fired by runSimulation and run into
+        the specified trace file, with a keyframe of the marking every
+        keyframeInterval steps (0 for the default). the trace ends with
+        stopTrace or when the structure of the net changes. return a status.
+    */
+
+    public int startTrace (String fileName, long keyframeInterval)
+    {
+        stopTrace ();
+
+        TraceRecorder recorder = new TraceRecorder (compiledNet (), keyframeInterval);
+
+        int status = recorder . open (fileName);
+
+        if (status == STATUS_NORMAL)
+            trace = recorder;
+
+        return status;
+
+    } /* end startTrace */
+
+
+    /*
+        finish the current trace file, if any. return a status.
+    */
+
+    public int stopTrace ()
+    {
+        if (trace == (TraceRecorder) null)
+            return STATUS_NORMAL;
+
+        TraceRecorder recorder = trace;
+
+        trace = (TraceRecorder) null;
+
+        return recorder . close ();
+
+    } /* end stopTrace */
+
+
+    /*
+        open the specified trace, recorded on this net, for replay and show
+        its first step. return a status.
+    */
+
+    public int openReplay (String fileName)
+    {
+        closeReplay ();
+
+        TraceReplayer replayer = new TraceReplayer (compiledNet ());
+
+        int status = replayer . open (fileName);
+
+        if (status == STATUS_NORMAL)
+        {
+            replay = replayer;
+            showReplay ();
+        }
+
+        return status;
+
+    } /* end openReplay */
+
+
+    /*
+        return the trace being replayed, null if none. it can be moved
+        through without changing the net, then shown with replayTo.
+    */
+
+    public TraceReplayer replayer ()
+    {
+        return replay;
+
+    } /* end replayer */
+
+
+    /*
+        go to the specified step of the trace being replayed and show its
+        marking. return a status.
+    */
+
+    public int replayTo (long step)
+    {
+        if (replay == (TraceReplayer) null)
+            return STATUS_READ_ERROR;
+
+        int status = replay . seek (step);
+
+        if (status == STATUS_NORMAL)
+            showReplay ();
+
+        return status;
+
+    } /* end replayTo */
+
+
+    /*
+        stop replaying the current trace, if any. the net keeps the marking
+        last shown.
+    */
+
+    public void closeReplay ()
+    {
+        if (replay == (TraceReplayer) null)
+            return;
+
+        replay . close ();
+        replay = (TraceReplayer) null;
+
+    } /* end closeReplay */
+
+
+    /*
+        return the compiled form of the net, compiling it first if the
+        structure changed since the last call.
+    */
+
+    public CompiledNet compiledNet ()
+    {
+        if (compiled == (CompiledNet) null)
+            compiled = new CompiledNet (places, placeSlots, transitions, transitionSlots);
+
+        /* a trace only makes sense for the net it started on */
+
+        if (trace != (TraceRecorder) null && trace . net () != compiled)
+            stopTrace ();
+
+        if (replay != (TraceReplayer) null && replay . net () != compiled)
+            closeReplay ();
+
+        return compiled;
+
+    } /* end compiledNet */
+
+
+    /*
+        simulate the specified compiled net, e.g. one decoded straight from
+        a file by MappedLoader, instead of compiling the place and transition
+        objects. any structural edit discards it.
+    */
+
+    public void setCompiledNet (CompiledNet net)
+    {
+        compiled = net;
+
+        if (trace != (TraceRecorder) null && trace . net () != compiled)
+            stopTrace ();
+
+        if (replay != (TraceReplayer) null && replay . net () != compiled)
+            closeReplay ();
+
+    } /* end setCompiledNet */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        do (forward) or undo the operation of the specified journal record.
+        the places and transitions of the record are in the state they were
+        left in by the operation, or just before it.
+    */
+
+    private void apply (int r, boolean back)
+    {
+        int kind = journal . kind (r);
+        int id   = journal . value (r, 0);
+
+        switch (kind)
+        {
+            case EditJournal . PLACE_ADDED:
+            case EditJournal . PLACE_REMOVED:
+
+                if ((kind == EditJournal . PLACE_ADDED) == back)
+                    hidePlace ((Place) journal . node (r));
+                else
+                    revivePlace ((Place) journal . node (r));
+                break;
+
+            case EditJournal . TRANSITION_ADDED:
+            case EditJournal . TRANSITION_REMOVED:
+
+                if ((kind == EditJournal . TRANSITION_ADDED) == back)
+                    hideTransition ((Transition) journal . node (r));
+                else
+                    reviveTransition ((Transition) journal . node (r));
+                break;
+
+            case EditJournal . ARC_ADDED:
+            case EditJournal . ARC_REMOVED:
+
+                setArc (places [id], transitions [journal . value (r, 1)],
+                        journal . value (r, 2) != 0,
+                        (kind == EditJournal . ARC_ADDED) != back);
+                break;
+
+            case EditJournal . TOKENS:
+
+                setTokens (places [id], journal . value (r, back ? 1 : 2));
+                break;
+
+            case EditJournal . PLACE_MOVED:
+
+                startMove (places [id]);
+                places [id] . move (journal . value (r, back ? 1 : 3),
+                                    journal . value (r, back ? 2 : 4));
+                endMove (places [id]);
+                break;
+
+            case EditJournal . TRANSITION_MOVED:
+
+                startMove (transitions [id]);
+                transitions [id] . move (journal . value (r, back ? 1 : 3),
+                                         journal . value (r, back ? 2 : 4));
+                endMove (transitions [id]);
+                break;
+        }
+
+    } /* end apply */
+
+
+    /*
+        take the specified place out of the net.
+    */
+
+    private void hidePlace (Place place)
+    {
+        /* we cannot completely get rid of it yet, as we will have to remove
+           the places drawings. this will be done at the next call to paint,
+           so just set the removingPlace to places object. */
+
+        removingPlace = place;
+
+        /* Invalidate the place. invalidation is needed to remove the arcs
+           whose destination this place is. place knows only of arcs
+           starting with it, but it cannot invalidate the ones ending at it.
+           arcs will check if their traget state is valid during update
+           calls and invalidate themselves if necessary. */
+
+        place . makeInvalid ();
+
+        setPlace (place . placeId (), (Place) null);
+        listArcs (place);
+
+        compiled = (CompiledNet) null;
+
+    } /* end hidePlace */
+
+
+    /*
+        put a place taken out by hidePlace back under its id, with the arcs
+        from and to the transitions that are still there.
+    */
+
+    private void revivePlace (Place place)
+    {
+        int i = place . placeId ();
+
+        if (removingPlace == place)
+            removingPlace = (Place) null;
+
+        place . makeValid ();
+
+        numFreePlaces = unfree (freePlaces, numFreePlaces, i);
+
+        setPlace (i, place);
+
+        /* arcs from transitions to the place were dropped by the transitions
+           once the place was erased; the place kept them */
+
+        for (int j = 0; j < place . arcsInNumber (); j ++)
+        {
+            Arc arc = place . arcIn (j);
+
+            if (arc . transitionValid ())
+                arc . transition () . restoreArcOut (arc);
+        }
+
+        listArcs (place);
+
+        compiled = (CompiledNet) null;
+
+    } /* end revivePlace */
+
+
+    /*
+        take the specified transition out of the net.
+    */
+
+    private void hideTransition (Transition transition)
+    {
+        /* we cannot completely get rid of it yet, as we will have to remove
+           the transitions drawings. this will be done at the next call to paint,
+           so just set the removingTransition to transitions object. */
+
+        removingTransition = transition;
+
+        /* Invalidate the transition. invalidation is needed to remove the arcs
+           whose destination this transition is. transition knows only of arcs
+           starting with it, but it cannot invalidate the ones ending at it.
+           arcs will check if their traget state is valid during update
+           calls and invalidate themselves if necessary. */
+
+        transition . makeInvalid ();
+
+        setTransition (transition . transitionId (), (Transition) null);
+        listArcs (transition);
+
+        compiled = (CompiledNet) null;
+
+    } /* end hideTransition */
+
+
+    /*
+        put a transition taken out by hideTransition back under its id, with
+        the arcs from and to the places that are still there.
+    */
+
+    private void reviveTransition (Transition transition)
+    {
+        int i = transition . transitionId ();
+
+        if (removingTransition == transition)
+            removingTransition = (Transition) null;
+
+        transition . makeValid ();
+
+        numFreeTransitions = unfree (freeTransitions, numFreeTransitions, i);
+
+        setTransition (i, transition);
+
+        /* arcs from places to the transition were dropped by the places once
+           the transition was erased; the transition kept them */
+
+        for (int j = 0; j < transition . arcsInNumber (); j ++)
+        {
+            Place place = transition . inputPlace (j);
+
+            if (place != (Place) null)
+                place . restoreArc (transition . arcIn (j));
+        }
+
+        listArcs (transition);
+
+        compiled = (CompiledNet) null;
+
+    } /* end reviveTransition */
+
+
+    /*
+        add (or remove) the arc between the specified place and transition,
+        towards the place if toPlace is set. return false if there was
+        nothing to do.
+    */
+
+    private boolean setArc (Place place, Transition trans, boolean toPlace, boolean add)
+    {
+        boolean changed;
+
+        if (add)
+            changed = toPlace ? trans . addArcOut (place) : place . addArc (trans);
+        else
+            changed = toPlace ? trans . removeArcOut (place) : place . removeArc (trans);
+
+        if (changed)
+        {
+            /* the arc, and the labels, which take the color of the last
+               arc drawn */
+
+            Rectangle r = place . area ();
+
+            r . add (trans . area ());
+            r . grow (Arc . ARROW_SIZE, Arc . ARROW_SIZE);
+
+            markStale (r);
+
+            listArcs (place);
+            listArcs (trans);
+
+            compiled = (CompiledNet) null;
+        }
+
+        return changed;
+
+    } /* end setArc */
+
+
+    /*
+        set the number of tokens of the specified place, in the compiled net
+        too, and record the new marking into the trace.
+    */
+
+    private void setTokens (Place place, int n)
+    {
+        place . setTokenNumber (n);
+
+        markDirty (place . area ());
+
+        if (compiled != (CompiledNet) null)
+            compiled . readMarking (place);
+
+        if (trace != (TraceRecorder) null)
+            trace . keyframe ();
+
+    } /* end setTokens */
+
+
+    /*
+        copy the marking of the replayed step into the net. a trace being
+        recorded gets it as a keyframe.
+    */
+
+    private void showReplay ()
+    {
+        replay . show ();
+
+        dirtyAll = true;
+
+        if (trace != (TraceRecorder) null)
+            trace . keyframe ();
+
+    } /* end showReplay */
+
+
+    /*
+        return place object at the specified location. if more that one place
+        are located in the same space, return the one with the lowest id.
+    */
+
+    private Place locatePlace (int x, int y)
+    {
+        int   nodes [] = grid . nodesAt (x, y);
+        Place found    = (Place) null;
+
+        if (nodes == (int []) null)
+            return found;
+
+        for (int i = 1; i <= nodes [0]; i ++)
+        {
+            if ((nodes [i] & 1) != 0)
+                continue;
+
+            Place place = places [nodes [i] >> 1];
+
+            if (place . inside (x, y) &&
+                (found == (Place) null || place . placeId () < found . placeId ()))
+                found = place;
+        }
+
+        return found;
+
+    } /* end locatePlace */
+
+    /*
+        return transition object at the specified location. if more that one trans
+        are located in the same space, return the one with the lowest id.
+    */
+
+    private Transition locateTransition (int x, int y)
+    {
+        int        nodes [] = grid . nodesAt (x, y);
+        Transition found    = (Transition) null;
+
+        if (nodes == (int []) null)
+            return found;
+
+        for (int i = 1; i <= nodes [0]; i ++)
+        {
+            if ((nodes [i] & 1) == 0)
+                continue;
+
+            Transition transition = transitions [nodes [i] >> 1];
+
+            if (transition . inside (x, y) &&
+                (found == (Transition) null ||
+                 transition . transitionId () < found . transitionId ()))
+                found = transition;
+        }
+
+        return found;
+
+    } /* end locateTransition */
+
+
+    /*
+        store place object (or null to free the slot) under the specified id,
+        growing the places array if needed and keeping the place count and
+        free id stack up to date.
+    */
+
+    private void setPlace (int id, Place place)
+    {
+        if (id >= places . length)
+        {
+            Place tmp [] = new Place [Math . max (id + 1, places . length * 2)];
+            System . arraycopy (places, 0, tmp, 0, placeSlots);
+            places = tmp;
+        }
+
+        if (id >= placeSlots)
+            placeSlots = id + 1;
+
+        /* nothing to compute when the whole net is redrawn anyway, e.g.
+           while loading, before the arcs are resolved */
+
+        if (! staleAll)
+        {
+            if (places [id] != (Place) null)
+                markStale (places [id] . extent ());
+
+            if (place != (Place) null)
+                markStale (place . extent ());
+        }
+
+        if (places [id] != (Place) null)
+        {
+            grid . remove (2 * id, places [id] . originX (), places [id] . originY (), Place . SIZE, Place . SIZE);
+            numPlaces --;
+        }
+
+        places [id] = place;
+
+        if (place != (Place) null)
+        {
+            grid . add (2 * id, place . originX (), place . originY (), Place . SIZE, Place . SIZE);
+            numPlaces ++;
+        }
+
+        else
+        {
+            if (numFreePlaces == freePlaces . length)
+                freePlaces = grow (freePlaces);
+
+            freePlaces [numFreePlaces ++] = id;
+        }
+
+    } /* end setPlace */
+
+
+    /*
+        store transition object (or null to free the slot) under the specified
+        id, growing the transitions array if needed.
+    */
+
+    private void setTransition (int id, Transition transition)
+    {
+        if (id >= transitions . length)
+        {
+            Transition tmp [] = new Transition [Math . max (id + 1, transitions . length * 2)];
+            System . arraycopy (transitions, 0, tmp, 0, transitionSlots);
+            transitions = tmp;
+        }
+
+        if (id >= transitionSlots)
+            transitionSlots = id + 1;
+
+        if (! staleAll)
+        {
+            if (transitions [id] != (Transition) null)
+                markStale (transitions [id] . extent ());
+
+            if (transition != (Transition) null)
+                markStale (transition . extent ());
+        }
+
+        if (transitions [id] != (Transition) null)
+        {
+            grid . remove (2 * id + 1, transitions [id] . originX (), transitions [id] . originY (),
+                          Transition . HSIZE, Transition . VSIZE);
+            numTransitions --;
+        }
+
+        transitions [id] = transition;
+
+        if (transition != (Transition) null)
+        {
+            grid . add (2 * id + 1, transition . originX (), transition . originY (), Transition . HSIZE, Transition . VSIZE);
+            numTransitions ++;
+        }
+
+        else
+        {
+            if (numFreeTransitions == freeTransitions . length)
+                freeTransitions = grow (freeTransitions);
+
+            freeTransitions [numFreeTransitions ++] = id;
+        }
+
+    } /* end setTransition */
+
+
+    /*
+        add the specified rectangle to the region of the screen to repaint.
+    */
+
+    private void markDirty (Rectangle r)
+    {
+        if (dirtyAll)
+            return;
+
+        if (dirty == (Rectangle) null)
+            dirty = r;
+        else
+            dirty . add (r);
+
+    } /* end markDirty */
+
+
+    /*
+        add the specified rectangle to the region of the screen where the
+        structure of the net has to be redrawn, and to the one to repaint.
+    */
+
+    private void markStale (Rectangle r)
+    {
+        markDirty (new Rectangle (r . x, r . y, r . width, r . height));
+
+        if (staleAll)
+            return;
+
+        if (stale == (Rectangle) null)
+            stale = r;
+        else
+            stale . add (r);
+
+    } /* end markStale */
+
+
+    /*
+        called before the specified place moves: its old image has to be
+        redrawn and it leaves its place in the grid.
+    */
+
+    private void startMove (Place place)
+    {
+        markStale (place . extent ());
+        grid . remove (2 * place . placeId (), place . originX (), place . originY (), Place . SIZE, Place . SIZE);
+
+    } /* end startMove */
+
+
+    /*
+        called after the specified place moved.
+    */
+
+    private void endMove (Place place)
+    {
+        markStale (place . extent ());
+        grid . add (2 * place . placeId (), place . originX (), place . originY (), Place . SIZE, Place . SIZE);
+        listArcs (place);
+
+    } /* end endMove */
+
+
+    /*
+        called before the specified transition moves.
+    */
+
+    private void startMove (Transition transition)
+    {
+        markStale (transition . extent ());
+        grid . remove (2 * transition . transitionId () + 1,
+                      transition . originX (), transition . originY (), Transition . HSIZE, Transition . VSIZE);
+
+    } /* end startMove */
+
+
+    /*
+        called after the specified transition moved.
+    */
+
+    private void endMove (Transition transition)
+    {
+        markStale (transition . extent ());
+        grid . add (2 * transition . transitionId () + 1,
+                   transition . originX (), transition . originY (), Transition . HSIZE, Transition . VSIZE);
+        listArcs (transition);
+
+    } /* end endMove */
+
+
+    /*
+        list the specified arc in the arc grid along the line between the
+        centers of its place and transition, under the node that draws it,
+        if it is to be drawn. its previous line is removed first.
+    */
+
+    private void listArc (Arc arc)
+    {
+        int owner = arc . toPlace () ? 2 * arc . transition () . transitionId () + 1 :
+                                       2 * arc . place () . placeId ();
+        int line [] = arc . listed ();
+
+        if (line != (int []) null)
+        {
+            arcGrid . removeLine (owner, line [0], line [1], line [2], line [3], ARC_MARGIN);
+            arc . setListed ((int []) null);
+        }
+
+        if (arc . removing () || ! arc . placeValid () || ! arc . transitionValid ())
+            return;
+
+        line = new int [4];
+
+        line [0] = arc . place () . originX () + Place . SIZE / 2;
+        line [1] = arc . place () . originY () + Place . SIZE / 2;
+        line [2] = arc . transition () . originX () + Transition . HSIZE / 2;
+        line [3] = arc . transition () . originY () + Transition . VSIZE / 2;
+
+        arcGrid . addLine (owner, line [0], line [1], line [2], line [3], ARC_MARGIN);
+        arc . setListed (line);
+
+    } /* end listArc */
+
+
+    /*
+        list again the arcs from and to the specified place, after it moved,
+        appeared or disappeared.
+    */
+
+    private void listArcs (Place place)
+    {
+        for (int i = 0; i < place . arcsNumber (); i ++)
+            listArc (place . arc (i));
+
+        for (int i = 0; i < place . arcsInNumber (); i ++)
+            listArc (place . arcIn (i));
+
+    } /* end listArcs */
+
+
+    /*
+        list again the arcs from and to the specified transition.
+    */
+
+    private void listArcs (Transition transition)
+    {
+        for (int i = 0; i < transition . arcsOutNumber (); i ++)
+            listArc (transition . arcOut (i));
+
+        for (int i = 0; i < transition . arcsInNumber (); i ++)
+            listArc (transition . arcIn (i));
+
+    } /* end listArcs */
+
+
+    /*
+        return the places and transitions that may be drawn in the specified
+        part of the screen, or all of them if it is null - their number
+        first, then the nodes, numbered as in the grids, in increasing order.
+    */
+
+    private int [] visibleNodes (Rectangle clip)
+    {
+        /* the arcs added by the loaders are listed all at once */
+
+        if (! arcsListed)
+        {
+            for (int i = 0; i < placeSlots; i ++)
+                if (places [i] != (Place) null)
+                    for (int j = 0; j < places [i] . arcsNumber (); j ++)
+                        listArc (places [i] . arc (j));
+
+            for (int i = 0; i < transitionSlots; i ++)
+                if (transitions [i] != (Transition) null)
+                    for (int j = 0; j < transitions [i] . arcsOutNumber (); j ++)
+                        listArc (transitions [i] . arcOut (j));
+
+            arcsListed = true;
+        }
+
+        /* looking at every cell costs more than looking at every node when
+           the part of the screen is large for the net */
+
+        long cells = (clip == (Rectangle) null) ? Long . MAX_VALUE :
+                     ((long) clip . width / NodeGrid . CELL_SIZE + 2) *
+                     ((long) clip . height / NodeGrid . CELL_SIZE + 2);
+
+        if (cells > numPlaces + numTransitions)
+        {
+            int nodes [] = new int [numPlaces + numTransitions + 1];
+
+            for (int i = 0; i < placeSlots; i ++)
+                if (places [i] != (Place) null)
+                    nodes [++ nodes [0]] = 2 * i;
+
+            for (int i = 0; i < transitionSlots; i ++)
+                if (transitions [i] != (Transition) null)
+                    nodes [++ nodes [0]] = 2 * i + 1;
+
+            Arrays . sort (nodes, 1, nodes [0] + 1);
+
+            return nodes;
+        }
+
+        /* the labels reach out of the bounds the nodes are listed with: to
+           the right, and above the transitions */
+
+        int width  = Math . max (Place . LABEL_WIDTH, Transition . LABEL_WIDTH) + 1;
+        int height = Transition . LABEL_HEIGHT + 1;
+
+        int shapes [] = grid . nodesIn (clip . x - width, clip . y - 1,
+                                        clip . width + width + 1,
+                                        clip . height + height + 1);
+        int lines []  = arcGrid . nodesIn (clip . x, clip . y, clip . width, clip . height);
+
+        int nodes [] = new int [shapes [0] + lines [0] + 1];
+
+        System . arraycopy (shapes, 1, nodes, 1, shapes [0]);
+        System . arraycopy (lines, 1, nodes, shapes [0] + 1, lines [0]);
+
+        Arrays . sort (nodes, 1, shapes [0] + lines [0] + 1);
+
+        /* keep each node once */
+
+        int n = 0;
+
+        for (int i = 1; i <= shapes [0] + lines [0]; i ++)
+            if (n == 0 || nodes [i] != nodes [n])
+                nodes [++ n] = nodes [i];
+
+        nodes [0] = n;
+
+        return nodes;
+
+    } /* end visibleNodes */
+
+
+    /*
+        recompute the free id stacks from the holes in the places and
+        transitions arrays. holes are pushed highest first, so that the
+        lowest free id is the one reused first.
+    */
+
+    private void rebuildFreeIds ()
+    {
+        numFreePlaces = 0;
+
+        for (int i = placeSlots - 1; i >= 0; i --)
+        {
+            if (places [i] != (Place) null)
+                continue;
+
+            if (numFreePlaces == freePlaces . length)
+                freePlaces = grow (freePlaces);
+
+            freePlaces [numFreePlaces ++] = i;
+        }
+
+        numFreeTransitions = 0;
+
+        for (int i = transitionSlots - 1; i >= 0; i --)
+        {
+            if (transitions [i] != (Transition) null)
+                continue;
+
+            if (numFreeTransitions == freeTransitions . length)
+                freeTransitions = grow (freeTransitions);
+
+            freeTransitions [numFreeTransitions ++] = i;
+        }
+
+    } /* end rebuildFreeIds */
+
+
+    /*
+        remove id from the first n entries of the free id stack ids, keeping
+        the order of the others. return the new number of entries.
+    */
+
+    private static int unfree (int ids [], int n, int id)
+    {
+        for (int i = n - 1; i >= 0; i --)
+            if (ids [i] == id)
+            {
+                System . arraycopy (ids, i + 1, ids, i, n - i - 1);
+                return n - 1;
+            }
+
+        return n;
+
+    } /* end unfree */
+
+
+    /*
+        return a copy of the specified array twice as large.
+    */
+
+    private static int [] grow (int array [])
+    {
+        int tmp [] = new int [Math . max (1, array . length * 2)];
+        System . arraycopy (array, 0, tmp, 0, array . length);
+
+        return tmp;
+
+    } /* end grow */
 
 
 } /* end PetriNet */
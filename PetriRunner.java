@@ -0,0 +1,332 @@
+/*
+    Petri Net batch runner
+    Notes: command line entry point for running simulations on machines
+           without a display. It only uses the net and the compiled
+           simulation, never the AWT classes of the editor.
+*/
+
+
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    PetriRunner class - loads a net file, fires transitions until the net gets
+    stuck or the requested number of steps is reached, then prints the
+    throughput and statistics about the final marking.
+
+    usage: java PetriRunner [-m] [-t trace | -r trace] file [steps [seed]]
+
+    with -m, a version 2 file is memory mapped and decoded straight into the
+    compiled net, which is faster for very large nets. Files ending in .pnml
+    are imported as PNML place/transition nets. With -t, the transitions
+    fired are recorded into the specified trace file (see TraceRecorder).
+    With -r, the specified trace of a run of the net is replayed instead, up
+    to the step given as the number of steps or to its end.
+*/
+
+
+public class PetriRunner
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* number of steps run when none is specified */
+
+    final static long   DEFAULT_STEPS = 1000000;
+
+    /* nets with at most that many places get their whole marking printed */
+
+    final static int    PRINT_PLACES = 20;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    public static void main (String [] args)
+    {
+        /* make sure nothing tries to open a display */
+
+        System . setProperty ("java.awt.headless", "true");
+
+        boolean mapped    = false;
+        String  traceFile = (String) null;
+        String  replayFile = (String) null;
+        int     first     = 0;
+
+        while (first < args . length)
+        {
+            if (args [first] . equals ("-m"))
+                mapped = true;
+
+            else if (args [first] . equals ("-t") && first + 1 < args . length)
+                traceFile = args [++ first];
+
+            else if (args [first] . equals ("-r") && first + 1 < args . length)
+                replayFile = args [++ first];
+
+            else
+                break;
+
+            first ++;
+        }
+
+        String rest [] = new String [args . length - first];
+        System . arraycopy (args, first, rest, 0, rest . length);
+        args = rest;
+
+        if (args . length < 1 || args . length > 3 ||
+            (traceFile != (String) null && replayFile != (String) null))
+        {
+            System . err . println ("usage: java PetriRunner [-m] [-t trace | -r trace] file [steps [seed]]");
+            System . exit (2);
+        }
+
+        long steps = DEFAULT_STEPS;
+
+        try
+        {
+            if (args . length > 1)
+                steps = Long . parseLong (args [1]);
+        }
+        catch (NumberFormatException e)
+        {
+            System . err . println ("bad number of steps: " + args [1]);
+            System . exit (2);
+        }
+
+        PetriNet network = new PetriNet ();
+
+        if (args . length > 2)
+        {
+            try
+            {
+                network . setSeed (Long . parseLong (args [2]));
+            }
+            catch (NumberFormatException e)
+            {
+                System . err . println ("bad seed: " + args [2]);
+                System . exit (2);
+            }
+        }
+
+        /* load the net */
+
+        long start  = System . nanoTime ();
+        int  status = PetriNet . STATUS_BAD_INPUT_FILE;
+
+        boolean pnml = args [0] . toLowerCase () . endsWith (".pnml");
+
+        if (pnml)
+            status = network . importPnml (args [0]);
+        else if (mapped)
+        {
+            MappedLoader loader = new MappedLoader ();
+
+            status = loader . load (args [0]);
+
+            if (status == PetriNet . STATUS_NORMAL)
+                network . setCompiledNet (loader . compiledNet ());
+        }
+
+        /* files in the original format cannot be mapped */
+
+        if (status == PetriNet . STATUS_BAD_INPUT_FILE && ! pnml)
+            status = network . loadFile (args [0]);
+
+        if (status != PetriNet . STATUS_NORMAL)
+        {
+            System . err . println (args [0] + ": " + statusMessage (status));
+            System . exit (1);
+        }
+
+        CompiledNet compiled = network . compiledNet ();
+
+        long loaded = System . nanoTime () - start;
+
+        System . out . println ("net:         " + args [0] + " (" +
+                                compiled . placeNumber () + " places, " +
+                                compiled . transitionNumber () + " transitions)");
+        System . out . println ("load time:   " + millis (loaded) + " ms");
+
+        if (replayFile != (String) null)
+        {
+            replay (network, replayFile, args . length > 1 ? steps : Long . MAX_VALUE);
+            return;
+        }
+
+        if (traceFile != (String) null)
+        {
+            status = network . startTrace (traceFile, 0);
+
+            if (status != PetriNet . STATUS_NORMAL)
+            {
+                System . err . println (traceFile + ": " + statusMessage (status));
+                System . exit (1);
+            }
+        }
+
+        /* run the simulation */
+
+        SimulationResult result = network . run (steps);
+
+        status = network . stopTrace ();
+
+        if (status != PetriNet . STATUS_NORMAL)
+        {
+            System . err . println (traceFile + ": " + statusMessage (status));
+            System . exit (1);
+        }
+
+        System . out . println ("steps:       " + result . steps ());
+        System . out . println ("stopped:     " +
+                                (result . deadlock () ? "no activable transition" :
+                                                        "step limit reached"));
+        System . out . println ("run time:    " + millis (result . elapsed ()) + " ms");
+        System . out . println ("throughput:  " + (long) result . throughput () +
+                                " firings/s");
+
+        printMarking (result . marking ());
+
+    } /* end main */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        replay the specified trace of the net up to the specified step and
+        print the marking reached.
+    */
+
+    private static void replay (PetriNet network, String fileName, long step)
+    {
+        int status = network . openReplay (fileName);
+
+        if (status != PetriNet . STATUS_NORMAL)
+        {
+            System . err . println (fileName + ": " + statusMessage (status));
+            System . exit (1);
+        }
+
+        TraceReplayer replayer = network . replayer ();
+
+        long start = System . nanoTime ();
+
+        status = network . replayTo (step);
+
+        long elapsed = System . nanoTime () - start;
+
+        if (status != PetriNet . STATUS_NORMAL)
+        {
+            System . err . println (fileName + ": " + statusMessage (status));
+            System . exit (1);
+        }
+
+        System . out . println ("trace:       " + fileName + " (" + replayer . steps () + " steps)");
+        System . out . println ("step:        " + replayer . position ());
+        System . out . println ("replay time: " + millis (elapsed) + " ms");
+
+        printMarking (network . compiledNet () . markingById ());
+
+        network . closeReplay ();
+
+    } /* end replay */
+
+
+    /*
+        print statistics about the final marking, and the marking itself for
+        small nets.
+    */
+
+    private static void printMarking (int marking [])
+    {
+        long total  = 0;
+        int  max    = 0;
+        int  maxId  = -1;
+        int  marked = 0;
+
+        for (int i = 0; i < marking . length; i ++)
+        {
+            total += marking [i];
+
+            if (marking [i] > 0)
+                marked ++;
+
+            if (marking [i] > max)
+            {
+                max   = marking [i];
+                maxId = i;
+            }
+        }
+
+        System . out . println ("tokens:      " + total + " in " + marked + " places");
+
+        if (maxId >= 0)
+            System . out . println ("max tokens:  " + max + " in place " + maxId);
+
+        if (marking . length > PRINT_PLACES)
+            return;
+
+        StringBuffer line = new StringBuffer ("marking:    ");
+
+        for (int i = 0; i < marking . length; i ++)
+            line . append (" " + i + ":" + marking [i]);
+
+        System . out . println (line . toString ());
+
+    } /* end printMarking */
+
+
+    /*
+        return the message corresponding to a PetriNet status.
+    */
+
+    private static String statusMessage (int status)
+    {
+        switch (status)
+        {
+            case PetriNet . STATUS_FILE_NOT_FOUND:
+                return "file not found";
+
+            case PetriNet . STATUS_READ_ERROR:
+                return "error reading file";
+
+            case PetriNet . STATUS_BAD_INPUT_FILE:
+                return "bad input file";
+
+            case PetriNet . STATUS_FILE_CREATE_ERROR:
+                return "cannot create file";
+
+            case PetriNet . STATUS_WRITE_ERROR:
+                return "error writing file";
+
+            default:
+                return "error " + status;
+        }
+
+    } /* end statusMessage */
+
+
+    /*
+        convert nanoseconds into milliseconds with a fraction.
+    */
+
+    private static String millis (long nanos)
+    {
+        return Double . toString (Math . round (nanos / 1e4) / 100.0);
+
+    } /* end millis */
+
+
+} /* end PetriRunner */
@@ -50,6 +50,10 @@ class Place
 
     final static int    TOKENSIZE = 10;
 
+    /* room left on the right of the circle for the label */
+
+    final static int    LABEL_WIDTH = 60;
+
     /* delimiters used to distinguish records in files */
 
     final static int    BOA = 0x70;
@@ -73,7 +77,8 @@ class Place
     private int         dragX;
     private int         dragY;
 
-    /* colors corresponding to different states */
+    /* colors corresponding to different states. created on the first
+       paint, so that nets can be loaded and simulated without AWT */
 
     private Color       colorNormal;
     private Color       colorSelected;
@@ -84,6 +89,11 @@ class Place
 
     private Vector      arcs;
 
+    /* arcs coming in from transitions. they belong to the transitions and
+       are only kept here to put them back when a removed place returns */
+
+    private Vector      arcsIn;
+
     /* valid flags */
 
     private boolean     valid;
@@ -98,10 +108,6 @@ class Place
     private int         state;
     private int         oldState;
 
-    /* arc being removed */
-
-    private Arc  	removing;
-
     /* place id */
 
     private int         id;
@@ -130,20 +136,14 @@ class Place
         oldX = originX = x;
         oldY = originY = y;
 
-        colorNormal    = new Color (0, 100, 0);
-        colorSelected  = new Color (100, 100, 100);
-        colorActive    = new Color (100, 0, 0);
-        colorHighlight = new Color (0, 0, 100);
-
         state = NORMAL;
 
-        removing = (Arc) null;
-
         valid = true;
 	
 	tokenNumber = 0;
 
-        arcs = new Vector (5, 1);
+        arcs   = new Vector (5, 1);
+        arcsIn = new Vector (5, 1);
 
     } /* end Place */
 
@@ -163,20 +163,14 @@ class Place
             id    = i;
             label = new Integer (id) . toString ();
 
-            colorNormal    = new Color (0, 100, 0);
-            colorSelected  = new Color (100, 100, 100);
-            colorActive    = new Color (100, 0, 0);
-            colorHighlight = new Color (0, 0, 100);
-
             state = NORMAL;
 
-            removing = (Arc) null;
-
             valid = true;
 
 	    tokenNumber = 0;
 
-            arcs = new Vector (5, 1);
+            arcs   = new Vector (5, 1);
+            arcsIn = new Vector (5, 1);
 
             /* read in origin coordinates and initial and accepting states */
 
@@ -273,20 +267,81 @@ class Place
 
     public void paint (Graphics g)
     {
-        /* remove previous image */
+        /* the area painted was cleared first (see PetriNet.paint), so the
+           previous image does not have to be erased. only the arcs removed
+           since the last paint have to be dropped */
+
+        pruneArcs ();
+
+        oldX = originX;
+        oldY = originY;
+
+        draw (g, state, true, true);
+
+    } /* end paint */
+
+
+    /*
+        draw the parts of the image that only change with the structure of
+        the net: the circle, the arcs and the label as in the normal state,
+        without the tokens. without detail, the label and the arrow heads
+        are left out.
+    */
+
+    public void paintShape (Graphics g, boolean detail)
+    {
+        pruneArcs ();
+
+        oldX = originX;
+        oldY = originY;
+
+        draw (g, NORMAL, false, detail);
+
+    } /* end paintShape */
 
-        remove (g);
 
+    /*
+        draw the tokens and the state over the image drawn by paintShape.
+        without detail, the number of tokens is left out.
+    */
+
+    public void paintMarks (Graphics g, boolean detail)
+    {
+        if (state != NORMAL)
+            draw (g, state, true, detail);
+
+        else if (valid && tokenNumber > 0)
+        {
+            if (colorNormal == (Color) null)
+                makeColors ();
+
+            g . setColor (colorNormal);
+            drawTokens (g, detail);
+        }
+
+    } /* end paintMarks */
+
+
+    /*
+        draw the image as in the specified state, with or without the
+        tokens and the details.
+    */
+
+    private void draw (Graphics g, int st, boolean tokens, boolean detail)
+    {
         /* do not paint the image if place is not valid */
 
         if (! valid)
             return;
 
+        if (colorNormal == (Color) null)
+            makeColors ();
+
         /* set color depending on the current state */
 
         Color   color;
 
-        switch (state)
+        switch (st)
         {
             case MOVING:
                 color = colorSelected;
@@ -313,12 +368,8 @@ class Place
 
         /* draw tokens that belong to us */
 
-	if (tokenNumber > 0) {
-	    g . drawOval (originX + SIZE/2 - TOKENSIZE, originY + SIZE/2 - TOKENSIZE*2, TOKENSIZE, TOKENSIZE);
-	    if (tokenNumber > 1) {
-		g . drawString ((new Integer (tokenNumber)) . toString (), originX + SIZE / 2, originY + SIZE / 2);
-	    }
-	}
+        if (tokens)
+            drawTokens (g, detail);
 
         /* draw all the arcs that belong to us */
 
@@ -331,7 +382,7 @@ class Place
             /* depending on the state pick the color (could be different
                 than the state color) */
 
-            switch (state)
+            switch (st)
             {
                 case MOVING:
                     color = colorSelected;
@@ -349,14 +400,48 @@ class Place
 
             /* paint arc */
 
-            tmp . paint (g);
+            tmp . paint (g, detail);
         }
 
+        if (! detail)
+            return;
+
         /* draw place label outside the circle on the right and on the upper*/
 
         g . drawString (label, originX + SIZE, originY + SIZE - g . getFontMetrics() . getHeight());
 
-    } /* end paint */
+    } /* end draw */
+
+
+    /*
+        draw the tokens in the current color, with their number if detail is
+        set.
+    */
+
+    private void drawTokens (Graphics g, boolean detail)
+    {
+	if (tokenNumber > 0) {
+	    g . drawOval (originX + SIZE/2 - TOKENSIZE, originY + SIZE/2 - TOKENSIZE*2, TOKENSIZE, TOKENSIZE);
+	    if (tokenNumber > 1 && detail) {
+		g . drawString ((new Integer (tokenNumber)) . toString (), originX + SIZE / 2, originY + SIZE / 2);
+	    }
+	}
+
+    } /* end drawTokens */
+
+
+    /*
+        create the colors corresponding to the different states.
+    */
+
+    private void makeColors ()
+    {
+        colorNormal    = new Color (0, 100, 0);
+        colorSelected  = new Color (100, 100, 100);
+        colorActive    = new Color (100, 0, 0);
+        colorHighlight = new Color (0, 0, 100);
+
+    } /* end makeColors */
 
 
     /*
@@ -374,30 +459,37 @@ class Place
         /* remove arc drawings */
 
         for (int i = 0; i < arcs . size (); i ++)
-        {
-            Arc tmp = (Arc) (arcs . elementAt (i));
+            ((Arc) (arcs . elementAt (i))) . remove (g);
 
-            /* clear the arc */
+        pruneArcs ();
 
-            tmp . remove (g);
+        /* update previous coordinates */
+
+        oldX = originX;
+        oldY = originY;
+
+    } /* end remove */
 
-            /* if this arc is being removed or the transition on the other
-               side of the arc is removed - delete it */
 
-            if (tmp == removing || ! tmp . transitionValid ())
+    /*
+        drop the arcs that are being removed or whose transition was removed.
+        a removed place keeps its arcs, in case the removal is undone.
+    */
+
+    private void pruneArcs ()
+    {
+        for (int i = 0; i < arcs . size (); i ++)
+        {
+            Arc tmp = (Arc) (arcs . elementAt (i));
+
+            if (tmp . removing () || (valid && ! tmp . transitionValid ()))
             {
                 arcs . removeElementAt (i);
                 i --;
-                removing = (Arc) null;
             }
         }
 
-        /* update previous coordinates */
-
-        oldX = originX;
-        oldY = originY;
-
-    } /* end remove */
+    } /* end pruneArcs */
 
 
     /*
@@ -423,6 +515,39 @@ class Place
     } /* end bounds */
 
 
+    /*
+        return the rectangle the place, its tokens and its label are drawn
+        in.
+    */
+
+    public Rectangle area ()
+    {
+        return new Rectangle (originX, originY, SIZE + LABEL_WIDTH + 1, SIZE + 1);
+
+    } /* end area */
+
+
+    /*
+        return a rectangle holding the place and all the arcs from and to it.
+    */
+
+    public Rectangle extent ()
+    {
+        Rectangle r = area ();
+
+        for (int i = 0; i < arcs . size (); i ++)
+            r . add (((Arc) (arcs . elementAt (i))) . transition () . area ());
+
+        for (int i = 0; i < arcsIn . size (); i ++)
+            r . add (((Arc) (arcsIn . elementAt (i))) . transition () . area ());
+
+        r . grow (Arc . ARROW_SIZE, Arc . ARROW_SIZE);
+
+        return r;
+
+    } /* end extent */
+
+
     /*
         check if the specified coordinate is withing the place image.
     */
@@ -446,6 +571,17 @@ class Place
     } /* end makeInvalid */
 
 
+    /*
+        mark place as valid again, when a removal is undone.
+    */
+
+    public void makeValid ()
+    {
+        valid = true;
+
+    } /* end makeValid */
+
+
     /*
         return the valid flag.
     */
@@ -457,6 +593,23 @@ class Place
     } /* end valid */
 
 
+    /*
+        return the coordinates of the place origin.
+    */
+
+    public int originX ()
+    {
+        return originX;
+
+    } /* end originX */
+
+    public int originY ()
+    {
+        return originY;
+
+    } /* end originY */
+
+
     /*
         return place id.
     */
@@ -491,10 +644,11 @@ class Place
 
 
     /*
-        add new arc from this place to specified transition.
+        add new arc from this place to specified transition. return false if
+        there already was one.
     */
 
-    public void addArc (Transition trans)
+    public boolean addArc (Transition trans)
     {
         /* see if we already have an arc between these this place and that trans */
 
@@ -502,10 +656,17 @@ class Place
         {
            Arc tmp = (Arc) (arcs . elementAt (i));
 
-            /* if one exists - do nothing */
+            /* if one exists - do nothing, unless it is still waiting to be
+               erased after a removal, in which case it just stays */
            if (tmp . transition () == trans)
             {
-                return;
+                if (! tmp . removing ())
+                    return false;
+
+                tmp . setRemoving (false);
+                trans . addArcIn (tmp);
+
+                return true;
             }
         }
 
@@ -518,14 +679,17 @@ class Place
 	/* let the trans know a new arc to it has been created */
 	trans . addArcIn (arc);
 
+        return true;
+
     } /* end addArc */
 
 
     /*
-        remove arc from this place to specified trans.
+        remove arc from this place to specified trans. return false if there
+        was none.
     */
 
-    public void removeArc (Transition trans)
+    public boolean removeArc (Transition trans)
     {
         /* find the arc with the specified destination trans and mark
            it as being removed. it will be actually removed in the paint()
@@ -535,19 +699,100 @@ class Place
         {
             Arc tmp = (Arc) (arcs . elementAt (i));
 
-            if (tmp . transition () == trans)
+            if (tmp . transition () == trans && ! tmp . removing ())
             {
-                removing = tmp;
+                tmp . setRemoving (true);
 
 		/* remove it from its transition set of in arc */
-		removing.transition().removeArcIn(removing);
-                return;
+		tmp.transition().removeArcIn(tmp);
+                return true;
             }
         }
 
+        return false;
+
     } /* removeArc */
 
 
+    /*
+        put back an arc to a transition that was dropped while the
+        transition was removed.
+    */
+
+    public void restoreArc (Arc arc)
+    {
+        if (! arcs . contains (arc))
+            arcs . addElement ((Object) arc);
+
+    } /* end restoreArc */
+
+
+    /*
+        return the number of arcs going out to transitions.
+    */
+
+    public int arcsNumber ()
+    {
+        return arcs . size ();
+
+    } /* end arcsNumber */
+
+
+    /*
+        return the specified arc going out to a transition.
+    */
+
+    public Arc arc (int i)
+    {
+        return (Arc) (arcs . elementAt (i));
+
+    } /* end arc */
+
+
+    /*
+        record an arc coming in from a transition.
+    */
+
+    public void addArcIn (Arc arc)
+    {
+        arcsIn . addElement ((Object) arc);
+
+    } /* end addArcIn */
+
+
+    /*
+        forget an arc coming in from a transition.
+    */
+
+    public void removeArcIn (Arc arc)
+    {
+        arcsIn . removeElement ((Object) arc);
+
+    } /* end removeArcIn */
+
+
+    /*
+        return the number of arcs coming in from transitions.
+    */
+
+    public int arcsInNumber ()
+    {
+        return arcsIn . size ();
+
+    } /* end arcsInNumber */
+
+
+    /*
+        return the specified arc coming in from a transition.
+    */
+
+    public Arc arcIn (int i)
+    {
+        return (Arc) (arcsIn . elementAt (i));
+
+    } /* end arcIn */
+
+
     /*
         Add a token
     */
@@ -582,6 +827,16 @@ class Place
     } /* end removeToken */
 
 
+    /*
+        set number of tokens
+    */
+
+    public void setTokenNumber (int n)
+    {
+	tokenNumber = n;
+    } /* end setTokenNumber */
+
+
     /*
         write placee data into a file.
     */
@@ -0,0 +1,578 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+import java.io.*;
+import javax.xml.stream.*;
+
+
+/*
+    Pnml class - import and export of place/transition nets in PNML, the
+    XML interchange format of Petri net tools. Both directions stream with
+    StAX: the import creates places, transitions and arcs as their elements
+    end, and the export writes them straight from the net, so the memory
+    used does not depend on the size of the file.
+
+    PNML ids are strings; imported nodes get new ids and a table maps the
+    string ids to them. Arcs naming nodes not read yet, and reference nodes
+    (referencePlace, referenceTransition) are resolved at the end of the
+    file. All arcs here have weight 1, so a net with an arc inscription
+    other than 1 is rejected rather than imported as a different net.
+*/
+
+
+class Pnml
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* PNML namespace and net type written */
+
+    final static String NAMESPACE = "http://www.pnml.org/version-2009/grammar/pnml";
+    final static String NET_TYPE  = "http://www.pnml.org/version-2009/grammar/ptnet";
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net imported into */
+
+    private PetriNet    net;
+
+    /* node of each PNML id - place id * 2 or transition id * 2 + 1 */
+
+    private Hashtable   nodes;
+
+    /* PNML id referenced by each reference node */
+
+    private Hashtable   references;
+
+    /* source and target of the arcs waiting for their nodes */
+
+    private Vector      pending;
+
+    /* names of the enclosing elements */
+
+    private Vector      path;
+
+    /* node being read - element name, id, position and marking */
+
+    private String      nodeElement;
+    private String      nodeId;
+    private int         nodeX;
+    private int         nodeY;
+    private int         nodeTokens;
+    private StringBuffer text;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - importer into the specified net.
+    */
+
+    public Pnml (PetriNet n)
+    {
+        net        = n;
+        nodes      = new Hashtable ();
+        references = new Hashtable ();
+        pending    = new Vector ();
+        path       = new Vector ();
+        text       = new StringBuffer ();
+
+    } /* end Pnml */
+
+
+    /*
+        import the first net of the specified PNML file into net, which
+        should be empty. return a PetriNet status.
+    */
+
+    public static int load (PetriNet net, String fileName)
+    {
+        InputStream file;
+
+        try
+        {
+            file = new BufferedInputStream (new FileInputStream (fileName));
+        }
+        catch (FileNotFoundException e)
+        {
+            return PetriNet . STATUS_FILE_NOT_FOUND;
+        }
+
+        try
+        {
+            XMLInputFactory factory = XMLInputFactory . newInstance ();
+
+            /* never fetch anything from outside the file */
+
+            factory . setProperty (XMLInputFactory . SUPPORT_DTD, Boolean . FALSE);
+            factory . setProperty (XMLInputFactory . IS_SUPPORTING_EXTERNAL_ENTITIES,
+                                   Boolean . FALSE);
+
+            XMLStreamReader in = factory . createXMLStreamReader (file);
+
+            return new Pnml (net) . read (in);
+        }
+        catch (XMLStreamException e)
+        {
+            return PetriNet . STATUS_BAD_INPUT_FILE;
+        }
+        finally
+        {
+            try
+            {
+                file . close ();
+            }
+            catch (IOException e)
+            {
+            }
+        }
+
+    } /* end load */
+
+
+    /*
+        export net into the specified PNML file. return a PetriNet status.
+    */
+
+    public static int save (PetriNet net, String fileName)
+    {
+        OutputStream file;
+
+        try
+        {
+            file = new BufferedOutputStream (new FileOutputStream (fileName), 1 << 16);
+        }
+        catch (IOException e)
+        {
+            return PetriNet . STATUS_FILE_CREATE_ERROR;
+        }
+
+        try
+        {
+            XMLStreamWriter out = XMLOutputFactory . newInstance () .
+                                  createXMLStreamWriter (file, "UTF-8");
+
+            write (net, out);
+            out . close ();
+            file . close ();
+        }
+        catch (XMLStreamException e)
+        {
+            return PetriNet . STATUS_WRITE_ERROR;
+        }
+        catch (IOException e)
+        {
+            return PetriNet . STATUS_WRITE_ERROR;
+        }
+
+        return PetriNet . STATUS_NORMAL;
+
+    } /* end save */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        read the events of the file.
+    */
+
+    private int read (XMLStreamReader in) throws XMLStreamException
+    {
+        int nets = 0;
+
+        while (in . hasNext ())
+        {
+            int event = in . next ();
+
+            if (event == XMLStreamConstants . START_ELEMENT)
+            {
+                String name = in . getLocalName ();
+
+                /* only the first net of the file */
+
+                if (name . equals ("net") && ++ nets > 1)
+                    break;
+
+                startElement (name, in);
+                path . addElement (name);
+            }
+
+            else if (event == XMLStreamConstants . END_ELEMENT)
+            {
+                path . removeElementAt (path . size () - 1);
+                endElement (in . getLocalName ());
+            }
+
+            else if (event == XMLStreamConstants . CHARACTERS &&
+                     (nodeElement != (String) null || parent (1) . equals ("inscription")))
+                text . append (in . getText ());
+        }
+
+        in . close ();
+
+        if (nets == 0)
+            return PetriNet . STATUS_BAD_INPUT_FILE;
+
+        /* arcs whose nodes came later */
+
+        for (int i = 0; i < pending . size (); i += 2)
+            if (! addArc ((String) pending . elementAt (i), (String) pending . elementAt (i + 1)))
+                return PetriNet . STATUS_BAD_INPUT_FILE;
+
+        return PetriNet . STATUS_NORMAL;
+
+    } /* end read */
+
+
+    /*
+        handle the start of an element.
+    */
+
+    private void startElement (String name, XMLStreamReader in) throws XMLStreamException
+    {
+        if (name . equals ("place") || name . equals ("transition"))
+        {
+            nodeElement = name;
+            nodeId      = in . getAttributeValue (null, "id");
+            nodeX       = nodeY = nodeTokens = 0;
+
+            if (nodeId == (String) null)
+                throw new XMLStreamException ("node without id");
+        }
+
+        else if (name . equals ("referencePlace") || name . equals ("referenceTransition"))
+        {
+            String id  = in . getAttributeValue (null, "id");
+            String ref = in . getAttributeValue (null, "ref");
+
+            if (id == (String) null || ref == (String) null)
+                throw new XMLStreamException ("bad reference node");
+
+            references . put (id, ref);
+        }
+
+        else if (name . equals ("arc"))
+        {
+            String source = in . getAttributeValue (null, "source");
+            String target = in . getAttributeValue (null, "target");
+
+            if (source == (String) null || target == (String) null)
+                throw new XMLStreamException ("arc without source or target");
+
+            if (! addArc (source, target))
+            {
+                pending . addElement (source);
+                pending . addElement (target);
+            }
+        }
+
+        /* position of the node itself, not of its name */
+
+        else if (name . equals ("position") && nodeElement != (String) null &&
+                 parent (0) . equals ("graphics") && parent (1) . equals (nodeElement))
+        {
+            nodeX = coordinate (in . getAttributeValue (null, "x"));
+            nodeY = coordinate (in . getAttributeValue (null, "y"));
+        }
+
+        text . setLength (0);
+
+    } /* end startElement */
+
+
+    /*
+        handle the end of an element.
+    */
+
+    private void endElement (String name) throws XMLStreamException
+    {
+        if (name . equals ("text") && parent (0) . equals ("inscription") &&
+            parent (1) . equals ("arc"))
+        {
+            int weight;
+
+            try
+            {
+                weight = Integer . parseInt (text . toString () . trim ());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new XMLStreamException ("bad arc inscription");
+            }
+
+            if (weight != 1)
+                throw new XMLStreamException ("arc weight " + weight + " is not 1");
+
+            return;
+        }
+
+        if (nodeElement == (String) null)
+            return;
+
+        if (name . equals ("text") && parent (0) . equals ("initialMarking") &&
+            parent (1) . equals ("place"))
+        {
+            try
+            {
+                nodeTokens = Integer . parseInt (text . toString () . trim ());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new XMLStreamException ("bad initial marking");
+            }
+
+            if (nodeTokens < 0)
+                throw new XMLStreamException ("bad initial marking");
+        }
+
+        else if (name . equals (nodeElement))
+        {
+            int node;
+
+            if (name . equals ("place"))
+            {
+                int id = net . createPlace (nodeX, nodeY);
+
+                net . resolvePlaceId (id) . setTokenNumber (nodeTokens);
+                node = 2 * id;
+            }
+            else
+                node = 2 * net . createTransition (nodeX, nodeY) + 1;
+
+            if (nodes . put (nodeId, Integer . valueOf (node)) != null)
+                throw new XMLStreamException ("duplicate id " + nodeId);
+
+            nodeElement = (String) null;
+        }
+
+    } /* end endElement */
+
+
+    /*
+        add the arc between the specified PNML nodes. return false if one of
+        them is not known yet.
+    */
+
+    private boolean addArc (String source, String target) throws XMLStreamException
+    {
+        Integer from = node (source);
+        Integer to   = node (target);
+
+        if (from == (Integer) null || to == (Integer) null)
+            return false;
+
+        int f = from . intValue ();
+        int t = to . intValue ();
+
+        if ((f & 1) == (t & 1))
+            throw new XMLStreamException ("arc between two nodes of the same kind");
+
+        if ((f & 1) == 0)
+            net . addInputArc (f >> 1, t >> 1);
+        else
+            net . addOutputArc (f >> 1, t >> 1);
+
+        return true;
+
+    } /* end addArc */
+
+
+    /*
+        return the node of a PNML id, following references, or null if it is
+        not known yet.
+    */
+
+    private Integer node (String id)
+    {
+        for (int i = 0; i <= references . size (); i ++)
+        {
+            String ref = (String) references . get (id);
+
+            if (ref == (String) null)
+                return (Integer) nodes . get (id);
+
+            id = ref;
+        }
+
+        /* a cycle of references */
+
+        return (Integer) null;
+
+    } /* end node */
+
+
+    /*
+        return the name of the enclosing element at the specified depth (0
+        for the parent), or "" above the root.
+    */
+
+    private String parent (int depth)
+    {
+        int i = path . size () - 1 - depth;
+
+        return (i < 0) ? "" : (String) path . elementAt (i);
+
+    } /* end parent */
+
+
+    /*
+        return a PNML coordinate, which may have a fraction, as an int.
+    */
+
+    private static int coordinate (String value) throws XMLStreamException
+    {
+        try
+        {
+            return (value == (String) null) ? 0 : (int) Math . round (Double . parseDouble (value));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new XMLStreamException ("bad coordinate " + value);
+        }
+
+    } /* end coordinate */
+
+
+    /*
+        write the net.
+    */
+
+    private static void write (PetriNet net, XMLStreamWriter out) throws XMLStreamException
+    {
+        out . writeStartDocument ("UTF-8", "1.0");
+        out . writeStartElement ("pnml");
+        out . writeDefaultNamespace (NAMESPACE);
+        out . writeStartElement ("net");
+        out . writeAttribute ("id", "net");
+        out . writeAttribute ("type", NET_TYPE);
+        out . writeStartElement ("page");
+        out . writeAttribute ("id", "page");
+
+        for (int i = 0; i < net . placeSlots (); i ++)
+        {
+            Place place = net . resolvePlaceId (i);
+
+            if (place == (Place) null)
+                continue;
+
+            out . writeStartElement ("place");
+            out . writeAttribute ("id", "p" + i);
+            writeName (out, i);
+            writePosition (out, place . originX (), place . originY ());
+
+            if (place . getTokenNumber () > 0)
+            {
+                out . writeStartElement ("initialMarking");
+                out . writeStartElement ("text");
+                out . writeCharacters (Integer . toString (place . getTokenNumber ()));
+                out . writeEndElement ();
+                out . writeEndElement ();
+            }
+
+            out . writeEndElement ();
+        }
+
+        for (int i = 0; i < net . transitionSlots (); i ++)
+        {
+            Transition trans = net . resolveTransitionId (i);
+
+            if (trans == (Transition) null)
+                continue;
+
+            out . writeStartElement ("transition");
+            out . writeAttribute ("id", "t" + i);
+            writeName (out, i);
+            writePosition (out, trans . originX (), trans . originY ());
+            out . writeEndElement ();
+        }
+
+        /* arcs, skipping the ones being removed */
+
+        int arcs = 0;
+
+        for (int i = 0; i < net . transitionSlots (); i ++)
+        {
+            Transition trans = net . resolveTransitionId (i);
+
+            if (trans == (Transition) null)
+                continue;
+
+            for (int j = 0; j < trans . arcsInNumber (); j ++)
+                if (trans . inputPlace (j) != (Place) null)
+                    writeArc (out, arcs ++, "p" + trans . inputPlace (j) . placeId (), "t" + i);
+
+            for (int j = 0; j < trans . arcsOutNumber (); j ++)
+                if (trans . outputPlace (j) != (Place) null)
+                    writeArc (out, arcs ++, "t" + i, "p" + trans . outputPlace (j) . placeId ());
+        }
+
+        out . writeEndElement ();
+        out . writeEndElement ();
+        out . writeEndElement ();
+        out . writeEndDocument ();
+
+    } /* end write */
+
+
+    /*
+        write the name of a node - its id, like the editor shows.
+    */
+
+    private static void writeName (XMLStreamWriter out, int id) throws XMLStreamException
+    {
+        out . writeStartElement ("name");
+        out . writeStartElement ("text");
+        out . writeCharacters (Integer . toString (id));
+        out . writeEndElement ();
+        out . writeEndElement ();
+
+    } /* end writeName */
+
+
+    /*
+        write the position of a node.
+    */
+
+    private static void writePosition (XMLStreamWriter out, int x, int y) throws XMLStreamException
+    {
+        out . writeStartElement ("graphics");
+        out . writeEmptyElement ("position");
+        out . writeAttribute ("x", Integer . toString (x));
+        out . writeAttribute ("y", Integer . toString (y));
+        out . writeEndElement ();
+
+    } /* end writePosition */
+
+
+    /*
+        write an arc.
+    */
+
+    private static void writeArc (XMLStreamWriter out, int n, String source, String target)
+        throws XMLStreamException
+    {
+        out . writeEmptyElement ("arc");
+        out . writeAttribute ("id", "a" + n);
+        out . writeAttribute ("source", source);
+        out . writeAttribute ("target", target);
+
+    } /* end writeArc */
+
+
+} /* end Pnml */
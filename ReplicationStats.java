@@ -0,0 +1,238 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    ReplicationStats class - per-place token statistics over a number of
+    independent simulation runs of the same net. Statistics of separate
+    groups of runs are merged with add().
+*/
+
+
+class ReplicationStats
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* place id of each compiled place index */
+
+    private int         placeIds [];
+
+    /* number of runs accounted for */
+
+    private int         runs;
+
+    /* number of runs that stopped with no activable transition */
+
+    private int         deadlocks;
+
+    /* total number of firings over all runs */
+
+    private long        steps;
+
+    /* sum and sum of squares of the final token numbers of each place */
+
+    private long        sum [];
+    private double      sumSquares [];
+
+    /* smallest and largest final token number of each place */
+
+    private int         min [];
+    private int         max [];
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - empty statistics for the places of the
+        specified net.
+    */
+
+    public ReplicationStats (CompiledNet net)
+    {
+        int n = net . placeNumber ();
+
+        placeIds   = new int [n];
+        sum        = new long [n];
+        sumSquares = new double [n];
+        min        = new int [n];
+        max        = new int [n];
+
+        for (int p = 0; p < n; p ++)
+        {
+            placeIds [p] = net . placeId (p);
+            min [p]      = Integer . MAX_VALUE;
+            max [p]      = Integer . MIN_VALUE;
+        }
+
+        runs = deadlocks = 0;
+        steps = 0;
+
+    } /* end ReplicationStats */
+
+
+    /*
+        account for the final marking of one run.
+    */
+
+    public void add (CompiledNet net, long s)
+    {
+        for (int p = 0; p < sum . length; p ++)
+        {
+            int tokens = net . tokens (p);
+
+            sum [p]        += tokens;
+            sumSquares [p] += (double) tokens * tokens;
+
+            if (tokens < min [p])
+                min [p] = tokens;
+
+            if (tokens > max [p])
+                max [p] = tokens;
+        }
+
+        runs ++;
+        steps += s;
+
+        if (net . enabledNumber () == 0)
+            deadlocks ++;
+
+    } /* end add */
+
+
+    /*
+        merge the statistics of another group of runs into these.
+    */
+
+    public void add (ReplicationStats other)
+    {
+        for (int p = 0; p < sum . length; p ++)
+        {
+            sum [p]        += other . sum [p];
+            sumSquares [p] += other . sumSquares [p];
+            min [p]         = Math . min (min [p], other . min [p]);
+            max [p]         = Math . max (max [p], other . max [p]);
+        }
+
+        runs      += other . runs;
+        deadlocks += other . deadlocks;
+        steps     += other . steps;
+
+    } /* end add */
+
+
+    /*
+        return the number of runs.
+    */
+
+    public int runs ()
+    {
+        return runs;
+
+    } /* end runs */
+
+
+    /*
+        return the number of runs that stopped with no activable transition.
+    */
+
+    public int deadlocks ()
+    {
+        return deadlocks;
+
+    } /* end deadlocks */
+
+
+    /*
+        return the total number of firings.
+    */
+
+    public long steps ()
+    {
+        return steps;
+
+    } /* end steps */
+
+
+    /*
+        return the number of places.
+    */
+
+    public int placeNumber ()
+    {
+        return placeIds . length;
+
+    } /* end placeNumber */
+
+
+    /*
+        return the place id of the specified place index.
+    */
+
+    public int placeId (int p)
+    {
+        return placeIds [p];
+
+    } /* end placeId */
+
+
+    /*
+        return the mean final token number of the specified place index.
+    */
+
+    public double mean (int p)
+    {
+        return (runs == 0) ? 0.0 : (double) sum [p] / runs;
+
+    } /* end mean */
+
+
+    /*
+        return the variance of the final token number of the specified
+        place index.
+    */
+
+    public double variance (int p)
+    {
+        if (runs < 2)
+            return 0.0;
+
+        double m = mean (p);
+
+        return Math . max (0.0, (sumSquares [p] - runs * m * m) / (runs - 1));
+
+    } /* end variance */
+
+
+    /*
+        return the smallest final token number of the specified place index.
+    */
+
+    public int min (int p)
+    {
+        return min [p];
+
+    } /* end min */
+
+
+    /*
+        return the largest final token number of the specified place index.
+    */
+
+    public int max (int p)
+    {
+        return max [p];
+
+    } /* end max */
+
+
+} /* end ReplicationStats */
@@ -0,0 +1,144 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/*
+    Replications class - fork-join task running a range of independent
+    random simulations of the same net. Every run starts from a copy of
+    the initial marking and has its own splittable random number generator.
+    The seeds are drawn one per replication from a root generator seeded
+    with the seed of the whole run, in order and before any task is forked,
+    so that the results do not depend on the number of threads or on the
+    way the range gets split.
+*/
+
+
+class Replications extends RecursiveTask
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* number of runs done by one task without splitting further */
+
+    final static int    RUNS_PER_TASK = 8;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net holding the initial marking, never fired itself */
+
+    private CompiledNet net;
+
+    /* maximum number of steps of each run */
+
+    private long        steps;
+
+    /* random seed of each run */
+
+    private long        seeds [];
+
+    /* range of runs done by this task */
+
+    private int         first;
+    private int         last;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - runs first .. last - 1.
+    */
+
+    public Replications (CompiledNet n, long s, long sd [], int f, int l)
+    {
+        net   = n;
+        steps = s;
+        seeds = sd;
+        first = f;
+        last  = l;
+
+    } /* end Replications */
+
+
+    /*
+        run the specified number of replications of the net on the common
+        fork-join pool and return the merged statistics.
+    */
+
+    public static ReplicationStats run (CompiledNet net, int replications,
+                                        long steps, long seed)
+    {
+        /* draw one seed per run up front, so that run i always gets the
+           same random sequence */
+
+        SplittableRandom root  = new SplittableRandom (seed);
+        long             sd [] = new long [replications];
+
+        for (int i = 0; i < replications; i ++)
+            sd [i] = root . nextLong ();
+
+        Replications task = new Replications (net, steps, sd, 0, replications);
+
+        return (ReplicationStats) ForkJoinPool . commonPool () . invoke (task);
+
+    } /* end run */
+
+
+    /*
+        PROTECTED METHODS
+    */
+
+
+    /*
+        do the runs of our range, splitting it in two if it is too large.
+    */
+
+    protected Object compute ()
+    {
+        if (last - first > RUNS_PER_TASK)
+        {
+            int          middle = (first + last) >>> 1;
+            Replications left   = new Replications (net, steps, seeds, first, middle);
+            Replications right  = new Replications (net, steps, seeds, middle, last);
+
+            left . fork ();
+
+            ReplicationStats stats = (ReplicationStats) right . compute ();
+
+            ReplicationStats leftStats = (ReplicationStats) left . join ();
+
+            leftStats . add (stats);
+
+            return leftStats;
+        }
+
+        ReplicationStats stats = new ReplicationStats (net);
+
+        for (int i = first; i < last; i ++)
+        {
+            CompiledNet copy = new CompiledNet (net);
+            long        done = copy . run (steps, new SplittableRandom (seeds [i]));
+
+            stats . add (copy, done);
+        }
+
+        return stats;
+
+    } /* end compute */
+
+
+} /* end Replications */
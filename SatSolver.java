@@ -0,0 +1,363 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+
+
+/*
+    SatSolver class - small DPLL satisfiability solver for the structural
+    analyses: unit propagation with two watched literals per clause and
+    chronological backtracking, variables being tried false first. Clauses
+    can be added between calls to solve(), e.g. to block the solutions
+    already found.
+
+    Variable v has literals 2v (v is true) and 2v + 1 (v is false).
+*/
+
+
+class SatSolver
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* values of the variables */
+
+    final static int    UNASSIGNED = -1;
+    final static int    FALSE      = 0;
+    final static int    TRUE       = 1;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of variables */
+
+    private int         numVars;
+
+    /* clauses of two literals or more, the first two being watched */
+
+    private Vector      clauses;
+
+    /* clauses watching each literal */
+
+    private int         watches [][];
+    private int         watchCount [];
+
+    /* literals of the one literal clauses, and whether an empty clause was
+       added */
+
+    private int         units [];
+    private int         numUnits;
+    private boolean     empty;
+
+    /* current assignment, assigned literals in order and where each
+       decision level starts in that order */
+
+    private int         value [];
+    private int         trail [];
+    private int         numTrail;
+    private int         levelStart [];
+    private boolean     flipped [];
+    private int         numLevels;
+
+    /* next assigned literal to propagate */
+
+    private int         head;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - solver with n variables and no clauses.
+    */
+
+    public SatSolver (int n)
+    {
+        numVars    = n;
+        clauses    = new Vector ();
+        watches    = new int [2 * n][];
+        watchCount = new int [2 * n];
+        units      = new int [4];
+        numUnits   = 0;
+        empty      = false;
+        value      = new int [n];
+        trail      = new int [n];
+        levelStart = new int [n + 1];
+        flipped    = new boolean [n + 1];
+
+        for (int l = 0; l < 2 * n; l ++)
+            watches [l] = new int [4];
+
+    } /* end SatSolver */
+
+
+    /*
+        add a clause - the disjunction of the specified literals, which must
+        be distinct variables.
+    */
+
+    public void addClause (int lits [])
+    {
+        if (lits . length == 0)
+        {
+            empty = true;
+            return;
+        }
+
+        if (lits . length == 1)
+        {
+            if (numUnits == units . length)
+                units = Arrays . copyOf (units, 2 * numUnits);
+
+            units [numUnits ++] = lits [0];
+            return;
+        }
+
+        int c [] = (int []) lits . clone ();
+
+        clauses . addElement (c);
+        watch (c [0], clauses . size () - 1);
+        watch (c [1], clauses . size () - 1);
+
+    } /* end addClause */
+
+
+    /*
+        look for an assignment satisfying all the clauses. return true if one
+        was found, then available through value().
+    */
+
+    public boolean solve ()
+    {
+        Arrays . fill (value, UNASSIGNED);
+
+        numTrail  = head = 0;
+        numLevels = 0;
+
+        if (empty)
+            return false;
+
+        for (int i = 0; i < numUnits; i ++)
+            if (! assign (units [i]))
+                return false;
+
+        int next = 0;
+
+        while (true)
+        {
+            if (! propagate ())
+            {
+                /* undo decisions back to one not tried both ways */
+
+                while (true)
+                {
+                    if (numLevels == 0)
+                        return false;
+
+                    int start = levelStart [numLevels - 1];
+                    int lit   = trail [start];
+
+                    undo (start);
+
+                    if (! flipped [numLevels - 1])
+                    {
+                        flipped [numLevels - 1] = true;
+                        assign (lit ^ 1);
+                        break;
+                    }
+
+                    numLevels --;
+                }
+
+                next = 0;
+                continue;
+            }
+
+            while (next < numVars && value [next] != UNASSIGNED)
+                next ++;
+
+            if (next == numVars)
+                return true;
+
+            /* new decision, false first */
+
+            levelStart [numLevels] = numTrail;
+            flipped [numLevels]    = false;
+            numLevels ++;
+
+            assign (2 * next + 1);
+        }
+
+    } /* end solve */
+
+
+    /*
+        return the value of variable v in the assignment found.
+    */
+
+    public int value (int v)
+    {
+        return value [v];
+
+    } /* end value */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        make literal l true. return false if it is already false.
+    */
+
+    private boolean assign (int l)
+    {
+        int v = l >> 1;
+        int b = ((l & 1) == 0) ? TRUE : FALSE;
+
+        if (value [v] != UNASSIGNED)
+            return value [v] == b;
+
+        value [v]          = b;
+        trail [numTrail ++] = l;
+
+        return true;
+
+    } /* end assign */
+
+
+    /*
+        unassign the literals of the trail from position start on.
+    */
+
+    private void undo (int start)
+    {
+        while (numTrail > start)
+            value [trail [-- numTrail] >> 1] = UNASSIGNED;
+
+        head = start;
+
+    } /* end undo */
+
+
+    /*
+        return true if literal l is false.
+    */
+
+    private boolean isFalse (int l)
+    {
+        int v = value [l >> 1];
+
+        return v != UNASSIGNED && (v == TRUE) == ((l & 1) != 0);
+
+    } /* end isFalse */
+
+
+    /*
+        return true if literal l is true.
+    */
+
+    private boolean isTrue (int l)
+    {
+        int v = value [l >> 1];
+
+        return v != UNASSIGNED && (v == TRUE) == ((l & 1) == 0);
+
+    } /* end isTrue */
+
+
+    /*
+        propagate the assigned literals through the clauses. return false on
+        a conflict.
+    */
+
+    private boolean propagate ()
+    {
+        while (head < numTrail)
+        {
+            int f     = trail [head ++] ^ 1;
+            int ws [] = watches [f];
+            int n     = watchCount [f];
+            int kept  = 0;
+
+            for (int i = 0; i < n; i ++)
+            {
+                int c []   = (int []) clauses . elementAt (ws [i]);
+                boolean ok = true;
+
+                /* make the false literal the second watch */
+
+                if (c [0] == f)
+                {
+                    c [0] = c [1];
+                    c [1] = f;
+                }
+
+                if (! isTrue (c [0]))
+                {
+                    /* look for another literal to watch */
+
+                    int k;
+
+                    for (k = 2; k < c . length && isFalse (c [k]); k ++)
+                        ;
+
+                    if (k < c . length)
+                    {
+                        c [1] = c [k];
+                        c [k] = f;
+                        watch (c [1], ws [i]);
+                        continue;
+                    }
+
+                    ok = assign (c [0]);
+                }
+
+                ws [kept ++] = ws [i];
+
+                if (! ok)
+                {
+                    /* keep the remaining watches and stop */
+
+                    while (++ i < n)
+                        ws [kept ++] = ws [i];
+
+                    watchCount [f] = kept;
+                    return false;
+                }
+            }
+
+            watchCount [f] = kept;
+        }
+
+        return true;
+
+    } /* end propagate */
+
+
+    /*
+        add clause c to the watches of literal l.
+    */
+
+    private void watch (int l, int c)
+    {
+        if (watchCount [l] == watches [l] . length)
+            watches [l] = Arrays . copyOf (watches [l], 2 * watchCount [l]);
+
+        watches [l][watchCount [l] ++] = c;
+
+    } /* end watch */
+
+
+} /* end SatSolver */
@@ -0,0 +1,24 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    SimulationObserver interface - classes complying to this interface get
+    called by PetriNet.run while a batch of simulation steps is in progress,
+    so that they can show or record intermediate markings.
+*/
+
+interface SimulationObserver
+{
+    /*
+        called every sampling interval with the number of steps done so far.
+        the places of the net hold the current marking.
+    */
+
+    void simulationSample (PetriNet net, long steps);
+
+} /* end SimulationObserver */
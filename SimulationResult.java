@@ -0,0 +1,126 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    SimulationResult class - outcome of a batch of simulation steps run by
+    PetriNet.run: how many transitions fired, why the run stopped and the
+    marking it ended with.
+*/
+
+
+class SimulationResult
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* number of transitions fired */
+
+    private long        steps;
+
+    /* why the run stopped - PetriNet.STATUS_NO_ACTIVABLE_TRANSITION if the
+       net got stuck, PetriNet.STATUS_STEP_LIMIT otherwise */
+
+    private int         status;
+
+    /* time spent firing, in nanoseconds */
+
+    private long        elapsed;
+
+    /* final number of tokens of each place, indexed by place id */
+
+    private int         marking [];
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method
+    */
+
+    public SimulationResult (long s, int st, long e, int m [])
+    {
+        steps   = s;
+        status  = st;
+        elapsed = e;
+        marking = m;
+
+    } /* end SimulationResult */
+
+
+    /*
+        return the number of transitions fired.
+    */
+
+    public long steps ()
+    {
+        return steps;
+
+    } /* end steps */
+
+
+    /*
+        return the reason the run stopped.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return true if the run stopped because no transition was activable.
+    */
+
+    public boolean deadlock ()
+    {
+        return status == PetriNet . STATUS_NO_ACTIVABLE_TRANSITION;
+
+    } /* end deadlock */
+
+
+    /*
+        return the time spent firing, in nanoseconds.
+    */
+
+    public long elapsed ()
+    {
+        return elapsed;
+
+    } /* end elapsed */
+
+
+    /*
+        return the number of firings per second.
+    */
+
+    public double throughput ()
+    {
+        return (elapsed == 0) ? 0.0 : steps * 1e9 / elapsed;
+
+    } /* end throughput */
+
+
+    /*
+        return the final marking, indexed by place id.
+    */
+
+    public int [] marking ()
+    {
+        return marking;
+
+    } /* end marking */
+
+
+} /* end SimulationResult */
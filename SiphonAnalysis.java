@@ -0,0 +1,528 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.util.*;
+
+
+/*
+    SiphonAnalysis class - structural deadlock check of a compiled net. A
+    siphon is a set of places such that every transition putting tokens in
+    it also takes tokens from it: once empty, it stays empty. A trap is a
+    set of places such that every transition taking tokens from it also
+    puts tokens in it: once marked, it stays marked.
+
+    At a dead marking the empty places form a siphon, so if every minimal
+    siphon contains a trap marked in the initial marking, no dead marking is
+    reachable (Commoner's condition). Minimal siphons are enumerated with a
+    SatSolver: each solution is a siphon, shrunk to a minimal one, and a
+    clause excluding its supersets is added before looking for the next.
+    Transitions without input places never fire and are left out.
+
+    The condition only holds for nets with places and transitions where
+    every transition has an input place: under the firing rule of this
+    program (see Transition.isActive) a transition without input places is
+    never enabled, so the empty places of a dead marking need not form a
+    siphon. deadlockFree does not conclude on other nets.
+*/
+
+
+class SiphonAnalysis
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* all the minimal siphons were found */
+
+    final static int    STATUS_COMPLETE      = 1;
+
+    /* enumeration stopped because the maximum number of siphons was found */
+
+    final static int    STATUS_SIPHON_LIMIT  = 2;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net analysed */
+
+    private CompiledNet net;
+    private int         places;
+    private int         transitions;
+
+    /* maximum number of siphons */
+
+    private int         maxSiphons;
+
+    /* minimal siphons and the maximal trap within each, as compiled place
+       indexes */
+
+    private Vector      siphons;
+    private Vector      traps;
+
+    /* whether the trap of each siphon is initially marked */
+
+    private boolean     marked [];
+
+    /* outcome */
+
+    private int         status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - find at most maxSiphons minimal siphons.
+    */
+
+    public SiphonAnalysis (CompiledNet n, int max)
+    {
+        net         = n;
+        places      = net . placeNumber ();
+        transitions = net . transitionNumber ();
+        maxSiphons  = max;
+        siphons     = new Vector ();
+        traps       = new Vector ();
+        marked      = new boolean [0];
+        status      = 0;
+
+    } /* end SiphonAnalysis */
+
+
+    /*
+        enumerate the minimal siphons and check their traps. return the
+        status.
+    */
+
+    public int analyse ()
+    {
+        int preStart []   = net . preStart ();
+        int prePlaces []  = net . prePlaces ();
+        int postStart []  = net . postStart ();
+        int postPlaces [] = net . postPlaces ();
+
+        SatSolver sat   = new SatSolver (places);
+        boolean   in [] = new boolean [places];
+        int       all [] = new int [places];
+
+        /* every transition putting tokens in a place of the siphon takes
+           tokens from one: not x(p) or x(q1) or x(q2) ... */
+
+        for (int t = 0; t < transitions; t ++)
+        {
+            if (preStart [t] == preStart [t + 1])
+                continue;
+
+            int inputs [] = distinct (prePlaces, preStart [t], preStart [t + 1], in);
+
+            for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+            {
+                int p = postPlaces [i];
+
+                if (in [p] || (i > postStart [t] && seenBefore (postPlaces, postStart [t], i)))
+                    continue;
+
+                int clause [] = new int [inputs . length + 1];
+
+                clause [0] = 2 * p + 1;
+
+                for (int j = 0; j < inputs . length; j ++)
+                    clause [j + 1] = 2 * inputs [j];
+
+                sat . addClause (clause);
+            }
+
+            for (int j = 0; j < inputs . length; j ++)
+                in [inputs [j]] = false;
+        }
+
+        /* the siphon is not empty */
+
+        for (int p = 0; p < places; p ++)
+            all [p] = 2 * p;
+
+        sat . addClause (all);
+
+        while (sat . solve ())
+        {
+            if (siphons . size () == maxSiphons)
+            {
+                status = STATUS_SIPHON_LIMIT;
+                break;
+            }
+
+            boolean set [] = new boolean [places];
+
+            for (int p = 0; p < places; p ++)
+                set [p] = sat . value (p) == SatSolver . TRUE;
+
+            int siphon [] = minimize (set);
+
+            siphons . addElement (siphon);
+
+            /* no superset of it from now on */
+
+            int block [] = new int [siphon . length];
+
+            for (int i = 0; i < siphon . length; i ++)
+                block [i] = 2 * siphon [i] + 1;
+
+            sat . addClause (block);
+        }
+
+        if (status == 0)
+            status = STATUS_COMPLETE;
+
+        /* Commoner's condition */
+
+        marked = new boolean [siphons . size ()];
+
+        for (int i = 0; i < siphons . size (); i ++)
+        {
+            int  siphon [] = (int []) siphons . elementAt (i);
+            boolean set [] = new boolean [places];
+
+            for (int j = 0; j < siphon . length; j ++)
+                set [siphon [j]] = true;
+
+            maximalTrap (set);
+
+            int trap [] = members (set);
+
+            traps . addElement (trap);
+
+            for (int j = 0; j < trap . length && ! marked [i]; j ++)
+                marked [i] = net . tokens (trap [j]) > 0;
+        }
+
+        return status;
+
+    } /* end analyse */
+
+
+    /*
+        return the outcome of the enumeration.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of minimal siphons found.
+    */
+
+    public int siphonNumber ()
+    {
+        return siphons . size ();
+
+    } /* end siphonNumber */
+
+
+    /*
+        return the place ids of minimal siphon i.
+    */
+
+    public int [] siphon (int i)
+    {
+        return placeIds ((int []) siphons . elementAt (i));
+
+    } /* end siphon */
+
+
+    /*
+        return the place ids of the maximal trap within siphon i (empty if
+        there is none).
+    */
+
+    public int [] trap (int i)
+    {
+        return placeIds ((int []) traps . elementAt (i));
+
+    } /* end trap */
+
+
+    /*
+        return true if siphon i can become empty as far as the structure
+        tells, i.e. the maximal trap within it is not initially marked.
+    */
+
+    public boolean canEmpty (int i)
+    {
+        return ! marked [i];
+
+    } /* end canEmpty */
+
+
+    /*
+        return true if no dead marking can be reached: all the minimal
+        siphons were found and each one holds an initially marked trap. false
+        means the structure alone does not tell, which is always the case
+        for a net without places or transitions or with a transition
+        without input places (see above).
+    */
+
+    public boolean deadlockFree ()
+    {
+        if (status != STATUS_COMPLETE || places == 0 || transitions == 0)
+            return false;
+
+        int preStart [] = net . preStart ();
+
+        for (int t = 0; t < transitions; t ++)
+            if (preStart [t] == preStart [t + 1])
+                return false;
+
+        for (int i = 0; i < marked . length; i ++)
+            if (! marked [i])
+                return false;
+
+        return true;
+
+    } /* end deadlockFree */
+
+
+    /*
+        return the place ids of the maximal trap of the whole net.
+    */
+
+    public int [] maximalTrap ()
+    {
+        boolean set [] = new boolean [places];
+
+        Arrays . fill (set, true);
+        maximalTrap (set);
+
+        return placeIds (members (set));
+
+    } /* end maximalTrap */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        shrink the places of set (a siphon) to a minimal siphon and return
+        its places. a place is left out whenever the rest still holds a
+        siphon, until none can be.
+    */
+
+    private int [] minimize (boolean set [])
+    {
+        boolean rest [] = new boolean [places];
+
+        for (int p = 0; p < places; p ++)
+        {
+            if (! set [p])
+                continue;
+
+            System . arraycopy (set, 0, rest, 0, places);
+            rest [p] = false;
+
+            if (maximalSiphon (rest))
+                System . arraycopy (rest, 0, set, 0, places);
+        }
+
+        return members (set);
+
+    } /* end minimize */
+
+
+    /*
+        reduce set to the largest siphon it holds. return false if that is
+        empty.
+    */
+
+    private boolean maximalSiphon (boolean set [])
+    {
+        int preStart []      = net . preStart ();
+        int prePlaces []     = net . prePlaces ();
+        int producerStart [] = net . producerStart ();
+        int producers []     = net . producers ();
+
+        /* a place fed by a transition with no input place in the set goes */
+
+        boolean changed = true;
+
+        while (changed)
+        {
+            changed = false;
+
+            for (int p = 0; p < places; p ++)
+            {
+                if (! set [p])
+                    continue;
+
+                for (int i = producerStart [p]; i < producerStart [p + 1]; i ++)
+                {
+                    int t = producers [i];
+
+                    if (preStart [t] < preStart [t + 1] &&
+                        ! touches (prePlaces, preStart [t], preStart [t + 1], set))
+                    {
+                        set [p] = false;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (int p = 0; p < places; p ++)
+            if (set [p])
+                return true;
+
+        return false;
+
+    } /* end maximalSiphon */
+
+
+    /*
+        reduce set to the largest trap it holds.
+    */
+
+    private void maximalTrap (boolean set [])
+    {
+        int postStart []     = net . postStart ();
+        int postPlaces []    = net . postPlaces ();
+        int consumerStart [] = net . consumerStart ();
+        int consumers []     = net . consumers ();
+
+        /* a place emptied by a transition with no output place in the set
+           goes */
+
+        boolean changed = true;
+
+        while (changed)
+        {
+            changed = false;
+
+            for (int p = 0; p < places; p ++)
+            {
+                if (! set [p])
+                    continue;
+
+                for (int i = consumerStart [p]; i < consumerStart [p + 1]; i ++)
+                {
+                    int t = consumers [i];
+
+                    if (! touches (postPlaces, postStart [t], postStart [t + 1], set))
+                    {
+                        set [p] = false;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+    } /* end maximalTrap */
+
+
+    /*
+        return true if one of a [start .. end - 1] is in set.
+    */
+
+    private static boolean touches (int a [], int start, int end, boolean set [])
+    {
+        for (int i = start; i < end; i ++)
+            if (set [a [i]])
+                return true;
+
+        return false;
+
+    } /* end touches */
+
+
+    /*
+        return the distinct places of a [start .. end - 1], marking them in in.
+    */
+
+    private static int [] distinct (int a [], int start, int end, boolean in [])
+    {
+        int d [] = new int [end - start];
+        int n    = 0;
+
+        for (int i = start; i < end; i ++)
+            if (! in [a [i]])
+            {
+                in [a [i]] = true;
+                d [n ++]   = a [i];
+            }
+
+        return Arrays . copyOf (d, n);
+
+    } /* end distinct */
+
+
+    /*
+        return true if a [i] is also in a [start .. i - 1].
+    */
+
+    private static boolean seenBefore (int a [], int start, int i)
+    {
+        for (int j = start; j < i; j ++)
+            if (a [j] == a [i])
+                return true;
+
+        return false;
+
+    } /* end seenBefore */
+
+
+    /*
+        return the places in set.
+    */
+
+    private int [] members (boolean set [])
+    {
+        int n = 0;
+
+        for (int p = 0; p < places; p ++)
+            if (set [p])
+                n ++;
+
+        int m [] = new int [n];
+
+        n = 0;
+
+        for (int p = 0; p < places; p ++)
+            if (set [p])
+                m [n ++] = p;
+
+        return m;
+
+    } /* end members */
+
+
+    /*
+        return the ids of compiled places.
+    */
+
+    private int [] placeIds (int p [])
+    {
+        int ids [] = new int [p . length];
+
+        for (int i = 0; i < p . length; i ++)
+            ids [i] = net . placeId (p [i]);
+
+        return ids;
+
+    } /* end placeIds */
+
+
+} /* end SiphonAnalysis */
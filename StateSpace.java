@@ -0,0 +1,305 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+
+
+/*
+    StateSpace class - enumerates all the markings reachable from the current
+    marking of a compiled net, breadth first. Markings are packed with a
+    fixed number of bits per place and kept in a MarkingSet; since the set
+    keeps them in the order they were found, it doubles as the queue of
+    markings still to expand and no other per-marking storage is needed.
+
+    Successors are computed by a MarkingExpander, which applies the same
+    firing rule as CompiledNet.
+*/
+
+
+class StateSpace
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* all reachable markings were found */
+
+    final static int    STATUS_COMPLETE       = 1;
+
+    /* exploration stopped because the maximum number of markings was reached */
+
+    final static int    STATUS_STATE_LIMIT    = 2;
+
+    /* exploration stopped because a place got more tokens than fit in its bits */
+
+    final static int    STATUS_TOKEN_OVERFLOW = 3;
+
+    /* exploration stopped at a marking where the target place is marked */
+
+    final static int    STATUS_TARGET_REACHED = 4;
+
+    /* smallest number of bits used per place */
+
+    final static int    DEFAULT_BITS = 4;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net being explored */
+
+    private CompiledNet net;
+
+    /* packing of the markings */
+
+    private PackedMarking codec;
+
+    /* reachable markings found so far */
+
+    private MarkingSet  markings;
+
+    /* number of firings explored (edges of the reachability graph) */
+
+    private long        edges;
+
+    /* number of reachable markings with no enabled transition */
+
+    private long        deadlocks;
+
+    /* outcome of the exploration */
+
+    private int         status;
+
+    /* if set - only expand stubborn sets */
+
+    private boolean     reduce;
+
+    /* compiled index of the place searched for, or -1 */
+
+    private int         target;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - explore at most maxStates markings, with enough
+        bits per place for the initial marking and at least DEFAULT_BITS.
+    */
+
+    public StateSpace (CompiledNet n, int maxStates)
+    {
+        this (n, maxStates, Math . max (DEFAULT_BITS, PackedMarking . bitsFor (maxTokens (n))));
+
+    } /* end StateSpace */
+
+
+    /*
+        constructor method - explore at most maxStates markings, with the
+        specified number of bits per place.
+    */
+
+    public StateSpace (CompiledNet n, int maxStates, int bits)
+    {
+        net      = n;
+        codec    = new PackedMarking (net . placeNumber (), bits);
+        markings = new MarkingSet (codec . words (), maxStates);
+        edges    = deadlocks = 0;
+        status   = 0;
+        reduce   = false;
+        target   = -1;
+
+    } /* end StateSpace */
+
+
+    /*
+        only explore stubborn sets instead of all enabled transitions. the
+        number of dead markings found stays exact, but fewer markings and
+        edges are explored.
+    */
+
+    public void setReduction (boolean r)
+    {
+        reduce = r;
+
+    } /* end setReduction */
+
+
+    /*
+        stop the exploration as soon as a marking where the specified place
+        (compiled index) holds a token is found.
+    */
+
+    public void setTarget (int p)
+    {
+        target = p;
+
+    } /* end setTarget */
+
+
+    /*
+        explore the reachable markings and return the status.
+    */
+
+    public int explore ()
+    {
+        int             words     = codec . words ();
+        long            initial[] = new long [words];
+        MarkingExpander expander  = new MarkingExpander (net, codec);
+
+        if (! codec . pack (net, initial, 0))
+            return status = STATUS_TOKEN_OVERFLOW;
+
+        markings . add (initial, 0);
+
+        if (target >= 0 && codec . get (initial, 0, target) > 0)
+            return status = STATUS_TARGET_REACHED;
+
+        /* the set keeps the markings in the order they were found, so
+           walking it by index is a breadth first traversal */
+
+        for (int s = 0; s < markings . size (); s ++)
+        {
+            int n = reduce ? expander . expandStubborn (markings . store (), s * words, target) :
+                             expander . expand (markings . store (), s * words);
+
+            if (n < 0)
+                return status = STATUS_TOKEN_OVERFLOW;
+
+            if (n == 0)
+                deadlocks ++;
+
+            long next [] = expander . successors ();
+            boolean old  = false;
+
+            for (int i = 0; i < n; i ++)
+            {
+                int added = markings . add (next, i * words);
+
+                if (added == Integer . MIN_VALUE)
+                    return status = STATUS_STATE_LIMIT;
+
+                if (added < 0)
+                    old = true;
+
+                else if (target >= 0 && codec . get (next, i * words, target) > 0)
+                    return status = STATUS_TARGET_REACHED;
+            }
+
+            /* a reduced search for the target must not go round a cycle of
+               markings forever ignoring the transitions that lead to it.
+               every cycle closes on a marking seen before, so fully expanding
+               each marking with an old successor avoids that */
+
+            if (reduce && target >= 0 && old)
+            {
+                n    = expander . expand (markings . store (), s * words);
+                next = expander . successors ();
+
+                if (n < 0)
+                    return status = STATUS_TOKEN_OVERFLOW;
+
+                for (int i = 0; i < n; i ++)
+                {
+                    int added = markings . add (next, i * words);
+
+                    if (added == Integer . MIN_VALUE)
+                        return status = STATUS_STATE_LIMIT;
+
+                    if (added >= 0 && codec . get (next, i * words, target) > 0)
+                        return status = STATUS_TARGET_REACHED;
+                }
+            }
+
+            edges += n;
+        }
+
+        return status = STATUS_COMPLETE;
+
+    } /* end explore */
+
+
+    /*
+        return the outcome of the exploration.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of reachable markings found.
+    */
+
+    public int states ()
+    {
+        return markings . size ();
+
+    } /* end states */
+
+
+    /*
+        return the number of firings explored.
+    */
+
+    public long edges ()
+    {
+        return edges;
+
+    } /* end edges */
+
+
+    /*
+        return the number of reachable markings with no enabled transition.
+    */
+
+    public long deadlocks ()
+    {
+        return deadlocks;
+
+    } /* end deadlocks */
+
+
+    /*
+        return the number of bits used per place.
+    */
+
+    public int bits ()
+    {
+        return codec . bits ();
+
+    } /* end bits */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        return the largest token number of the current marking of the net.
+    */
+
+    private static int maxTokens (CompiledNet net)
+    {
+        int max = 0;
+
+        for (int p = 0; p < net . placeNumber (); p ++)
+            max = Math . max (max, net . tokens (p));
+
+        return max;
+
+    } /* end maxTokens */
+
+
+} /* end StateSpace */
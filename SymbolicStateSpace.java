@@ -0,0 +1,416 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.math.*;
+
+
+/*
+    SymbolicStateSpace class - computes the set of reachable markings of a
+    compiled net as a decision diagram (see MddForest) instead of one marking
+    at a time. Each transition only looks at the levels of its input and
+    output places, and the image of a whole set of markings through it is
+    computed in one recursive pass over the diagram. The reachable set is
+    the fixpoint of chaining these images, transitions acting on the lowest
+    levels first, which handles nets with a huge number of concurrent
+    markings as long as their diagram stays small.
+
+    Token numbers are bounded: a marking where a place would get more tokens
+    than the bound is dropped and the exploration reports a token overflow.
+*/
+
+
+class SymbolicStateSpace
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* effect of a transition on one of its places */
+
+    final static int    CONSUME = 0;
+    final static int    PRODUCE = 1;
+    final static int    TEST    = 2;
+
+    /* smallest token bound */
+
+    final static int    DEFAULT_BOUND = 1;
+
+    /* number of entries of the image cache */
+
+    final static int    CACHE_SIZE = 1 << 20;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net being explored */
+
+    private CompiledNet net;
+
+    /* diagrams */
+
+    private MddForest   forest;
+
+    /* levels touched by each transition in increasing order, with the
+       effect on each */
+
+    private int         effectStart [];
+    private int         effectLevel [];
+    private int         effect [];
+
+    /* transitions in the order they are chained */
+
+    private int         order [];
+    private int         numOrder;
+
+    /* image cache - node, transition and result of each entry */
+
+    private int         imageN [];
+    private int         imageT [];
+    private int         imageR [];
+
+    /* scratch children of the nodes being built by image, one row per level */
+
+    private int         scratch [];
+
+    /* set when a successor marking went over the bound */
+
+    private boolean     overflow;
+
+    /* reachable set, number of chaining rounds and outcome */
+
+    private int         reachable;
+    private int         rounds;
+    private int         status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - token numbers 0 .. bound (at least enough for the
+        initial marking), at most maxNodes diagram nodes.
+    */
+
+    public SymbolicStateSpace (CompiledNet n, int bound, int maxNodes)
+    {
+        net = n;
+
+        int places = net . placeNumber ();
+
+        for (int p = 0; p < places; p ++)
+            bound = Math . max (bound, net . tokens (p));
+
+        forest   = new MddForest (places, Math . max (DEFAULT_BOUND, bound), maxNodes);
+        scratch  = new int [(places + 1) * forest . domain ()];
+        overflow = false;
+
+        imageN = new int [CACHE_SIZE];
+        imageT = new int [CACHE_SIZE];
+        imageR = new int [CACHE_SIZE];
+
+        java . util . Arrays . fill (imageN, -1);
+
+        compileEffects ();
+
+        reachable = MddForest . EMPTY;
+        rounds    = status = 0;
+
+    } /* end SymbolicStateSpace */
+
+
+    /*
+        compute the reachable set and return the status (one of the
+        StateSpace.STATUS_ constants).
+    */
+
+    public int explore ()
+    {
+        int tokens [] = new int [net . placeNumber ()];
+
+        for (int p = 0; p < tokens . length; p ++)
+            tokens [p] = net . tokens (p);
+
+        int set = forest . marking (tokens);
+        int old;
+
+        do
+        {
+            old = set;
+            rounds ++;
+
+            for (int i = 0; i < numOrder; i ++)
+            {
+                set = forest . union (set, image (set, order [i]));
+
+                if (forest . full ())
+                    return status = StateSpace . STATUS_STATE_LIMIT;
+            }
+        }
+        while (set != old);
+
+        reachable = set;
+
+        return status = overflow ? StateSpace . STATUS_TOKEN_OVERFLOW :
+                                   StateSpace . STATUS_COMPLETE;
+
+    } /* end explore */
+
+
+    /*
+        return the outcome of the exploration.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of reachable markings.
+    */
+
+    public BigInteger states ()
+    {
+        return forest . count (reachable);
+
+    } /* end states */
+
+
+    /*
+        return the number of diagram nodes created.
+    */
+
+    public int nodes ()
+    {
+        return forest . nodes ();
+
+    } /* end nodes */
+
+
+    /*
+        return the number of chaining rounds done.
+    */
+
+    public int rounds ()
+    {
+        return rounds;
+
+    } /* end rounds */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        return the set of markings reached by firing transition t once from
+        the markings of set n.
+    */
+
+    private int image (int n, int t)
+    {
+        return image (n, t, effectStart [t]);
+
+    } /* end image */
+
+
+    /*
+        same as above, e being the first effect of t at or below the level of
+        node n.
+    */
+
+    private int image (int n, int t, int e)
+    {
+        if (n == MddForest . EMPTY)
+            return n;
+
+        /* below the last place touched by t the markings do not change */
+
+        if (e == effectStart [t + 1])
+            return n;
+
+        int entry = (int) ((n * 0x9E3779B1L + t * 0x85EBCA77L) >>> 12) & (CACHE_SIZE - 1);
+
+        if (imageN [entry] == n && imageT [entry] == t)
+            return imageR [entry];
+
+        int l      = forest . level (n);
+        int domain = forest . domain ();
+        int off    = l * domain;
+        int what   = (effectLevel [e] == l) ? effect [e] : -1;
+        int next   = (what < 0) ? e : e + 1;
+
+        java . util . Arrays . fill (scratch, off, off + domain, MddForest . EMPTY);
+
+        for (int v = 0; v < domain; v ++)
+        {
+            int c = forest . child (n, v);
+
+            if (c == MddForest . EMPTY)
+                continue;
+
+            int to = v;
+
+            if (what == CONSUME || what == TEST)
+            {
+                if (v == 0)
+                    continue;
+
+                if (what == CONSUME)
+                    to = v - 1;
+            }
+            else if (what == PRODUCE)
+            {
+                /* only an overflow if t can fire in some of these markings */
+
+                if (v + 1 == domain)
+                {
+                    if (image (c, t, next) != MddForest . EMPTY)
+                        overflow = true;
+
+                    continue;
+                }
+
+                to = v + 1;
+            }
+
+            int sub = image (c, t, next);
+
+            scratch [off + to] = forest . union (scratch [off + to], sub);
+        }
+
+        int r = forest . node (l, scratch, off);
+
+        imageN [entry] = n;
+        imageT [entry] = t;
+        imageR [entry] = r;
+
+        return r;
+
+    } /* end image */
+
+
+    /*
+        build the effect lists of the transitions and the chaining order.
+    */
+
+    private void compileEffects ()
+    {
+        int transitions   = net . transitionNumber ();
+        int preStart []   = net . preStart ();
+        int prePlaces []  = net . prePlaces ();
+        int postStart []  = net . postStart ();
+        int postPlaces [] = net . postPlaces ();
+        int what []       = new int [net . placeNumber ()];
+
+        java . util . Arrays . fill (what, -1);
+
+        effectStart = new int [transitions + 1];
+        effectLevel = new int [prePlaces . length + postPlaces . length];
+        effect      = new int [effectLevel . length];
+
+        int  k   = 0;
+        long top [] = new long [transitions];
+
+        for (int t = 0; t < transitions; t ++)
+        {
+            effectStart [t] = k;
+
+            /* transitions without input places never fire */
+
+            if (preStart [t] == preStart [t + 1])
+                continue;
+
+            for (int i = preStart [t]; i < preStart [t + 1]; i ++)
+                what [prePlaces [i]] = CONSUME;
+
+            for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+                what [postPlaces [i]] = (what [postPlaces [i]] == CONSUME) ? TEST : PRODUCE;
+
+            /* gather the touched places in increasing order */
+
+            int first = k;
+
+            for (int i = preStart [t]; i < preStart [t + 1]; i ++)
+                k = addEffect (prePlaces [i], what, k);
+
+            for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+                k = addEffect (postPlaces [i], what, k);
+
+            sortEffects (first, k);
+
+            /* chain the transitions whose top level is deepest first */
+
+            top [numOrder ++] = ((long) effectLevel [first] << 32) | t;
+        }
+
+        effectStart [transitions] = k;
+
+        java . util . Arrays . sort (top, 0, numOrder);
+
+        order = new int [numOrder];
+
+        for (int i = 0; i < numOrder; i ++)
+            order [i] = (int) top [numOrder - 1 - i];
+
+    } /* end compileEffects */
+
+
+    /*
+        add the effect on place p if not added yet.
+    */
+
+    private int addEffect (int p, int what [], int k)
+    {
+        if (what [p] < 0)
+            return k;
+
+        effectLevel [k] = p;
+        effect [k]      = what [p];
+        what [p]        = -1;
+
+        return k + 1;
+
+    } /* end addEffect */
+
+
+    /*
+        sort effects first .. last - 1 by level (insertion sort, transitions
+        have few places).
+    */
+
+    private void sortEffects (int first, int last)
+    {
+        for (int i = first + 1; i < last; i ++)
+        {
+            int l = effectLevel [i];
+            int e = effect [i];
+            int j = i - 1;
+
+            while (j >= first && effectLevel [j] > l)
+            {
+                effectLevel [j + 1] = effectLevel [j];
+                effect [j + 1]      = effect [j];
+                j --;
+            }
+
+            effectLevel [j + 1] = l;
+            effect [j + 1]      = e;
+        }
+
+    } /* end sortEffects */
+
+
+} /* end SymbolicStateSpace */
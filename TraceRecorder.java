@@ -0,0 +1,562 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+
+/*
+    TraceRecorder class - records the transitions fired on a compiled net
+    into a trace file, so that long runs can be audited and replayed.
+
+    A file starts with the signature "TPT1", then the place number, the
+    transition number, the keyframe interval and the place and transition
+    ids of the compiled net, all variable length numbers (see NetReader).
+    Records follow:
+
+        step      the compiled index of the transition fired plus one
+        keyframe  a 0 byte, the step number, then the number of tokens of
+                  every compiled place
+
+    A keyframe is written before the first step, every keyframe interval
+    steps and whenever the marking is changed other than by firing. The
+    file ends with the keyframe index, an array of (step, file offset)
+    pairs as 8 byte big endian numbers, and a trailer of 28 bytes holding
+    the index offset, the keyframe number, the step number and the
+    signature "TPTE", so that a reader can find any keyframe without
+    decoding the steps before it.
+
+    Step numbers are implicit, so a step takes one byte for nets of up to
+    127 transitions and two up to 16383. Transitions fired by a random
+    simulation follow each other in no particular order, so coding the
+    difference with the previous one would only make the numbers longer.
+
+    Steps are encoded into a preallocated buffer; when it is full it is
+    handed over to a writer thread and encoding goes on in a second buffer,
+    so that the simulation only waits for the disk when it outruns it.
+*/
+
+
+class TraceRecorder implements Runnable
+{
+    /*
+        CLASS CONSTANTS
+    */
+
+
+    /* file signature and end of file signature */
+
+    final static int    CODE1 = (int) 'T';
+    final static int    CODE2 = (int) 'P';
+    final static int    CODE3 = (int) 'T';
+    final static int    CODE4 = (int) '1';
+    final static int    END4  = (int) 'E';
+
+    /* size of the trailer at the end of the file */
+
+    final static int    TRAILER_SIZE = 28;
+
+    /* size of each of the two buffers */
+
+    final static int    BUFFER_SIZE = 1 << 18;
+
+    /* largest encoded step */
+
+    final static int    MAX_STEP_BYTES = 5;
+
+    /* number of firings the simulation loop collects before handing them
+       over to be encoded */
+
+    final static int    BATCH_SIZE = 4096;
+
+    /* number of steps between keyframes when none is specified */
+
+    final static long   DEFAULT_KEYFRAME_INTERVAL = 1 << 20;
+
+
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net whose firings are recorded */
+
+    private CompiledNet net;
+
+    /* file written, null when not open */
+
+    private FileChannel channel;
+
+    /* buffer being filled, number of bytes in it and file offset of its
+       first byte */
+
+    private byte        buffer [];
+    private int         length;
+    private long        base;
+
+    /* buffer handed to the writer thread (null when it is idle) and its
+       length; buffer the writer thread is done with */
+
+    private byte        pending [];
+    private int         pendingLength;
+    private byte        spare [];
+
+    /* set to make the writer thread stop once idle */
+
+    private boolean     closing;
+
+    /* set by the writer thread when writing failed */
+
+    private boolean     failed;
+
+    /* writer thread */
+
+    private Thread      writer;
+
+    /* number of steps recorded, step at which the next keyframe is due and
+       keyframe interval */
+
+    private long        steps;
+    private long        nextKeyframe;
+    private long        interval;
+
+    /* keyframe index - step and file offset of each keyframe */
+
+    private long        keyframeSteps [];
+    private long        keyframeOffsets [];
+    private int         numKeyframes;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - record the firings of the specified net, with a
+        keyframe every interval steps (or the default interval if interval
+        is not positive).
+    */
+
+    public TraceRecorder (CompiledNet n, long i)
+    {
+        net      = n;
+        interval = (i > 0) ? i : DEFAULT_KEYFRAME_INTERVAL;
+        channel  = (FileChannel) null;
+
+    } /* end TraceRecorder */
+
+
+    /*
+        create the specified trace file, write its header and a keyframe of
+        the current marking, and start the writer thread. return a PetriNet
+        status.
+    */
+
+    public int open (String fileName)
+    {
+        try
+        {
+            channel = FileChannel . open (Paths . get (fileName),
+                                          StandardOpenOption . WRITE,
+                                          StandardOpenOption . CREATE,
+                                          StandardOpenOption . TRUNCATE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            return PetriNet . STATUS_FILE_CREATE_ERROR;
+        }
+
+        buffer  = new byte [BUFFER_SIZE];
+        spare   = new byte [BUFFER_SIZE];
+        pending = (byte []) null;
+        length  = 0;
+        base    = 0;
+        closing = failed = false;
+
+        keyframeSteps   = new long [16];
+        keyframeOffsets = new long [16];
+        numKeyframes    = 0;
+        steps           = 0;
+
+        writer = new Thread (this, "trace writer");
+        writer . setDaemon (true);
+        writer . start ();
+
+        put (CODE1);
+        put (CODE2);
+        put (CODE3);
+        put (CODE4);
+
+        int places      = net . placeNumber ();
+        int transitions = net . transitionNumber ();
+
+        putVarLong (places);
+        putVarLong (transitions);
+        putVarLong (interval);
+
+        for (int p = 0; p < places; p ++)
+            putVarLong (net . placeId (p));
+
+        for (int t = 0; t < transitions; t ++)
+            putVarLong (net . transitionId (t));
+
+        keyframe ();
+
+        return PetriNet . STATUS_NORMAL;
+
+    } /* end open */
+
+
+    /*
+        return the net whose firings are recorded.
+    */
+
+    public CompiledNet net ()
+    {
+        return net;
+
+    } /* end net */
+
+
+    /*
+        return the number of steps recorded so far.
+    */
+
+    public long steps ()
+    {
+        return steps;
+
+    } /* end steps */
+
+
+    /*
+        return the number of steps left before the next keyframe.
+    */
+
+    public long untilKeyframe ()
+    {
+        return nextKeyframe - steps;
+
+    } /* end untilKeyframe */
+
+
+    /*
+        record that compiled transition t fired.
+    */
+
+    public void record (int t)
+    {
+        if (length > BUFFER_SIZE - MAX_STEP_BYTES)
+            handOver ();
+
+        length = encode (t + 1, buffer, length);
+
+        if (++ steps == nextKeyframe)
+            keyframe ();
+
+    } /* end record */
+
+
+    /*
+        record that the compiled transitions fired [0] .. fired [count - 1]
+        fired, in that order. count must not be more than untilKeyframe(),
+        the marking of the net being the one after the last of them.
+    */
+
+    public void record (int fired [], int count)
+    {
+        int i = 0;
+
+        while (i < count)
+        {
+            if (length > BUFFER_SIZE - MAX_STEP_BYTES)
+                handOver ();
+
+            /* encode up to the end of the buffer without checking it */
+
+            int  end  = Math . min (count, i + (BUFFER_SIZE - length) / MAX_STEP_BYTES);
+            int  from = i;
+            byte b [] = buffer;
+            int  n    = length;
+
+            for (; i < end; i ++)
+                n = encode (fired [i] + 1, b, n);
+
+            length = n;
+            steps += end - from;
+        }
+
+        if (steps == nextKeyframe)
+            keyframe ();
+
+    } /* end record */
+
+
+    /*
+        record the current marking of the net. called when the marking was
+        changed by other means than firing, and every keyframe interval
+        steps.
+    */
+
+    public void keyframe ()
+    {
+        if (numKeyframes == keyframeSteps . length)
+        {
+            long tmp [];
+
+            tmp = new long [numKeyframes * 2];
+            System . arraycopy (keyframeSteps, 0, tmp, 0, numKeyframes);
+            keyframeSteps = tmp;
+
+            tmp = new long [numKeyframes * 2];
+            System . arraycopy (keyframeOffsets, 0, tmp, 0, numKeyframes);
+            keyframeOffsets = tmp;
+        }
+
+        keyframeSteps [numKeyframes]   = steps;
+        keyframeOffsets [numKeyframes] = base + length;
+        numKeyframes ++;
+
+        put (0);
+        putVarLong (steps);
+
+        int marking [] = net . marking ();
+
+        for (int p = 0; p < marking . length; p ++)
+            putVarLong (marking [p]);
+
+        nextKeyframe = steps + interval;
+
+    } /* end keyframe */
+
+
+    /*
+        write the remaining steps, the keyframe index and the trailer, and
+        close the file. return a PetriNet status.
+    */
+
+    public int close ()
+    {
+        if (channel == (FileChannel) null)
+            return PetriNet . STATUS_NORMAL;
+
+        handOver ();
+
+        synchronized (this)
+        {
+            closing = true;
+            notifyAll ();
+        }
+
+        try
+        {
+            writer . join ();
+        }
+        catch (InterruptedException e)
+        {
+            Thread . currentThread () . interrupt ();
+        }
+
+        int status = failed ? PetriNet . STATUS_WRITE_ERROR : PetriNet . STATUS_NORMAL;
+
+        try
+        {
+            if (! failed)
+            {
+                ByteBuffer index = ByteBuffer . allocate (numKeyframes * 16 + TRAILER_SIZE);
+
+                for (int i = 0; i < numKeyframes; i ++)
+                {
+                    index . putLong (keyframeSteps [i]);
+                    index . putLong (keyframeOffsets [i]);
+                }
+
+                index . putLong (base);
+                index . putLong (numKeyframes);
+                index . putLong (steps);
+                index . put ((byte) CODE1);
+                index . put ((byte) CODE2);
+                index . put ((byte) CODE3);
+                index . put ((byte) END4);
+                index . flip ();
+
+                while (index . hasRemaining ())
+                    channel . write (index);
+            }
+        }
+        catch (IOException e)
+        {
+            status = PetriNet . STATUS_WRITE_ERROR;
+        }
+        finally
+        {
+            try
+            {
+                channel . close ();
+            }
+            catch (IOException e)
+            {
+                status = PetriNet . STATUS_WRITE_ERROR;
+            }
+
+            channel = (FileChannel) null;
+            buffer  = spare = pending = (byte []) null;
+        }
+
+        return status;
+
+    } /* end close */
+
+
+    /*
+        writer thread - write the buffers handed over until the recorder
+        is closed.
+    */
+
+    public void run ()
+    {
+        while (true)
+        {
+            byte data [];
+            int  size;
+
+            synchronized (this)
+            {
+                while (pending == (byte []) null && ! closing)
+                {
+                    try
+                    {
+                        wait ();
+                    }
+                    catch (InterruptedException e)
+                    {
+                    }
+                }
+
+                if (pending == (byte []) null)
+                    return;
+
+                data = pending;
+                size = pendingLength;
+            }
+
+            if (! failed)
+            {
+                try
+                {
+                    ByteBuffer out = ByteBuffer . wrap (data, 0, size);
+
+                    while (out . hasRemaining ())
+                        channel . write (out);
+                }
+                catch (IOException e)
+                {
+                    failed = true;
+                }
+            }
+
+            synchronized (this)
+            {
+                spare   = data;
+                pending = (byte []) null;
+                notifyAll ();
+            }
+        }
+
+    } /* end run */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        hand the current buffer over to the writer thread, waiting for it to
+        be done with the previous one, and go on with the other buffer.
+    */
+
+    private synchronized void handOver ()
+    {
+        while (pending != (byte []) null)
+        {
+            try
+            {
+                wait ();
+            }
+            catch (InterruptedException e)
+            {
+            }
+        }
+
+        pending       = buffer;
+        pendingLength = length;
+        buffer        = spare;
+        spare         = (byte []) null;
+        base         += length;
+        length        = 0;
+
+        notifyAll ();
+
+    } /* end handOver */
+
+
+    /*
+        write the positive number value as a variable length number at
+        b [n], which must have room for MAX_STEP_BYTES bytes. return the
+        position after it.
+    */
+
+    private static int encode (int value, byte b [], int n)
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            b [n ++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+
+        b [n ++] = (byte) value;
+
+        return n;
+
+    } /* end encode */
+
+
+    /*
+        append one byte.
+    */
+
+    private void put (int b)
+    {
+        if (length == BUFFER_SIZE)
+            handOver ();
+
+        buffer [length ++] = (byte) b;
+
+    } /* end put */
+
+
+    /*
+        append an unsigned variable length number.
+    */
+
+    private void putVarLong (long value)
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            put ((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        put ((int) value);
+
+    } /* end putVarLong */
+
+
+} /* end TraceRecorder */
@@ -0,0 +1,518 @@
+/*
+    IMPORTS
+*/
+
+
+import java.lang.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+
+/*
+    TraceReplayer class - plays back a trace written by TraceRecorder on the
+    compiled net it was recorded on. The file is memory mapped (see
+    MappedInput), so traces of any size can be opened at once, and the
+    keyframe index at its end lets seek() jump to any step by loading the
+    nearest keyframe before it and firing the transitions from there.
+
+    Firings only update the replayer's own copy of the marking, without
+    keeping the set of enabled transitions of the compiled net up to date,
+    so that replaying is much faster than simulating. The marking at step s
+    is the one after the s-th firing, including the token changes recorded
+    before the next one.
+*/
+
+
+class TraceReplayer
+{
+    /*
+        INSTANCE VARIABLES
+    */
+
+
+    /* net replayed on and its arcs */
+
+    private CompiledNet net;
+    private int         preStart [];
+    private int         prePlaces [];
+    private int         postStart [];
+    private int         postPlaces [];
+
+    /* file read, null when not open */
+
+    private FileChannel channel;
+    private MappedInput input;
+
+    /* marking at the current step, indexed by compiled place */
+
+    private int         marking [];
+
+    /* current step and number of steps in the trace */
+
+    private long        position;
+    private long        steps;
+
+    /* keyframe index - step and file offset of each keyframe - and offset
+       of the index, where the records end */
+
+    private long        keyframeSteps [];
+    private long        keyframeOffsets [];
+    private int         numKeyframes;
+    private long        indexOffset;
+
+    /* status of the last operation (a PetriNet status) */
+
+    private int         status;
+
+
+    /*
+        PUBLIC METHODS
+    */
+
+
+    /*
+        constructor method - replay traces recorded on the specified net.
+    */
+
+    public TraceReplayer (CompiledNet n)
+    {
+        net        = n;
+        preStart   = n . preStart ();
+        prePlaces  = n . prePlaces ();
+        postStart  = n . postStart ();
+        postPlaces = n . postPlaces ();
+        marking    = new int [n . placeNumber ()];
+        channel    = (FileChannel) null;
+        status     = 0;
+
+    } /* end TraceReplayer */
+
+
+    /*
+        open the specified trace file and go to its first step. files that
+        are not traces or were recorded on another net give
+        STATUS_BAD_INPUT_FILE. return a PetriNet status.
+    */
+
+    public int open (String fileName)
+    {
+        close ();
+
+        try
+        {
+            channel = FileChannel . open (Paths . get (fileName), StandardOpenOption . READ);
+        }
+        catch (IOException e)
+        {
+            channel = (FileChannel) null;
+
+            return status = PetriNet . STATUS_FILE_NOT_FOUND;
+        }
+
+        try
+        {
+            input = new MappedInput (channel);
+
+            readIndex ();
+            readHeader ();
+
+            position = 0;
+            status   = load (0);
+        }
+        catch (IOException e)
+        {
+            status = (e instanceof StreamCorruptedException) ?
+                     PetriNet . STATUS_BAD_INPUT_FILE : PetriNet . STATUS_READ_ERROR;
+        }
+
+        if (status != PetriNet . STATUS_NORMAL)
+            close ();
+
+        return status;
+
+    } /* end open */
+
+
+    /*
+        close the trace file.
+    */
+
+    public void close ()
+    {
+        if (channel == (FileChannel) null)
+            return;
+
+        try
+        {
+            channel . close ();
+        }
+        catch (IOException e)
+        {
+        }
+
+        channel = (FileChannel) null;
+        input   = (MappedInput) null;
+
+    } /* end close */
+
+
+    /*
+        return the net replayed on.
+    */
+
+    public CompiledNet net ()
+    {
+        return net;
+
+    } /* end net */
+
+
+    /*
+        return the status of the last operation.
+    */
+
+    public int status ()
+    {
+        return status;
+
+    } /* end status */
+
+
+    /*
+        return the number of steps in the trace.
+    */
+
+    public long steps ()
+    {
+        return steps;
+
+    } /* end steps */
+
+
+    /*
+        return the current step.
+    */
+
+    public long position ()
+    {
+        return position;
+
+    } /* end position */
+
+
+    /*
+        return the marking at the current step, indexed by compiled place.
+        it must not be modified.
+    */
+
+    public int [] marking ()
+    {
+        return marking;
+
+    } /* end marking */
+
+
+    /*
+        go to the specified step, or to the last one if the trace is shorter.
+        return a PetriNet status.
+    */
+
+    public int seek (long step)
+    {
+        if (channel == (FileChannel) null)
+            return status = PetriNet . STATUS_READ_ERROR;
+
+        step = Math . max (0, Math . min (step, steps));
+
+        /* find the last keyframe at or before the step */
+
+        int low  = 0;
+        int high = numKeyframes - 1;
+
+        while (low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+
+            if (keyframeSteps [middle] <= step)
+                low = middle;
+            else
+                high = middle - 1;
+        }
+
+        /* going forward from the current step is never longer than going
+           forward from that keyframe */
+
+        if (step < position || keyframeSteps [low] > position)
+        {
+            status = load (low);
+
+            if (status != PetriNet . STATUS_NORMAL)
+                return status;
+        }
+
+        return advance (step - position);
+
+    } /* end seek */
+
+
+    /*
+        fire the next n transitions of the trace, stopping at its end.
+        return a PetriNet status.
+    */
+
+    public int advance (long n)
+    {
+        if (channel == (FileChannel) null)
+            return status = PetriNet . STATUS_READ_ERROR;
+
+        long  target      = Math . min (position + n, steps);
+        int   transitions = preStart . length - 1;
+        int   m []        = marking;
+
+        try
+        {
+            while (position < target)
+            {
+                int value = readNumber ();
+
+                if (value == 0)
+                {
+                    readKeyframe ();
+                    continue;
+                }
+
+                int t = value - 1;
+
+                if (t < 0 || t >= transitions)
+                    throw new StreamCorruptedException ("bad transition");
+
+                for (int i = preStart [t]; i < preStart [t + 1]; i ++)
+                    m [prePlaces [i]] --;
+
+                for (int i = postStart [t]; i < postStart [t + 1]; i ++)
+                    m [postPlaces [i]] ++;
+
+                position ++;
+            }
+
+            /* the token changes done after the last step */
+
+            while (input . position () < indexOffset && input . peek () == 0)
+            {
+                input . read ();
+                readKeyframe ();
+            }
+
+            status = PetriNet . STATUS_NORMAL;
+        }
+        catch (IOException e)
+        {
+            status = (e instanceof StreamCorruptedException) ?
+                     PetriNet . STATUS_BAD_INPUT_FILE : PetriNet . STATUS_READ_ERROR;
+        }
+
+        return status;
+
+    } /* end advance */
+
+
+    /*
+        copy the marking at the current step into the compiled net and the
+        place objects, so that the editor shows it.
+    */
+
+    public void show ()
+    {
+        for (int p = 0; p < marking . length; p ++)
+            if (net . tokens (p) != marking [p])
+                net . setTokens (p, marking [p]);
+
+        net . writeMarking ();
+
+    } /* end show */
+
+
+    /*
+        PRIVATE METHODS
+    */
+
+
+    /*
+        read the trailer and the keyframe index at the end of the file.
+    */
+
+    private void readIndex () throws IOException
+    {
+        long size = channel . size ();
+
+        if (size < TraceRecorder . TRAILER_SIZE)
+            throw new StreamCorruptedException ("no trailer");
+
+        ByteBuffer trailer = ByteBuffer . allocate (TraceRecorder . TRAILER_SIZE);
+
+        readFully (trailer, size - TraceRecorder . TRAILER_SIZE);
+
+        indexOffset = trailer . getLong ();
+
+        long count  = trailer . getLong ();
+
+        steps       = trailer . getLong ();
+
+        if (trailer . get () != TraceRecorder . CODE1 ||
+            trailer . get () != TraceRecorder . CODE2 ||
+            trailer . get () != TraceRecorder . CODE3 ||
+            trailer . get () != TraceRecorder . END4)
+            throw new StreamCorruptedException ("bad trailer");
+
+        if (count < 1 || count > Integer . MAX_VALUE / 16 || steps < 0 || indexOffset < 0 ||
+            indexOffset + count * 16 != size - TraceRecorder . TRAILER_SIZE)
+            throw new StreamCorruptedException ("bad index");
+
+        numKeyframes    = (int) count;
+        keyframeSteps   = new long [numKeyframes];
+        keyframeOffsets = new long [numKeyframes];
+
+        ByteBuffer index = ByteBuffer . allocate (numKeyframes * 16);
+
+        readFully (index, indexOffset);
+
+        for (int i = 0; i < numKeyframes; i ++)
+        {
+            keyframeSteps [i]   = index . getLong ();
+            keyframeOffsets [i] = index . getLong ();
+
+            if (keyframeOffsets [i] < 0 || keyframeOffsets [i] >= indexOffset ||
+                keyframeSteps [i] > steps ||
+                (i > 0 && keyframeSteps [i] < keyframeSteps [i - 1]))
+                throw new StreamCorruptedException ("bad keyframe");
+        }
+
+        if (keyframeSteps [0] != 0)
+            throw new StreamCorruptedException ("no first keyframe");
+
+    } /* end readIndex */
+
+
+    /*
+        read the header and check that the trace was recorded on the net.
+    */
+
+    private void readHeader () throws IOException
+    {
+        if (input . read () != TraceRecorder . CODE1 ||
+            input . read () != TraceRecorder . CODE2 ||
+            input . read () != TraceRecorder . CODE3 ||
+            input . read () != TraceRecorder . CODE4)
+            throw new StreamCorruptedException ("not a trace");
+
+        int places      = input . readVarInt ();
+        int transitions = input . readVarInt ();
+
+        input . readVarLong ();
+
+        if (places != net . placeNumber () || transitions != net . transitionNumber ())
+            throw new StreamCorruptedException ("other net");
+
+        for (int p = 0; p < places; p ++)
+            if (input . readVarInt () != net . placeId (p))
+                throw new StreamCorruptedException ("other net");
+
+        for (int t = 0; t < transitions; t ++)
+            if (input . readVarInt () != net . transitionId (t))
+                throw new StreamCorruptedException ("other net");
+
+    } /* end readHeader */
+
+
+    /*
+        go to keyframe k. return a PetriNet status.
+    */
+
+    private int load (int k)
+    {
+        try
+        {
+            input . seek (keyframeOffsets [k]);
+
+            if (input . read () != 0)
+                throw new StreamCorruptedException ("bad keyframe");
+
+            readKeyframe ();
+
+            if (position != keyframeSteps [k])
+                throw new StreamCorruptedException ("bad keyframe");
+
+            return PetriNet . STATUS_NORMAL;
+        }
+        catch (IOException e)
+        {
+            return (e instanceof StreamCorruptedException) ?
+                   PetriNet . STATUS_BAD_INPUT_FILE : PetriNet . STATUS_READ_ERROR;
+        }
+
+    } /* end load */
+
+
+    /*
+        read the rest of a keyframe, after its 0 byte.
+    */
+
+    private void readKeyframe () throws IOException
+    {
+        long step = input . readVarLong ();
+
+        if (step < 0 || step > steps)
+            throw new StreamCorruptedException ("bad keyframe");
+
+        position = step;
+
+        for (int p = 0; p < marking . length; p ++)
+            marking [p] = input . readVarInt ();
+
+    } /* end readKeyframe */
+
+
+    /*
+        read a variable length number that fits in an int.
+    */
+
+    private int readNumber () throws IOException
+    {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = input . read ();
+
+            if (b < 0)
+                throw new StreamCorruptedException ("truncated trace");
+
+            value |= (b & 0x7f) << shift;
+
+            if (b < 0x80)
+                return value;
+        }
+
+        throw new StreamCorruptedException ("number too long");
+
+    } /* end readNumber */
+
+
+    /*
+        fill the buffer with the bytes of the file at the specified offset.
+    */
+
+    private void readFully (ByteBuffer buffer, long offset) throws IOException
+    {
+        while (buffer . hasRemaining ())
+            if (channel . read (buffer, offset + buffer . position ()) < 0)
+                throw new StreamCorruptedException ("truncated file");
+
+        buffer . flip ();
+
+    } /* end readFully */
+
+
+} /* end TraceReplayer */
@@ -37,6 +37,11 @@ class Transition
     final static int    HSIZE = 50;
     final static int    VSIZE = 10;
 
+    /* room left on the right of and above the rectangle for the label */
+
+    final static int    LABEL_WIDTH  = 60;
+    final static int    LABEL_HEIGHT = 20;
+
     /* delimiters used to distinguish records in files */
 
     final static int    BOA = 0x70;
@@ -60,7 +65,8 @@ class Transition
     private int         dragX;
     private int         dragY;
 
-    /* colors corresponding to different states */
+    /* colors corresponding to different states. created on the first
+       paint, so that nets can be loaded and simulated without AWT */
 
     private Color       colorNormal;
     private Color       colorSelected;
@@ -89,10 +95,6 @@ class Transition
     private int         state;
     private int         oldState;
 
-    /* arc being removed */
-
-    private Arc  removing;
-
     /* transition id */
 
     private int         id;
@@ -121,15 +123,8 @@ class Transition
         oldX = originX = x;
         oldY = originY = y;
 
-        colorNormal    = new Color (0, 100, 0);
-        colorSelected  = new Color (100, 100, 100);
-        colorActive    = new Color (100, 0, 0);
-        colorHighlight = new Color (0, 0, 100);
-
         state = NORMAL;
 
-        removing = (Arc) null;
-
         valid = true;
 	
         arcsIn = new Vector (5, 1);
@@ -153,15 +148,8 @@ class Transition
             id    = i;
             label = new Integer (id) . toString ();
 
-            colorNormal    = new Color (0, 100, 0);
-            colorSelected  = new Color (100, 100, 100);
-            colorActive    = new Color (100, 0, 0);
-            colorHighlight = new Color (0, 0, 100);
-
             state = NORMAL;
 
-            removing = (Arc) null;
-
             valid = true;
 
             arcsIn = new Vector (5, 1);
@@ -260,20 +248,70 @@ class Transition
 
     public void paint (Graphics g)
     {
-        /* remove previous image */
+        /* the area painted was cleared first (see PetriNet.paint), so the
+           previous image does not have to be erased. only the arcs removed
+           since the last paint have to be dropped */
 
-        remove (g);
+        pruneArcs ();
+
+        oldX = originX;
+        oldY = originY;
+
+        draw (g, state, true);
+
+    } /* end paint */
+
+
+    /*
+        draw the parts of the image that only change with the structure of
+        the net: the rectangle, the arcs and the label as in the normal state.
+        without detail, the label and the arrow heads are left out.
+    */
+
+    public void paintShape (Graphics g, boolean detail)
+    {
+        pruneArcs ();
 
+        oldX = originX;
+        oldY = originY;
+
+        draw (g, NORMAL, detail);
+
+    } /* end paintShape */
+
+
+    /*
+        draw the state over the image drawn by paintShape.
+    */
+
+    public void paintMarks (Graphics g, boolean detail)
+    {
+        if (state != NORMAL)
+            draw (g, state, detail);
+
+    } /* end paintMarks */
+
+
+    /*
+        draw the image as in the specified state, with or without the
+        details.
+    */
+
+    private void draw (Graphics g, int st, boolean detail)
+    {
         /* do not paint the image if transition is not valid */
 
         if (! valid)
             return;
 
+        if (colorNormal == (Color) null)
+            makeColors ();
+
         /* set color depending on the current state */
 
         Color   color;
 
-        switch (state)
+        switch (st)
         {
             case MOVING:
                 color = colorSelected;
@@ -310,7 +348,7 @@ class Transition
             /* depending on the state pick the color (could be different
                 than the state color) */
 
-            switch (state)
+            switch (st)
             {
                 case MOVING:
                     color = colorSelected;
@@ -330,13 +368,31 @@ class Transition
 
             /* paint arc */
 
-            tmp . paint (g);
+            tmp . paint (g, detail);
         }
+
+        if (! detail)
+            return;
+
         /* draw transition label outside the rectangle on the right */
 
         g . drawString (label, originX + HSIZE, originY);
 
-    } /* end paint */
+    } /* end draw */
+
+
+    /*
+        create the colors corresponding to the different states.
+    */
+
+    private void makeColors ()
+    {
+        colorNormal    = new Color (0, 100, 0);
+        colorSelected  = new Color (100, 100, 100);
+        colorActive    = new Color (100, 0, 0);
+        colorHighlight = new Color (0, 0, 100);
+
+    } /* end makeColors */
 
 
     /*
@@ -354,30 +410,37 @@ class Transition
         /* remove out arc drawings */
 
         for (int i = 0; i < arcsOut . size (); i ++)
-        {
-            Arc tmp = (Arc) (arcsOut . elementAt (i));
+            ((Arc) (arcsOut . elementAt (i))) . remove (g);
 
-            /* clear the arc */
+        pruneArcs ();
 
-            tmp . remove (g);
+        /* update previous coordinates */
+
+        oldX = originX;
+        oldY = originY;
+
+    } /* end remove */
 
-            /* if this arc is being removed or the tplace on the other
-               side of the arc is removed - delete it */
 
-            if (tmp == removing || ! tmp . placeValid ())
+    /*
+        drop the arcs that are being removed or whose place was removed.
+        a removed transition keeps its arcs, in case the removal is undone.
+    */
+
+    private void pruneArcs ()
+    {
+        for (int i = 0; i < arcsOut . size (); i ++)
+        {
+            Arc tmp = (Arc) (arcsOut . elementAt (i));
+
+            if (tmp . removing () || (valid && ! tmp . placeValid ()))
             {
                 arcsOut . removeElementAt (i);
                 i --;
-                removing = (Arc) null;
             }
         }
 
-        /* update previous coordinates */
-
-        oldX = originX;
-        oldY = originY;
-
-    } /* end remove */
+    } /* end pruneArcs */
 
 
     /*
@@ -403,6 +466,40 @@ class Transition
     } /* end bounds */
 
 
+    /*
+        return the rectangle the transition and its label are drawn in.
+    */
+
+    public Rectangle area ()
+    {
+        return new Rectangle (originX, originY - LABEL_HEIGHT,
+                              HSIZE + LABEL_WIDTH + 1, VSIZE + LABEL_HEIGHT + 1);
+
+    } /* end area */
+
+
+    /*
+        return a rectangle holding the transition and all the arcs from and
+        to it.
+    */
+
+    public Rectangle extent ()
+    {
+        Rectangle r = area ();
+
+        for (int i = 0; i < arcsOut . size (); i ++)
+            r . add (((Arc) (arcsOut . elementAt (i))) . place () . area ());
+
+        for (int i = 0; i < arcsIn . size (); i ++)
+            r . add (((Arc) (arcsIn . elementAt (i))) . place () . area ());
+
+        r . grow (Arc . ARROW_SIZE, Arc . ARROW_SIZE);
+
+        return r;
+
+    } /* end extent */
+
+
     /*
         check if the specified coordinate is withing the transition image.
     */
@@ -426,6 +523,17 @@ class Transition
     } /* end makeInvalid */
 
 
+    /*
+        mark transition as valid again, when a removal is undone.
+    */
+
+    public void makeValid ()
+    {
+        valid = true;
+
+    } /* end makeValid */
+
+
     /*
         return the valid flag.
     */
@@ -437,6 +545,23 @@ class Transition
     } /* end valid */
 
 
+    /*
+        return the coordinates of the transition origin.
+    */
+
+    public int originX ()
+    {
+        return originX;
+
+    } /* end originX */
+
+    public int originY ()
+    {
+        return originY;
+
+    } /* end originY */
+
+
     /*
         return transition id.
     */
@@ -471,10 +596,11 @@ class Transition
 
 
     /*
-        add new arc from this transition to specified place.
+        add new arc from this transition to specified place. return false if
+        there already was one.
     */
 
-    public void addArcOut (Place place)
+    public boolean addArcOut (Place place)
     {
         /* see if we already have an arc between these this trans and that place */
 
@@ -482,10 +608,17 @@ class Transition
         {
            Arc tmp = (Arc) (arcsOut . elementAt (i));
 
-           /* if one exists - do nothing */
+           /* if one exists - do nothing, unless it is still waiting to be
+              erased after a removal, in which case it just stays */
            if (tmp . place () == place)
             {
-                return;
+                if (! tmp . removing ())
+                    return false;
+
+                tmp . setRemoving (false);
+                place . addArcIn (tmp);
+
+                return true;
             }
         }
 
@@ -494,6 +627,11 @@ class Transition
         Arc arc = new Arc (this, place);
 
         arcsOut . addElement ((Object) arc);
+
+	/* let the place know a new arc to it has been created */
+	place . addArcIn (arc);
+
+        return true;
 	
     } /* end addArcOut */
 
@@ -509,10 +647,11 @@ class Transition
 
 
     /*
-        remove arc from this trans to specified place.
+        remove arc from this trans to specified place. return false if there
+        was none.
     */
 
-    public void removeArcOut (Place place)
+    public boolean removeArcOut (Place place)
     {
         /* find the arc with the specified destination place and mark
            it as being removed. it will be actually removed in the paint()
@@ -522,15 +661,33 @@ class Transition
         {
             Arc tmp = (Arc) (arcsOut . elementAt (i));
 
-            if (tmp . place () == place)
+            if (tmp . place () == place && ! tmp . removing ())
             {
-                removing = tmp;
-                return;
+                tmp . setRemoving (true);
+
+                /* remove it from its place set of in arcs */
+                place . removeArcIn (tmp);
+                return true;
             }
         }
 
+        return false;
+
     } /* removeArcOut */
 
+
+    /*
+        put back an arc to a place that was dropped while the place was
+        removed.
+    */
+
+    public void restoreArcOut (Arc arc)
+    {
+        if (! arcsOut . contains (arc))
+            arcsOut . addElement ((Object) arc);
+
+    } /* end restoreArcOut */
+
     /*
         remove specified arc to this trans.
     */
@@ -544,6 +701,81 @@ class Transition
     } /* removeArcIn */
 
 
+    /*
+        return the number of incoming arcs.
+    */
+
+    public int arcsInNumber ()
+    {
+        return arcsIn . size ();
+
+    } /* end arcsInNumber */
+
+
+    /*
+        return the place at the start of the specified incoming arc, or null
+        if that place has been removed.
+    */
+
+    public Place inputPlace (int i)
+    {
+        Arc tmp = (Arc) (arcsIn . elementAt (i));
+
+        return tmp . placeValid () ? tmp . place () : (Place) null;
+
+    } /* end inputPlace */
+
+
+    /*
+        return the specified incoming arc.
+    */
+
+    public Arc arcIn (int i)
+    {
+        return (Arc) (arcsIn . elementAt (i));
+
+    } /* end arcIn */
+
+
+    /*
+        return the specified outgoing arc.
+    */
+
+    public Arc arcOut (int i)
+    {
+        return (Arc) (arcsOut . elementAt (i));
+
+    } /* end arcOut */
+
+
+    /*
+        return the number of outgoing arcs.
+    */
+
+    public int arcsOutNumber ()
+    {
+        return arcsOut . size ();
+
+    } /* end arcsOutNumber */
+
+
+    /*
+        return the place at the end of the specified outgoing arc, or null
+        if that place or the arc itself is being removed.
+    */
+
+    public Place outputPlace (int i)
+    {
+        Arc tmp = (Arc) (arcsOut . elementAt (i));
+
+        if (tmp . removing () || ! tmp . placeValid ())
+            return (Place) null;
+
+        return tmp . place ();
+
+    } /* end outputPlace */
+
+
     /*
         is transition active ?
     */
@@ -593,6 +825,17 @@ class Transition
     } /* fire */
 
 
+    /*
+        show the transition as fired on the next paint, without touching
+        the tokens (used when the firing was done on the compiled net)
+    */
+
+    public void markFired ()
+    {
+	state = ACTIVE; /* will be reset to NORMAL by paint */
+    } /* markFired */
+
+
     /*
         write transition data into a file.
     */
@@ -653,6 +896,9 @@ class Transition
             tmp = (Arc) (arcsOut . elementAt (i));
 
             tmp . resolveId (res);
+
+            /* let the place know about the arc */
+            tmp . place () . addArcIn (tmp);
         }
 
     } /* end resolveId */